@@ -48,6 +48,9 @@ public class Manage {
 
     private Map<String, CachePair<String, CacheX>> cachePool = new ConcurrentHashMap<>();
 
+    @Inject
+    private Metrics metrics;
+
     @Inject
     public void setCachePool(Map<String, CacheX> caches) {
         // default cache impl
@@ -58,17 +61,16 @@ public class Manage {
     }
 
     public Object readSingle(String cache, String key) {
+        CachePair<String, CacheX> cacheImpl = null;
+        long start = System.nanoTime();
         try {
-            CachePair<String, CacheX> cacheImpl = getCacheImpl(cache);
-
-            long start = System.currentTimeMillis();
+            cacheImpl = getCacheImpl(cache);
             Object result = cacheImpl.getRight().read(key);
-            Logger.info("cache [{}] read single cost: [{}] ms",
-                    cacheImpl.getLeft(),
-                    (System.currentTimeMillis() - start));
+            record(cacheImpl, Metrics.Op.READ_SINGLE, start, true);
 
             return result;
         } catch (Throwable e) {
+            record(cacheImpl, Metrics.Op.READ_SINGLE, start, false);
             Logger.error("read single cache failed, key: {} ", key, e);
             return null;
         }
@@ -76,16 +78,14 @@ public class Manage {
 
     public void writeSingle(String cache, String key, Object value, int expire) {
         if (value != null) {
+            CachePair<String, CacheX> cacheImpl = null;
+            long start = System.nanoTime();
             try {
-                CachePair<String, CacheX> cacheImpl = getCacheImpl(cache);
-
-                long start = System.currentTimeMillis();
+                cacheImpl = getCacheImpl(cache);
                 cacheImpl.getRight().write(key, value, expire);
-                Logger.info("cache [{}] write single cost: [{}] ms",
-                        cacheImpl.getLeft(),
-                        (System.currentTimeMillis() - start));
-
+                record(cacheImpl, Metrics.Op.WRITE_SINGLE, start, true);
             } catch (Throwable e) {
+                record(cacheImpl, Metrics.Op.WRITE_SINGLE, start, false);
                 Logger.error("write single cache failed, key: {} ", key, e);
             }
         }
@@ -96,14 +96,12 @@ public class Manage {
         if (keys.isEmpty()) {
             cacheKeys = new CacheKeys();
         } else {
+            CachePair<String, CacheX> cacheImpl = null;
+            long start = System.nanoTime();
             try {
-                CachePair<String, CacheX> cacheImpl = getCacheImpl(cache);
-
-                long start = System.currentTimeMillis();
+                cacheImpl = getCacheImpl(cache);
                 Map<String, Object> cacheMap = cacheImpl.getRight().read(keys);
-                Logger.info("cache [{}] read batch cost: [{}] ms",
-                        cacheImpl.getLeft(),
-                        (System.currentTimeMillis() - start));
+                record(cacheImpl, Metrics.Op.READ_BATCH, start, true);
 
                 // collect not nit keys, keep order when full shooting
                 Map<String, Object> hitValueMap = new LinkedHashMap<>();
@@ -120,6 +118,7 @@ public class Manage {
 
                 cacheKeys = new CacheKeys(hitValueMap, notHitKeys);
             } catch (Throwable e) {
+                record(cacheImpl, Metrics.Op.READ_BATCH, start, false);
                 Logger.error("read multi cache failed, keys: {}", keys, e);
                 cacheKeys = new CacheKeys();
             }
@@ -129,37 +128,44 @@ public class Manage {
     }
 
     public void writeBatch(String cache, Map<String, Object> keyValueMap, int expire) {
+        CachePair<String, CacheX> cacheImpl = null;
+        long start = System.nanoTime();
         try {
-            CachePair<String, CacheX> cacheImpl = getCacheImpl(cache);
-
-            long start = System.currentTimeMillis();
+            cacheImpl = getCacheImpl(cache);
             cacheImpl.getRight().write(keyValueMap, expire);
-            Logger.info("cache [{}] write batch cost: [{}] ms",
-                    cacheImpl.getLeft(),
-                    (System.currentTimeMillis() - start));
-
+            record(cacheImpl, Metrics.Op.WRITE_BATCH, start, true);
         } catch (Exception e) {
+            record(cacheImpl, Metrics.Op.WRITE_BATCH, start, false);
             Logger.error("write map multi cache failed, keys: {}", keyValueMap.keySet(), e);
         }
     }
 
     public void remove(String cache, String... keys) {
         if (keys != null && keys.length != 0) {
+            CachePair<String, CacheX> cacheImpl = null;
+            long start = System.nanoTime();
             try {
-                CachePair<String, CacheX> cacheImpl = getCacheImpl(cache);
-
-                long start = System.currentTimeMillis();
+                cacheImpl = getCacheImpl(cache);
                 cacheImpl.getRight().remove(keys);
-                Logger.info("cache [{}] remove cost: [{}] ms",
-                        cacheImpl.getLeft(),
-                        (System.currentTimeMillis() - start));
-
+                record(cacheImpl, Metrics.Op.REMOVE, start, true);
             } catch (Throwable e) {
+                record(cacheImpl, Metrics.Op.REMOVE, start, false);
                 Logger.error("remove cache failed, keys: {}: ", keys, e);
             }
         }
     }
 
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    private void record(CachePair<String, CacheX> cacheImpl, Metrics.Op op, long start, boolean success) {
+        // 未找到缓存实现时不计入统计, 避免任意名称撑大统计表
+        if (cacheImpl != null && metrics != null) {
+            metrics.record(cacheImpl.getLeft(), op, System.nanoTime() - start, success);
+        }
+    }
+
     private CachePair<String, CacheX> getCacheImpl(String cacheName) {
         if (StringUtils.isEmpty(cacheName)) {
             return defaultCache;
@@ -0,0 +1,372 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache;
+
+import org.aoju.bus.core.annotation.Inject;
+import org.aoju.bus.core.annotation.Singleton;
+import org.aoju.bus.core.thread.NamedThreadFactory;
+import org.aoju.bus.logger.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存操作统计
+ * 按缓存实现及操作类型记录次数、失败数与耗时分布, 按分组模板记录命中率;
+ * 热路径上只做分段累加, 命中数据定时汇总后批量写入{@link Shooting}
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+@Singleton
+public class Metrics {
+
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private static final Op[] OPS = Op.values();
+
+    /**
+     * 缓存名称 -> 按{@link Op#ordinal()}索引的各操作统计
+     */
+    private final ConcurrentMap<String, Stats[]> stats = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Shoot> shoots = new ConcurrentHashMap<>();
+
+    private Shooting shooting;
+
+    private ScheduledExecutorService flusher;
+
+    @Inject(optional = true)
+    public synchronized void setShooting(Shooting shooting) {
+        this.shooting = shooting;
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cache-metrics-"));
+            flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 记录一次缓存操作
+     *
+     * @param cache   缓存实现名称
+     * @param op      操作类型
+     * @param nanos   耗时,单位纳秒
+     * @param success 是否成功
+     */
+    public void record(String cache, Op op, long nanos, boolean success) {
+        Stats[] ops = stats.get(cache);
+        if (ops == null) {
+            ops = stats.computeIfAbsent(cache, name -> {
+                Stats[] created = new Stats[OPS.length];
+                for (int i = 0; i < created.length; i++) {
+                    created[i] = new Stats();
+                }
+                return created;
+            });
+        }
+        ops[op.ordinal()].record(nanos, success);
+    }
+
+    /**
+     * 记录分组命中情况
+     *
+     * @param pattern 分组模板
+     * @param hit     命中数
+     * @param request 请求数
+     */
+    public void shoot(String pattern, int hit, int request) {
+        Shoot shoot = shoots.computeIfAbsent(pattern, name -> new Shoot());
+        if (hit != 0) {
+            shoot.hit.add(hit);
+        }
+        shoot.request.add(request);
+    }
+
+    /**
+     * 将上次汇总以来的命中增量批量写入{@link Shooting}
+     */
+    public synchronized void flush() {
+        if (shooting == null) {
+            return;
+        }
+        shoots.forEach((pattern, shoot) -> {
+            long hit = shoot.hit.sum();
+            long request = shoot.request.sum();
+            int hitDelta = (int) (hit - shoot.flushedHit);
+            int requestDelta = (int) (request - shoot.flushedRequest);
+            try {
+                // 每项写入成功后立即记录,避免后一项失败时重复写入前一项
+                if (hitDelta != 0) {
+                    shooting.hitIncr(pattern, hitDelta);
+                    shoot.flushedHit = hit;
+                }
+                if (requestDelta != 0) {
+                    shooting.reqIncr(pattern, requestDelta);
+                    shoot.flushedRequest = request;
+                }
+            } catch (Throwable e) {
+                Logger.error("flush cache shooting failed, pattern: {}", pattern, e);
+            }
+        });
+    }
+
+    /**
+     * 操作统计快照, key为`缓存名称:操作类型`
+     *
+     * @return 快照
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        stats.forEach((name, ops) -> {
+            for (Op op : OPS) {
+                Stats stat = ops[op.ordinal()];
+                if (stat.count.sum() > 0) {
+                    result.put(name + ":" + op.name(), stat.snapshot());
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 分组命中统计, 包含未汇总的部分
+     *
+     * @return 分组模板 -> 命中情况
+     */
+    public Map<String, Shooting.ShootingDO> shooting() {
+        Map<String, Shooting.ShootingDO> result = new LinkedHashMap<>();
+        shoots.forEach((pattern, shoot) ->
+                result.put(pattern, Shooting.ShootingDO.newInstance(shoot.hit.sum(), shoot.request.sum())));
+        return result;
+    }
+
+    /**
+     * 以文本形式输出当前统计
+     *
+     * @return 统计信息
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        snapshot().forEach((name, snapshot) -> sb.append(name).append(' ').append(snapshot).append('\n'));
+        shooting().forEach((pattern, shoot) -> sb.append(pattern)
+                .append(" hit: ").append(shoot.getHit())
+                .append('/').append(shoot.getRequired())
+                .append(' ').append(shoot.getRate()).append('\n'));
+        return sb.toString();
+    }
+
+    public enum Op {
+        READ_SINGLE,
+        READ_BATCH,
+        WRITE_SINGLE,
+        WRITE_BATCH,
+        REMOVE
+    }
+
+    private static class Shoot {
+
+        private final LongAdder hit = new LongAdder();
+
+        private final LongAdder request = new LongAdder();
+
+        // 仅在flush中访问
+        private long flushedHit;
+
+        private long flushedRequest;
+    }
+
+    private static class Stats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final Histogram histogram = new Histogram();
+
+        void record(long nanos, boolean success) {
+            count.increment();
+            if (!success) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            histogram.record(nanos);
+        }
+
+        Snapshot snapshot() {
+            long[] buckets = histogram.buckets();
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            long n = count.sum();
+            return new Snapshot(n, errors.sum(),
+                    n == 0 ? 0 : totalNanos.sum() / n,
+                    Histogram.percentile(buckets, total, 0.5),
+                    Histogram.percentile(buckets, total, 0.99),
+                    Histogram.percentile(buckets, total, 0.999),
+                    Histogram.percentile(buckets, total, 1.0));
+        }
+    }
+
+    /**
+     * 对数-线性分桶的耗时分布: 16以内逐一分桶, 之后每个2的幂区间再等分为8个桶,
+     * 相对误差不超过12.5%; 各线程按线程号分段计数以减少竞争
+     */
+    private static class Histogram {
+
+        private static final int LINEAR = 16;
+        private static final int SUB_BITS = 3;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int BUCKETS = LINEAR + (63 - 4) * SUB_COUNT;
+        private static final int STRIPES = 4;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS * STRIPES);
+
+        static int indexOf(long value) {
+            if (value < LINEAR) {
+                return (int) Math.max(value, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+            return LINEAR + (exponent - 4) * SUB_COUNT + sub;
+        }
+
+        static long upperBound(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int exponent = (index - LINEAR) / SUB_COUNT + 4;
+            int sub = (index - LINEAR) % SUB_COUNT;
+            return ((long) (SUB_COUNT + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+
+        static long percentile(long[] buckets, long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(total * quantile));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(buckets.length - 1);
+        }
+
+        void record(long value) {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            counts.incrementAndGet(stripe * BUCKETS + indexOf(value));
+        }
+
+        long[] buckets() {
+            long[] buckets = new long[BUCKETS];
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    buckets[i] += counts.get(stripe * BUCKETS + i);
+                }
+            }
+            return buckets;
+        }
+    }
+
+    public static class Snapshot {
+
+        private final long count;
+
+        private final long errors;
+
+        private final long meanNanos;
+
+        private final long p50Nanos;
+
+        private final long p99Nanos;
+
+        private final long p999Nanos;
+
+        private final long maxNanos;
+
+        Snapshot(long count, long errors, long meanNanos, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+            this.count = count;
+            this.errors = errors;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count: " + count + ", errors: " + errors
+                    + ", mean: " + meanNanos / 1000 + "us"
+                    + ", p50: " + p50Nanos / 1000 + "us"
+                    + ", p99: " + p99Nanos / 1000 + "us"
+                    + ", p999: " + p999Nanos / 1000 + "us"
+                    + ", max: " + maxNanos / 1000 + "us";
+        }
+    }
+
+}
@@ -62,4 +62,25 @@ public @interface Cached {
      */
     int expire() default CacheExpire.FOREVER;
 
+    /**
+     * @return when {@code true}, concurrent cache misses on the same key
+     * share one in-flight {@code Method} invocation instead of each
+     * invoking it (batch mode coalesces overlapping miss keys)
+     */
+    boolean coalesce() default false;
+
+    /**
+     * @return soft expire time, same unit as {@code expire},
+     * when an entry is older than this the cached value is still returned
+     * and the {@code Method} is re-invoked asynchronously to refresh it,
+     * {@code 0} means disabled, should be less than {@code expire}
+     */
+    int refresh() default 0;
+
+    /**
+     * @return XFetch factor for probabilistic early refresh before {@code refresh},
+     * larger values refresh earlier, {@code 0} means only refresh after {@code refresh}
+     */
+    double beta() default 0;
+
 }
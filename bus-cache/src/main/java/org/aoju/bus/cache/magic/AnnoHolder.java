@@ -25,6 +25,8 @@
 package org.aoju.bus.cache.magic;
 
 import org.aoju.bus.cache.annotation.CacheKey;
+import org.aoju.bus.cache.support.ArgNameGenerator;
+import org.aoju.bus.cache.support.KeyExpression;
 
 import java.lang.reflect.Method;
 import java.util.Map;
@@ -42,24 +44,38 @@ public class AnnoHolder {
     private String cache;
     private String prefix;
     private int expire;
+    private boolean coalesce;
+    private int refresh;
+    private double beta;
 
     // @CacheKey
     private Map<Integer, CacheKey> cacheKeyMap;
 
+    // 与cacheKeyMap顺序一致的预解析表达式
+    private KeyExpression[] keyExpressions;
+
     private int multiIndex = -1;
 
     private String id;
 
     private AnnoHolder(Method method,
-                       String cache, String prefix, int expire,
+                       String cache, String prefix, int expire, boolean coalesce, int refresh, double beta,
                        Map<Integer, CacheKey> cacheKeyMap, int multiIndex, String id) {
         this.method = method;
         this.cache = cache;
         this.prefix = prefix;
         this.expire = expire;
+        this.coalesce = coalesce;
+        this.refresh = refresh;
+        this.beta = beta;
         this.cacheKeyMap = cacheKeyMap;
         this.multiIndex = multiIndex;
         this.id = id;
+
+        String[] argNames = ArgNameGenerator.getArgNames(method);
+        this.keyExpressions = cacheKeyMap.entrySet().stream()
+                .map(entry -> KeyExpression.of(entry.getKey(), entry.getValue().value(), argNames, multiIndex))
+                .toArray(KeyExpression[]::new);
     }
 
     public Method getMethod() {
@@ -78,10 +94,26 @@ public class AnnoHolder {
         return expire;
     }
 
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public int getRefresh() {
+        return refresh;
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+
     public Map<Integer, CacheKey> getCacheKeyMap() {
         return cacheKeyMap;
     }
 
+    public KeyExpression[] getKeyExpressions() {
+        return keyExpressions;
+    }
+
     public int getMultiIndex() {
         return multiIndex;
     }
@@ -104,6 +136,12 @@ public class AnnoHolder {
 
         private int expire;
 
+        private boolean coalesce;
+
+        private int refresh;
+
+        private double beta;
+
         private Map<Integer, CacheKey> cacheKeyMap;
 
         private int multiIndex = -1;
@@ -133,6 +171,21 @@ public class AnnoHolder {
             return this;
         }
 
+        public Builder setCoalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        public Builder setRefresh(int refresh) {
+            this.refresh = refresh;
+            return this;
+        }
+
+        public Builder setBeta(double beta) {
+            this.beta = beta;
+            return this;
+        }
+
         public Builder setMultiIndex(int multiIndex) {
             this.multiIndex = multiIndex;
             return this;
@@ -149,7 +202,7 @@ public class AnnoHolder {
         }
 
         public AnnoHolder build() {
-            return new AnnoHolder(method, cache, prefix, expire, cacheKeyMap, multiIndex, id);
+            return new AnnoHolder(method, cache, prefix, expire, coalesce, refresh, beta, cacheKeyMap, multiIndex, id);
         }
     }
 
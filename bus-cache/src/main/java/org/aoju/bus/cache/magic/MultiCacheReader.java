@@ -26,14 +26,14 @@ package org.aoju.bus.cache.magic;
 
 import org.aoju.bus.cache.Context;
 import org.aoju.bus.cache.Manage;
-import org.aoju.bus.cache.Shooting;
+import org.aoju.bus.cache.Metrics;
 import org.aoju.bus.cache.support.*;
 import org.aoju.bus.core.annotation.Inject;
 import org.aoju.bus.core.annotation.Singleton;
-import org.aoju.bus.logger.Logger;
 import org.aoju.bus.proxy.invoker.ProxyChain;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -50,8 +50,12 @@ public class MultiCacheReader extends AbstractReader {
     @Inject
     private Context config;
 
-    @Inject(optional = true)
-    private Shooting baseShooting;
+    @Inject
+    private Metrics metrics;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final Refresher refresher = new Refresher();
 
     private static Map mergeMap(Class<?> resultMapType,
                                 Map proceedEntryValueMap,
@@ -127,11 +131,16 @@ public class MultiCacheReader extends AbstractReader {
         Set<String> keys = key2MultiEntry.keySet();
         CacheKeys cacheKeys = cacheManager.readBatch(annoHolder.getCache(), keys);
         doRecord(cacheKeys, annoHolder);
+        doRefresh(cacheKeys, annoHolder, baseInvoker, pair, needWrite);
 
         Object result;
         // have miss keys : part hit || all not hit
         if (!cacheKeys.getMissKeySet().isEmpty()) {
-            result = handlePartHit(baseInvoker, cacheKeys, annoHolder, methodHolder, pair, needWrite);
+            if (annoHolder.isCoalesce()) {
+                result = handleCoalescedPartHit(baseInvoker, cacheKeys, annoHolder, methodHolder, pair, needWrite);
+            } else {
+                result = handlePartHit(baseInvoker, cacheKeys, annoHolder, methodHolder, pair, needWrite, null);
+            }
         }
         // no miss keys : all hit || empty key
         else {
@@ -142,9 +151,120 @@ public class MultiCacheReader extends AbstractReader {
         return result;
     }
 
+    /**
+     * 合并模式: 与其他线程正在加载的key不再重复回源;
+     * 先加载当前线程负责的key并公布结果, 再等待其余key的结果, 避免相互等待
+     */
+    private Object handleCoalescedPartHit(ProxyChain baseInvoker, CacheKeys cacheKeys,
+                                          AnnoHolder annoHolder, MethodHolder methodHolder,
+                                          Map[] pair, boolean needWrite) throws Throwable {
+        Map<String, CompletableFuture<Object>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Object>> waiting = new LinkedHashMap<>();
+        for (String key : cacheKeys.getMissKeySet()) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> inFlight = singleFlight.register(flightKey(annoHolder, key), future);
+            if (inFlight == null) {
+                owned.put(key, future);
+            } else {
+                waiting.put(key, inFlight);
+            }
+        }
+
+        Map<String, Object> loaded = new HashMap<>(owned.size());
+        try {
+            if (waiting.isEmpty()) {
+                // 没有重叠的key, 与非合并模式一致
+                return handlePartHit(baseInvoker, cacheKeys, annoHolder, methodHolder, pair, needWrite, loaded);
+            }
+            if (!owned.isEmpty()) {
+                CacheKeys ownedKeys = new CacheKeys(cacheKeys.getHitKeyMap(), new LinkedHashSet<>(owned.keySet()));
+                handlePartHit(baseInvoker, ownedKeys, annoHolder, methodHolder, pair, needWrite, loaded);
+            }
+        } catch (Throwable e) {
+            owned.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            owned.forEach((key, future) -> {
+                future.complete(loaded.get(key));
+                singleFlight.release(flightKey(annoHolder, key), future);
+            });
+        }
+
+        // 命中、自行加载及等待所得的结果一并按全命中方式组装返回值
+        Map<String, Object> keyValueMap = new LinkedHashMap<>(cacheKeys.getHitKeyMap());
+        keyValueMap.putAll(loaded);
+        for (Map.Entry<String, CompletableFuture<Object>> entry : waiting.entrySet()) {
+            Object value = SingleFlight.await(entry.getValue());
+            if (value != null) {
+                keyValueMap.put(entry.getKey(), value);
+            }
+        }
+
+        return handleFullHit(baseInvoker, keyValueMap, methodHolder, pair[1]);
+    }
+
+    /**
+     * 还原命中的软过期缓存值, 并将已软过期的key提交异步刷新
+     */
+    private void doRefresh(CacheKeys cacheKeys, AnnoHolder annoHolder, ProxyChain baseInvoker,
+                           Map[] pair, boolean needWrite) {
+        Map<String, Object> hitKeyValueMap = cacheKeys.getHitKeyMap();
+        if (annoHolder.getRefresh() <= 0) {
+            hitKeyValueMap.replaceAll((key, value) -> Refresher.unwrap(value));
+            return;
+        }
+
+        List<String> staleKeys = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : hitKeyValueMap.entrySet()) {
+            if (needWrite && Refresher.isStale(annoHolder, entry.getValue())) {
+                staleKeys.add(flightKey(annoHolder, entry.getKey()));
+            }
+            entry.setValue(Refresher.unwrap(entry.getValue()));
+        }
+
+        if (!staleKeys.isEmpty()) {
+            Object[] args = baseInvoker.getArguments().clone();
+            int prefixLength = flightKey(annoHolder, "").length();
+            refresher.submit(staleKeys, claimed -> {
+                Set<String> refreshKeys = claimed.stream()
+                        .map(key -> key.substring(prefixLength))
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                doRefreshLoad(refreshKeys, annoHolder, baseInvoker, args, pair);
+            });
+        }
+    }
+
+    private void doRefreshLoad(Set<String> refreshKeys, AnnoHolder annoHolder, ProxyChain baseInvoker,
+                               Object[] args, Map[] pair) throws Throwable {
+        Map<Object, String> multiEntry2Key = pair[0];
+        Map<String, Object> key2MultiEntry = pair[1];
+
+        Object[] refreshArgs = toMissArgs(refreshKeys, key2MultiEntry, args, annoHolder.getMultiIndex());
+        long start = System.currentTimeMillis();
+        Object proceed = baseInvoker.proceed(refreshArgs);
+        long delta = System.currentTimeMillis() - start;
+        if (proceed == null) {
+            return;
+        }
+
+        Map<String, Object> keyValueMap;
+        if (proceed instanceof Map) {
+            keyValueMap = KeyValueUtils.mapToKeyValue((Map) proceed, refreshKeys, multiEntry2Key, config.getPrevent());
+        } else {
+            Collection proceedCollection = asCollection(proceed, proceed.getClass());
+            keyValueMap = KeyValueUtils.collectionToKeyValue(proceedCollection, annoHolder.getId(), refreshKeys, multiEntry2Key, config.getPrevent());
+        }
+        Refresher.wrap(annoHolder, keyValueMap, delta);
+        cacheManager.writeBatch(annoHolder.getCache(), keyValueMap, annoHolder.getExpire());
+    }
+
+    private String flightKey(AnnoHolder annoHolder, String key) {
+        return annoHolder.getCache() + ":" + key;
+    }
+
     private Object handlePartHit(ProxyChain baseInvoker, CacheKeys cacheKeys,
                                  AnnoHolder annoHolder, MethodHolder methodHolder,
-                                 Map[] pair, boolean needWrite) throws Throwable {
+                                 Map[] pair, boolean needWrite, Map<String, Object> loaded) throws Throwable {
 
         Map<Object, String> multiEntry2Key = pair[0];
         Map<String, Object> key2MultiEntry = pair[1];
@@ -154,7 +274,9 @@ public class MultiCacheReader extends AbstractReader {
 
         // 用未命中的keys调用方法
         Object[] missArgs = toMissArgs(missKeys, key2MultiEntry, baseInvoker.getArguments(), annoHolder.getMultiIndex());
+        long start = System.currentTimeMillis();
         Object proceed = doLogInvoke(() -> baseInvoker.proceed(missArgs));
+        long delta = System.currentTimeMillis() - start;
 
         Object result;
         if (proceed != null) {
@@ -164,10 +286,10 @@ public class MultiCacheReader extends AbstractReader {
                 Map proceedEntryValueMap = (Map) proceed;
 
                 // 为了兼容@CachedGet注解, 客户端缓存
-                if (needWrite) {
+                if (needWrite || loaded != null) {
                     // 将方法调用返回的map转换成key_value_map写入Cache
                     Map<String, Object> keyValueMap = KeyValueUtils.mapToKeyValue(proceedEntryValueMap, missKeys, multiEntry2Key, config.getPrevent());
-                    cacheManager.writeBatch(annoHolder.getCache(), keyValueMap, annoHolder.getExpire());
+                    write(annoHolder, needWrite, keyValueMap, loaded, delta);
                 }
                 // 将方法调用返回的map与从Cache中读取的key_value_map合并返回
                 result = mergeMap(returnType, proceedEntryValueMap, key2MultiEntry, hitKeyValueMap);
@@ -175,10 +297,10 @@ public class MultiCacheReader extends AbstractReader {
                 Collection proceedCollection = asCollection(proceed, returnType);
 
                 // 为了兼容@CachedGet注解, 客户端缓存
-                if (needWrite) {
+                if (needWrite || loaded != null) {
                     // 将方法调用返回的collection转换成key_value_map写入Cache
                     Map<String, Object> keyValueMap = KeyValueUtils.collectionToKeyValue(proceedCollection, annoHolder.getId(), missKeys, multiEntry2Key, config.getPrevent());
-                    cacheManager.writeBatch(annoHolder.getCache(), keyValueMap, annoHolder.getExpire());
+                    write(annoHolder, needWrite, keyValueMap, loaded, delta);
                 }
                 // 将方法调用返回的collection与从Cache中读取的key_value_map合并返回
                 Collection resultCollection = mergeCollection(returnType, proceedCollection, hitKeyValueMap);
@@ -192,6 +314,18 @@ public class MultiCacheReader extends AbstractReader {
         return result;
     }
 
+    private void write(AnnoHolder annoHolder, boolean needWrite,
+                       Map<String, Object> keyValueMap, Map<String, Object> loaded, long delta) {
+        // 合并模式下将回源结果公布给等待中的线程
+        if (loaded != null) {
+            loaded.putAll(keyValueMap);
+        }
+        if (needWrite) {
+            Refresher.wrap(annoHolder, keyValueMap, delta);
+            cacheManager.writeBatch(annoHolder.getCache(), keyValueMap, annoHolder.getExpire());
+        }
+    }
+
     private Object asType(Collection collection, Class<?> returnType) {
         if (Collection.class.isAssignableFrom(returnType)) {
             return collection;
@@ -255,16 +389,10 @@ public class MultiCacheReader extends AbstractReader {
         // 计数
         int hitCount = cacheKeys.getHitKeyMap().size();
         int totalCount = hitCount + missKeys.size();
-        Logger.info("multi cache hit rate: {}/{}, missed keys: {}",
-                hitCount, totalCount, missKeys);
 
-        if (this.baseShooting != null) {
-            // 分组模板
-            String pattern = PatternGenerator.generatePattern(annoHolder);
-
-            this.baseShooting.hitIncr(pattern, hitCount);
-            this.baseShooting.reqIncr(pattern, totalCount);
-        }
+        // 分组模板, 仅做内存计数, 由Metrics定时批量写入Shooting
+        String pattern = PatternGenerator.generatePattern(annoHolder);
+        this.metrics.shoot(pattern, hitCount, totalCount);
     }
 
 }
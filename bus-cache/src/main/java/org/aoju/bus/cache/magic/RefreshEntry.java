@@ -0,0 +1,72 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.magic;
+
+import java.io.Serializable;
+
+/**
+ * 带软过期信息的缓存值
+ * 开启{@code refresh}时写入缓存的是该对象, 读取时还原为原始值
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class RefreshEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 原始值
+    private Object value;
+
+    // 写入时间
+    private long createAt;
+
+    // 本次回源耗时, 用于提前刷新的概率计算
+    private long delta;
+
+    private RefreshEntry() {
+        // 供序列化框架使用
+    }
+
+    public RefreshEntry(Object value, long createAt, long delta) {
+        this.value = value;
+        this.createAt = createAt;
+        this.delta = delta;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getCreateAt() {
+        return createAt;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.magic;
+
+import org.aoju.bus.cache.support.PreventObjects;
+import org.aoju.bus.core.thread.ExecutorBuilder;
+import org.aoju.bus.core.thread.NamedThreadFactory;
+import org.aoju.bus.logger.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 缓存软过期后的异步刷新
+ * 超过{@code refresh}时长的缓存值照常返回, 同时在有界线程池中回源并重新写入;
+ * 设置{@code beta}后按XFetch算法在软过期前概率性地提前刷新, 以打散集中的回源
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class Refresher {
+
+    private static final int THREADS = 2;
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService executor = ExecutorBuilder.create()
+            .setCorePoolSize(THREADS)
+            .setMaxPoolSize(THREADS)
+            .useArrayBlockingQueue(QUEUE_CAPACITY)
+            .setThreadFactory(new NamedThreadFactory("cache-refresh-"))
+            .setHandler(new ThreadPoolExecutor.AbortPolicy())
+            .build();
+
+    /**
+     * 按需包装待写入的值
+     *
+     * @param annoHolder 缓存注解信息
+     * @param value      原始值
+     * @param delta      回源耗时
+     * @return 未开启软过期或为防击穿对象时返回原始值
+     */
+    public static Object wrap(AnnoHolder annoHolder, Object value, long delta) {
+        if (annoHolder.getRefresh() <= 0 || value == null || PreventObjects.isPrevent(value)) {
+            return value;
+        }
+        return new RefreshEntry(value, System.currentTimeMillis(), delta);
+    }
+
+    public static void wrap(AnnoHolder annoHolder, Map<String, Object> keyValueMap, long delta) {
+        if (annoHolder.getRefresh() > 0) {
+            keyValueMap.replaceAll((key, value) -> wrap(annoHolder, value, delta));
+        }
+    }
+
+    public static Object unwrap(Object value) {
+        if (value instanceof RefreshEntry) {
+            return ((RefreshEntry) value).getValue();
+        }
+        return value;
+    }
+
+    /**
+     * 判断缓存值是否需要刷新
+     *
+     * @param annoHolder 缓存注解信息
+     * @param value      从缓存读取的值
+     * @return true: 已软过期或被选中提前刷新
+     */
+    public static boolean isStale(AnnoHolder annoHolder, Object value) {
+        if (annoHolder.getRefresh() <= 0 || !(value instanceof RefreshEntry)) {
+            return false;
+        }
+
+        RefreshEntry entry = (RefreshEntry) value;
+        long now = System.currentTimeMillis();
+        long softExpireAt = entry.getCreateAt() + annoHolder.getRefresh();
+        if (now >= softExpireAt) {
+            return true;
+        }
+
+        // XFetch: now - delta * beta * ln(rand) >= softExpireAt
+        double beta = annoHolder.getBeta();
+        return beta > 0
+                && now - entry.getDelta() * beta * Math.log(ThreadLocalRandom.current().nextDouble()) >= softExpireAt;
+    }
+
+    /**
+     * 提交刷新任务, 同一个key同一时刻只刷新一次, 线程池满时放弃本次刷新
+     *
+     * @param keys 待刷新的key
+     * @param task 刷新逻辑, 参数为实际由本次任务负责的key
+     */
+    public void submit(Collection<String> keys, RefreshTask task) {
+        List<String> claimed = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (refreshing.add(key)) {
+                claimed.add(key);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.refresh(claimed);
+                } catch (Throwable e) {
+                    Logger.error("refresh cache failed, keys: {}", claimed, e);
+                } finally {
+                    refreshing.removeAll(claimed);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.removeAll(claimed);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RefreshTask {
+        void refresh(List<String> keys) throws Throwable;
+    }
+
+}
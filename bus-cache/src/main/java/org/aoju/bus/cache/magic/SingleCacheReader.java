@@ -26,15 +26,16 @@ package org.aoju.bus.cache.magic;
 
 import org.aoju.bus.cache.Context;
 import org.aoju.bus.cache.Manage;
-import org.aoju.bus.cache.Shooting;
+import org.aoju.bus.cache.Metrics;
 import org.aoju.bus.cache.support.KeyGenerator;
 import org.aoju.bus.cache.support.PatternGenerator;
 import org.aoju.bus.cache.support.PreventObjects;
 import org.aoju.bus.core.annotation.Inject;
 import org.aoju.bus.core.annotation.Singleton;
-import org.aoju.bus.logger.Logger;
 import org.aoju.bus.proxy.invoker.ProxyChain;
 
+import java.util.Collections;
+
 /**
  * @author Kimi Liu
  * @version 5.6.9
@@ -49,8 +50,12 @@ public class SingleCacheReader extends AbstractReader {
     @Inject
     private Context config;
 
-    @Inject(optional = true)
-    private Shooting baseShooting;
+    @Inject
+    private Metrics metrics;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final Refresher refresher = new Refresher();
 
     @Override
     public Object read(AnnoHolder annoHolder, MethodHolder methodHolder, ProxyChain baseInvoker, boolean needWrite) throws Throwable {
@@ -65,13 +70,32 @@ public class SingleCacheReader extends AbstractReader {
                 return null;
             }
 
-            return readResult;
+            // 软过期: 照常返回缓存值, 异步回源刷新
+            if (needWrite && Refresher.isStale(annoHolder, readResult)) {
+                Object[] args = baseInvoker.getArguments().clone();
+                refresher.submit(Collections.singletonList(annoHolder.getCache() + ":" + key),
+                        keys -> doLoad(key, annoHolder, methodHolder, () -> baseInvoker.proceed(args), true));
+            }
+
+            return Refresher.unwrap(readResult);
         }
 
 
         // not hit
+        if (annoHolder.isCoalesce()) {
+            // 同一个key的并发未命中只回源一次
+            return singleFlight.execute(annoHolder.getCache() + ":" + key,
+                    () -> doLoad(key, annoHolder, methodHolder, baseInvoker::proceed, needWrite));
+        }
+        return doLoad(key, annoHolder, methodHolder, baseInvoker::proceed, needWrite);
+    }
+
+    private Object doLoad(String key, AnnoHolder annoHolder, MethodHolder methodHolder,
+                          ThrowableSupplier<Object> invoker, boolean needWrite) throws Throwable {
         // invoke method
-        Object invokeResult = doLogInvoke(baseInvoker::proceed);
+        long start = System.currentTimeMillis();
+        Object invokeResult = doLogInvoke(invoker);
+        long delta = System.currentTimeMillis() - start;
         if (invokeResult != null && methodHolder.getInnerReturnType() == null) {
             methodHolder.setInnerReturnType(invokeResult.getClass());
         }
@@ -81,7 +105,7 @@ public class SingleCacheReader extends AbstractReader {
         }
 
         if (invokeResult != null) {
-            cacheManager.writeSingle(annoHolder.getCache(), key, invokeResult, annoHolder.getExpire());
+            cacheManager.writeSingle(annoHolder.getCache(), key, Refresher.wrap(annoHolder, invokeResult, delta), annoHolder.getExpire());
             return invokeResult;
         }
 
@@ -94,15 +118,9 @@ public class SingleCacheReader extends AbstractReader {
     }
 
     private void doRecord(Object result, String key, AnnoHolder annoHolder) {
-        Logger.info("single cache hit rate: {}/1, key: {}", result == null ? 0 : 1, key);
-        if (this.baseShooting != null) {
-            String pattern = PatternGenerator.generatePattern(annoHolder);
-
-            if (result != null) {
-                this.baseShooting.hitIncr(pattern, 1);
-            }
-            this.baseShooting.reqIncr(pattern, 1);
-        }
+        // 仅做内存计数, 由Metrics定时批量写入Shooting
+        String pattern = PatternGenerator.generatePattern(annoHolder);
+        this.metrics.shoot(pattern, result == null ? 0 : 1, 1);
     }
 
 }
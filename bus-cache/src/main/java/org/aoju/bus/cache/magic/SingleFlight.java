@@ -0,0 +1,108 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.magic;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 缓存未命中时的请求合并
+ * 同一个key同一时刻只有一个线程回源加载, 其余并发请求等待并共享其结果(或异常)
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 获取异步结果, 并还原加载时抛出的原始异常
+     *
+     * @param future 加载结果
+     * @return 加载的值
+     * @throws Throwable 加载时的异常
+     */
+    public static Object await(CompletableFuture<Object> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 加载指定key, 若该key已在加载中则等待其结果
+     *
+     * @param key    键
+     * @param loader 加载逻辑
+     * @return 加载的值
+     * @throws Throwable 加载时的异常
+     */
+    public Object execute(String key, AbstractReader.ThrowableSupplier<Object> loader) throws Throwable {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = flights.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            Object value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, future);
+        }
+    }
+
+    /**
+     * 登记一次加载
+     *
+     * @param key    键
+     * @param future 当前线程的加载结果
+     * @return 已在加载中的结果, 为空表示登记成功, 由当前线程负责加载并调用{@link #release}
+     */
+    public CompletableFuture<Object> register(String key, CompletableFuture<Object> future) {
+        return flights.putIfAbsent(key, future);
+    }
+
+    /**
+     * 结束登记的加载, 未完成的结果以空值完成
+     *
+     * @param key    键
+     * @param future 登记时的加载结果
+     */
+    public void release(String key, CompletableFuture<Object> future) {
+        future.complete(null);
+        flights.remove(key, future);
+    }
+
+}
@@ -0,0 +1,242 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.metric;
+
+import org.aoju.bus.cache.CacheX;
+import org.aoju.bus.cache.support.InvalidateChannel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 二级缓存支持
+ * 本地缓存(L1)在前,远程缓存(L2)在后: 读操作优先命中本地,
+ * 批量读取仅将本地未命中的键发往远程; 写入及移除操作
+ * 通过失效广播通道通知其他节点清除各自的本地副本.
+ * 每次失效都会推进键所在分段的版本号, 读取回填前后各校验一次版本,
+ * 远程读取期间发生过失效的回填会被丢弃, 避免旧值在本地长期驻留
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class NearCache implements CacheX {
+
+    /**
+     * 失效版本号分段数, 须为2的幂
+     */
+    private static final int STRIPES = 64;
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final CacheX local;
+
+    private final CacheX remote;
+
+    private final InvalidateChannel channel;
+
+    private final long localExpire;
+
+    /**
+     * 按键分段的失效版本号
+     */
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    public NearCache(CacheX remote, long localSize, long localExpire) {
+        this(new TinyLfuCache(localSize), remote, null, localExpire);
+    }
+
+    /**
+     * @param local       本地缓存
+     * @param remote      远程缓存
+     * @param channel     失效广播通道,为空时不做节点间同步
+     * @param localExpire 本地副本最长存活时间,单位毫秒,广播消息丢失时以此限制脏数据的存活时长;
+     *                    不大于0时写入沿用远程失效时长,读取回填的副本仅受本地容量限制
+     */
+    public NearCache(CacheX local, CacheX remote, InvalidateChannel channel, long localExpire) {
+        this.local = local;
+        this.remote = remote;
+        this.channel = channel;
+        this.localExpire = localExpire;
+        if (channel != null) {
+            channel.subscribe((source, keys) -> {
+                if (id.equals(source)) {
+                    return;
+                }
+                if (keys == null || keys.length == 0) {
+                    invalidate();
+                    local.clear();
+                } else {
+                    invalidate(keys);
+                    local.remove(keys);
+                }
+            });
+        }
+    }
+
+    @Override
+    public Object read(String key) {
+        Object value = local.read(key);
+        if (value != null) {
+            return value;
+        }
+
+        final long version = version(key);
+        value = remote.read(key);
+        if (value != null && version(key) == version) {
+            local.write(key, value, localExpire);
+            // 回填期间发生失效时撤销回填
+            if (version(key) != version) {
+                local.remove(key);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Map<String, Object> read(Collection<String> keys) {
+        Map<String, Object> hits = local.read(keys);
+        Map<String, Object> result = new HashMap<>(keys.size());
+        List<String> missKeys = new ArrayList<>();
+        for (String key : keys) {
+            Object value = hits.get(key);
+            if (value == null) {
+                missKeys.add(key);
+            } else {
+                result.put(key, value);
+            }
+        }
+
+        if (!missKeys.isEmpty()) {
+            Map<String, Long> stamps = new HashMap<>(missKeys.size());
+            for (String key : missKeys) {
+                stamps.put(key, version(key));
+            }
+            Map<String, Object> remoteValues = remote.read(missKeys);
+            Map<String, Object> fill = new HashMap<>(remoteValues.size());
+            for (Map.Entry<String, Object> entry : remoteValues.entrySet()) {
+                Long stamp = stamps.get(entry.getKey());
+                if (entry.getValue() != null && stamp != null && version(entry.getKey()) == stamp) {
+                    fill.put(entry.getKey(), entry.getValue());
+                }
+                result.put(entry.getKey(), entry.getValue());
+            }
+            if (!fill.isEmpty()) {
+                local.write(fill, localExpire);
+                List<String> stale = new ArrayList<>();
+                for (String key : fill.keySet()) {
+                    if (version(key) != stamps.get(key)) {
+                        stale.add(key);
+                    }
+                }
+                if (!stale.isEmpty()) {
+                    local.remove(stale.toArray(new String[0]));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void write(String key, Object value, long expire) {
+        remote.write(key, value, expire);
+        invalidate(key);
+        local.write(key, value, localExpire(expire));
+        publish(key);
+    }
+
+    @Override
+    public void write(Map<String, Object> keyValueMap, long expire) {
+        remote.write(keyValueMap, expire);
+        String[] keys = keyValueMap.keySet().toArray(new String[0]);
+        invalidate(keys);
+        local.write(keyValueMap, localExpire(expire));
+        publish(keys);
+    }
+
+    @Override
+    public void remove(String... keys) {
+        if (keys.length == 0) {
+            return;
+        }
+        remote.remove(keys);
+        invalidate(keys);
+        local.remove(keys);
+        publish(keys);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        invalidate();
+        local.clear();
+        publish();
+    }
+
+    private long localExpire(long expire) {
+        if (localExpire <= 0) {
+            return expire;
+        }
+        return expire > 0 ? Math.min(expire, localExpire) : localExpire;
+    }
+
+    private long version(String key) {
+        return versions.get(stripe(key));
+    }
+
+    /**
+     * 推进键所在分段的版本号, 不传键时推进全部分段
+     *
+     * @param keys 失效的键
+     */
+    private void invalidate(String... keys) {
+        if (keys.length == 0) {
+            for (int i = 0; i < STRIPES; i++) {
+                versions.incrementAndGet(i);
+            }
+            return;
+        }
+        for (String key : keys) {
+            versions.incrementAndGet(stripe(key));
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private void publish(String... keys) {
+        if (channel != null) {
+            channel.publish(id, keys);
+        }
+    }
+
+}
@@ -0,0 +1,563 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.metric;
+
+import org.aoju.bus.cache.CacheX;
+import org.aoju.bus.cache.magic.CacheExpire;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * 有界进程内缓存支持
+ * 采用W-TinyLFU淘汰策略: 新写入条目先进入窗口LRU,
+ * 溢出后与主区(试用区+保护区)的淘汰候选按访问频率比较决定去留,
+ * 可抵御批量扫描对热点数据的冲刷;条目按写入时指定的失效时长逐条过期
+ * <p>
+ * 读操作不加锁,访问记录写入有损环形缓冲区,由写操作或缓冲区写满时批量回放
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class TinyLfuCache implements CacheX {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int RETIRED = -1;
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_BUFFER_THRESHOLD = READ_BUFFER_SIZE >>> 2;
+    private static final int EXPIRE_SCAN_LIMIT = 16;
+
+    private final ConcurrentMap<String, Node> map = new ConcurrentHashMap<>();
+    private final ToIntBiFunction<String, Object> weigher;
+    private final FrequencySketch sketch;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final long expire;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final NodeDeque window = new NodeDeque();
+    private final NodeDeque probation = new NodeDeque();
+    private final NodeDeque protect = new NodeDeque();
+
+    // 以下字段仅在持有evictionLock时访问
+    private long windowWeight;
+    private long protectedWeight;
+    private long weight;
+    private long readBufferReadCount;
+
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readBufferWriteCount = new AtomicLong();
+
+    public TinyLfuCache(long size) {
+        this(size, CacheExpire.FOREVER);
+    }
+
+    public TinyLfuCache(long size, long expire) {
+        this(size, expire, (key, value) -> 1);
+    }
+
+    /**
+     * @param maximum 最大权重,使用默认权重计算时即最大条目数
+     * @param expire  写入未指定失效时长时的默认失效时长,单位毫秒,不大于0表示永不失效
+     * @param weigher 条目权重计算,返回值不能为负数
+     */
+    public TinyLfuCache(long maximum, long expire, ToIntBiFunction<String, Object> weigher) {
+        if (maximum <= 0) {
+            throw new IllegalArgumentException("maximum must be positive: " + maximum);
+        }
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8);
+        this.expire = expire;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maximum);
+    }
+
+    @Override
+    public Object read(String key) {
+        Node node = map.get(key);
+        sketch.increment(key.hashCode());
+        if (node == null) {
+            return null;
+        }
+        if (node.expireAt <= System.currentTimeMillis()) {
+            afterRead(null);
+            return null;
+        }
+        afterRead(node);
+        return node.value;
+    }
+
+    @Override
+    public Map<String, Object> read(Collection<String> keys) {
+        Map<String, Object> subCache = new HashMap<>(keys.size());
+        for (String key : keys) {
+            subCache.put(key, read(key));
+        }
+        return subCache;
+    }
+
+    @Override
+    public void write(String key, Object value, long expire) {
+        if (value == null) {
+            return;
+        }
+        Node node = newNode(key, value, expire, System.currentTimeMillis());
+        evictionLock.lock();
+        try {
+            Node prior = map.put(key, node);
+            if (prior != null) {
+                unlink(prior);
+            }
+            admit(node);
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(Map<String, Object> keyValueMap, long expire) {
+        long now = System.currentTimeMillis();
+        evictionLock.lock();
+        try {
+            for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                Node node = newNode(entry.getKey(), entry.getValue(), expire, now);
+                Node prior = map.put(node.key, node);
+                if (prior != null) {
+                    unlink(prior);
+                }
+                admit(node);
+            }
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String... keys) {
+        evictionLock.lock();
+        try {
+            for (String key : keys) {
+                Node node = map.remove(key);
+                if (node != null) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                readBuffer.lazySet(i, null);
+            }
+            readBufferReadCount = readBufferWriteCount.get();
+            for (NodeDeque deque : new NodeDeque[]{window, probation, protect}) {
+                for (Node node = deque.first(); node != null; node = deque.first()) {
+                    deque.unlink(node);
+                    node.queue = RETIRED;
+                }
+            }
+            map.clear();
+            windowWeight = 0;
+            protectedWeight = 0;
+            weight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 清理全部已过期条目,并回放积压的访问记录
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            long now = System.currentTimeMillis();
+            map.values().removeIf(node -> {
+                if (node.expireAt <= now) {
+                    unlink(node);
+                    return true;
+                }
+                return false;
+            });
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 当前条目数量(可能包含尚未清理的过期条目)
+     *
+     * @return 条目数量
+     */
+    public long size() {
+        return map.size();
+    }
+
+    private Node newNode(String key, Object value, long expire, long now) {
+        long ttl = expire > 0 ? expire : this.expire;
+        long expireAt = ttl > 0 ? now + ttl : Long.MAX_VALUE;
+        int nodeWeight = weigher.applyAsInt(key, value);
+        if (nodeWeight < 0) {
+            throw new IllegalArgumentException("weight must not be negative: " + nodeWeight);
+        }
+        return new Node(key, value, nodeWeight, expireAt);
+    }
+
+    /**
+     * 记录一次访问, 缓冲区积压到阈值时尝试回放; 回放失败(锁竞争)时丢弃访问记录即可
+     */
+    private void afterRead(Node node) {
+        long pending;
+        if (node != null) {
+            long index = readBufferWriteCount.getAndIncrement();
+            readBuffer.lazySet((int) index & READ_BUFFER_MASK, node);
+            pending = index + 1;
+        } else {
+            pending = readBufferWriteCount.get();
+        }
+        if (pending - readBufferReadCount >= READ_BUFFER_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void maintenance() {
+        drainReadBuffer();
+        expireEntries();
+        evictEntries();
+    }
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                onAccess(node);
+            }
+        }
+        readBufferReadCount = readBufferWriteCount.get();
+    }
+
+    private void onAccess(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                protect.addLast(node);
+                node.queue = PROTECTED;
+                protectedWeight += node.weight;
+                demoteFromProtected();
+                break;
+            case PROTECTED:
+                protect.moveToBack(node);
+                break;
+            default:
+                // 已被移除的条目
+        }
+    }
+
+    private void admit(Node node) {
+        window.addLast(node);
+        node.queue = WINDOW;
+        windowWeight += node.weight;
+        weight += node.weight;
+    }
+
+    private void demoteFromProtected() {
+        while (protectedWeight > protectedMaximum) {
+            Node demoted = protect.first();
+            if (demoted == null) {
+                break;
+            }
+            protect.unlink(demoted);
+            protectedWeight -= demoted.weight;
+            probation.addLast(demoted);
+            demoted.queue = PROBATION;
+        }
+    }
+
+    private void expireEntries() {
+        long now = System.currentTimeMillis();
+        for (NodeDeque deque : new NodeDeque[]{window, probation, protect}) {
+            Node node = deque.first();
+            for (int i = 0; node != null && i < EXPIRE_SCAN_LIMIT; i++) {
+                Node next = node.next;
+                if (node.expireAt <= now) {
+                    evict(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private void evictEntries() {
+        // 窗口溢出的条目进入试用区尾部, 成为准入候选
+        while (windowWeight > windowMaximum) {
+            Node node = window.first();
+            if (node == null) {
+                break;
+            }
+            window.unlink(node);
+            windowWeight -= node.weight;
+            probation.addLast(node);
+            node.queue = PROBATION;
+        }
+
+        while (weight > maximum) {
+            Node victim = probation.first();
+            Node candidate = probation.last();
+            if (victim == null) {
+                victim = protect.first() != null ? protect.first() : window.first();
+                if (victim == null) {
+                    break;
+                }
+                evict(victim);
+            } else if (candidate == victim || candidate.weight > maximum) {
+                evict(candidate);
+            } else if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        map.remove(node.key, node);
+        unlink(node);
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.unlink(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                break;
+            case PROTECTED:
+                protect.unlink(node);
+                protectedWeight -= node.weight;
+                break;
+            default:
+                return;
+        }
+        weight -= node.weight;
+        node.queue = RETIRED;
+    }
+
+    private static final class Node {
+
+        final String key;
+        final Object value;
+        final int weight;
+        final long expireAt;
+
+        // 以下字段仅在持有evictionLock时访问
+        int queue = RETIRED;
+        Node prev;
+        Node next;
+
+        Node(String key, Object value, int weight, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 侵入式双向链表, 头部为最久未访问
+     */
+    private static final class NodeDeque {
+
+        private Node head;
+        private Node tail;
+
+        Node first() {
+            return head;
+        }
+
+        Node last() {
+            return tail;
+        }
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void unlink(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node node) {
+            if (node != tail) {
+                unlink(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * 4位计数的Count-Min频率草图, 计数总量达到采样上限后整体减半以实现老化
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEED = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final AtomicLongArray table;
+        private final AtomicInteger size = new AtomicInteger();
+        private final int tableMask;
+        private final int sampleSize;
+
+        FrequencySketch(long maximum) {
+            int capacity = (int) Math.min(Math.max(maximum, 8), 1 << 30);
+            int length = Integer.highestOneBit(capacity - 1) << 1;
+            this.table = new AtomicLongArray(length);
+            this.tableMask = length - 1;
+            this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+
+        int frequency(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table.get(index) >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && size.incrementAndGet() >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int counter) {
+            int offset = counter << 2;
+            long mask = 0xfL << offset;
+            for (; ; ) {
+                long value = table.get(index);
+                if ((value & mask) == mask) {
+                    return false;
+                }
+                if (table.compareAndSet(index, value, value + (1L << offset))) {
+                    return true;
+                }
+            }
+        }
+
+        private int indexOf(int item, int i) {
+            long hash = (item + SEED[i]) * SEED[i];
+            hash += (hash >>> 32);
+            return ((int) hash) & tableMask;
+        }
+
+        private void reset() {
+            int current = size.get();
+            if (current < sampleSize || !size.compareAndSet(current, current >>> 1)) {
+                return;
+            }
+            for (int i = 0; i < table.length(); i++) {
+                for (; ; ) {
+                    long value = table.get(i);
+                    if (table.compareAndSet(i, value, (value >>> 1) & RESET_MASK)) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+}
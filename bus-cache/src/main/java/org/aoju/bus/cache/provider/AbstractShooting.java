@@ -25,8 +25,8 @@
 package org.aoju.bus.cache.provider;
 
 import org.aoju.bus.cache.Shooting;
-import org.aoju.bus.cache.magic.CachePair;
 import org.aoju.bus.core.lang.Normal;
+import org.aoju.bus.logger.Logger;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.yaml.snakeyaml.Yaml;
 
@@ -35,33 +35,38 @@ import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
+ * 基于数据库的命中率统计
+ * 计数先按分组在内存中聚合, 由后台线程定时把增量合并成一次批量语句提交;
+ * 内存中的分组数有上限, 超出后新分组的计数被丢弃并记入{@link #getDropped()}
+ *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
  */
 public abstract class AbstractShooting implements Shooting {
 
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread thread = new Thread(r);
         thread.setName("cache:db-writer");
         thread.setDaemon(true);
         return thread;
     });
 
-    private static final Lock lock = new ReentrantLock();
+    private static final long FLUSH_INTERVAL_MS = 1000;
 
-    private volatile boolean isShutdown = false;
+    private static final int MAX_PATTERNS = 1024;
 
-    private BlockingQueue<CachePair<String, Integer>> hitQueue = new LinkedTransferQueue<>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
 
-    private BlockingQueue<CachePair<String, Integer>> requireQueue = new LinkedTransferQueue<>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final ScheduledFuture<?> flushFuture;
 
     private JdbcOperations jdbcOperations;
 
@@ -72,12 +77,7 @@ public abstract class AbstractShooting implements Shooting {
         this.sqls = new Yaml().loadAs(resource, Properties.class);
 
         this.jdbcOperations = jdbcOperationsSupplier(context).get();
-        executor.submit(() -> {
-            while (!isShutdown) {
-                dumpToDB(hitQueue, "hit_count");
-                dumpToDB(requireQueue, "require_count");
-            }
-        });
+        this.flushFuture = executor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     public AbstractShooting(String url, String username, String password) {
@@ -117,33 +117,33 @@ public abstract class AbstractShooting implements Shooting {
      */
     protected abstract Stream<DataDO> transferResults(List<Map<String, Object>> map);
 
-    private void dumpToDB(BlockingQueue<CachePair<String, Integer>> queue, String column) {
-        long times = 0;
-        CachePair<String, Integer> head;
-
-        // gather queue's all or before 100 data to a Map
-        Map<String, AtomicLong> holdMap = new HashMap<>();
-        while ((head = queue.poll()) != null && times <= 100) {
-            holdMap
-                    .computeIfAbsent(head.getLeft(), (key) -> new AtomicLong(0L))
-                    .addAndGet(head.getRight());
-            ++times;
-        }
-
-        // batch write to DB
-        holdMap.forEach((pattern, count) -> countAddCas(column, pattern, count.get()));
-    }
-
     @Override
     public void hitIncr(String pattern, int count) {
-        if (count != 0)
-            hitQueue.add(CachePair.of(pattern, count));
+        if (count != 0) {
+            Counter counter = counter(pattern);
+            if (counter != null) {
+                counter.hit.add(count);
+            }
+        }
     }
 
     @Override
     public void reqIncr(String pattern, int count) {
-        if (count != 0)
-            requireQueue.add(CachePair.of(pattern, count));
+        if (count != 0) {
+            Counter counter = counter(pattern);
+            if (counter != null) {
+                counter.require.add(count);
+            }
+        }
+    }
+
+    /**
+     * 因分组数超过上限而被丢弃的计数事件数
+     *
+     * @return 丢弃数
+     */
+    public long getDropped() {
+        return dropped.get();
     }
 
     @Override
@@ -172,44 +172,94 @@ public abstract class AbstractShooting implements Shooting {
 
     @Override
     public void reset(String pattern) {
+        counters.remove(pattern);
         jdbcOperations.update(sqls.getProperty("delete"), pattern);
     }
 
     @Override
     public void resetAll() {
+        counters.clear();
         jdbcOperations.update(sqls.getProperty("truncate"));
     }
 
-    private void countAddCas(String column, String pattern, long count) {
-        Optional<DataDO> dataOptional = queryObject(pattern);
+    private Counter counter(String pattern) {
+        Counter counter = counters.get(pattern);
+        if (counter == null) {
+            if (counters.size() >= MAX_PATTERNS) {
+                dropped.incrementAndGet();
+                return null;
+            }
+            counter = counters.computeIfAbsent(pattern, (key) -> new Counter());
+        }
+        return counter;
+    }
 
-        // if has pattern record, update it.
-        if (dataOptional.isPresent()) {
-            DataDO dataDO = dataOptional.get();
-            while (update(column, pattern, getObjectCount(dataDO, column, count), dataDO.version) <= 0) {
-                dataDO = queryObject(pattern).get();
+    /**
+     * 将各分组自上次提交以来的增量合并为一次批量更新, 不存在的分组再逐条插入;
+     * 每条语句成功后立即推进该分组的已提交计数, 失败的分组增量保留到下一次, 已提交的增量不会重复累加
+     */
+    private synchronized void flush() {
+        List<String> patterns = new ArrayList<>();
+        List<long[]> deltas = new ArrayList<>();
+        counters.forEach((pattern, counter) -> {
+            long hit = counter.hit.sum();
+            long require = counter.require.sum();
+            if (hit != counter.flushedHit || require != counter.flushedRequire) {
+                patterns.add(pattern);
+                deltas.add(new long[]{hit, require, hit - counter.flushedHit, require - counter.flushedRequire});
+            }
+        });
+        if (patterns.isEmpty()) {
+            return;
+        }
+
+        int[] updated;
+        try {
+            List<Object[]> args = new ArrayList<>(patterns.size());
+            for (int i = 0; i < patterns.size(); i++) {
+                long[] delta = deltas.get(i);
+                args.add(new Object[]{delta[2], delta[3], patterns.get(i)});
+            }
+            updated = jdbcOperations.batchUpdate(sqls.getProperty("increase"), args);
+        } catch (Throwable e) {
+            Logger.error("flush cache shooting to db failed, patterns: {}", patterns, e);
+            return;
+        }
+
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            long[] delta = deltas.get(i);
+            // 批量更新已提交, 先推进计数再处理需要插入的分组
+            if (i < updated.length && updated[i] != 0) {
+                applied(pattern, delta);
+                continue;
             }
-        } else {
-            lock.lock();
             try {
-                // double check
-                dataOptional = queryObject(pattern);
-                if (dataOptional.isPresent()) {
-                    update(column, pattern, count, dataOptional.get().version);
-                } else {
-                    insert(column, pattern, count);
-                }
-            } finally {
-                lock.unlock();
+                insertAbsent(pattern, delta);
+                applied(pattern, delta);
+            } catch (Throwable e) {
+                Logger.error("flush cache shooting to db failed, pattern: {}", pattern, e);
             }
         }
     }
 
-    private Optional<DataDO> queryObject(String pattern) {
-        String selectSql = sqls.getProperty("select");
-        List<Map<String, Object>> mapResults = jdbcOperations.queryForList(selectSql, pattern);
+    private void insertAbsent(String pattern, long[] delta) {
+        try {
+            jdbcOperations.update(sqls.getProperty("insert"), pattern, delta[2], delta[3]);
+        } catch (RuntimeException e) {
+            // 其他实例可能已插入同一分组, 回退为更新
+            if (jdbcOperations.update(sqls.getProperty("increase"), delta[2], delta[3], pattern) == 0) {
+                throw e;
+            }
+        }
+    }
 
-        return transferResults(mapResults).findFirst();
+    private void applied(String pattern, long[] delta) {
+        Counter counter = counters.get(pattern);
+        if (counter != null) {
+            counter.flushedHit = delta[0];
+            counter.flushedRequire = delta[1];
+        }
     }
 
     private List<DataDO> queryAll() {
@@ -219,34 +269,22 @@ public abstract class AbstractShooting implements Shooting {
         return transferResults(mapResults).collect(Collectors.toList());
     }
 
-    private int insert(String column, String pattern, long count) {
-        String insertSql = String.format(sqls.getProperty("insert"), column);
-
-        return jdbcOperations.update(insertSql, pattern, count);
+    @PreDestroy
+    public void tearDown() {
+        flushFuture.cancel(false);
+        flush();
     }
 
-    private int update(String column, String pattern, long count, long version) {
-        String updateSql = String.format(sqls.getProperty("update"), column);
+    private static final class Counter {
 
-        return jdbcOperations.update(updateSql, count, pattern, version);
-    }
+        private final LongAdder hit = new LongAdder();
 
-    private long getObjectCount(DataDO data, String column, long countOffset) {
-        long lastCount = column.equals("hit_count") ? data.hitCount : data.requireCount;
-
-        return lastCount + countOffset;
-    }
+        private final LongAdder require = new LongAdder();
 
-    @PreDestroy
-    public void tearDown() {
-        while (hitQueue.size() > 0 || requireQueue.size() > 0) {
-            try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException ignored) {
-            }
-        }
+        // 仅在flush中访问
+        private long flushedHit;
 
-        isShutdown = true;
+        private long flushedRequire;
     }
 
     protected static final class DataDO {
@@ -0,0 +1,715 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.serialize;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.extra.effect.EffectProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 紧凑二进制序列化
+ * 无需Schema, 按字段逐个写出; 预先注册的类只写入编号, 未注册的类写入类名(同一次序列化内只写一次),
+ * 各节点需以相同顺序注册相同的类. 输出缓冲区按线程复用, 超过阈值时使用指定的压缩算法
+ * <p>
+ * 对象需提供无参构造方法, 否则若实现了{@link Serializable}则退化为JDK序列化;
+ * 无法实例化的集合/Map按接口替换为{@link ArrayList}/{@link LinkedHashSet}/{@link LinkedHashMap};
+ * 带有Comparator的有序集合/Map使用JDK序列化, 以保留排序规则
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class BinarySerializer extends AbstractSerializer {
+
+    private static final byte RAW = 0;
+    private static final byte COMPRESSED = 1;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHAR = 9;
+    private static final byte STRING = 10;
+    private static final byte BYTES = 11;
+    private static final byte BIG_DECIMAL = 12;
+    private static final byte BIG_INTEGER = 13;
+    private static final byte DATE = 14;
+    private static final byte ENUM = 15;
+    private static final byte COLLECTION = 16;
+    private static final byte MAP = 17;
+    private static final byte ARRAY = 18;
+    private static final byte OBJECT = 19;
+    private static final byte REF = 20;
+    private static final byte JAVA = 21;
+
+    // 复用缓冲区的上限, 超过时用完即释放
+    private static final int MAX_POOLED_SIZE = 1 << 20;
+
+    private static final ConcurrentMap<Class<?>, ClassInfo> classInfos = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Integer> registered = new ConcurrentHashMap<>();
+
+    private final List<Class<?>> registeredTypes = Collections.synchronizedList(new ArrayList<>());
+
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
+
+    private final EffectProvider compressor;
+
+    private final int threshold;
+
+    public BinarySerializer() {
+        this(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param compressor 压缩算法, 为空时不压缩
+     * @param threshold  启用压缩的最小字节数
+     */
+    public BinarySerializer(EffectProvider compressor, int threshold) {
+        this.compressor = compressor;
+        this.threshold = threshold;
+        register(ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+                HashMap.class, LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class, Object.class);
+    }
+
+    /**
+     * 注册类型, 序列化时以编号代替类名
+     *
+     * @param types 类型
+     * @return this
+     */
+    public synchronized BinarySerializer register(Class<?>... types) {
+        for (Class<?> type : types) {
+            if (!registered.containsKey(type)) {
+                registered.put(type, registeredTypes.size());
+                registeredTypes.add(type);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    protected byte[] doSerialize(Object obj) throws Throwable {
+        Output output = outputs.get();
+        if (output.inUse) {
+            output = new Output();
+        }
+        output.inUse = true;
+        try {
+            output.writeByte(RAW);
+            writeObject(output, obj);
+
+            int length = output.position;
+            if (compressor != null && length > threshold) {
+                byte[] compressed = compressor.compress(Arrays.copyOfRange(output.buffer, 1, length));
+                if (compressed.length + 1 < length) {
+                    byte[] bytes = new byte[compressed.length + 1];
+                    bytes[0] = COMPRESSED;
+                    System.arraycopy(compressed, 0, bytes, 1, compressed.length);
+                    return bytes;
+                }
+            }
+            return Arrays.copyOf(output.buffer, length);
+        } finally {
+            output.reset();
+        }
+    }
+
+    @Override
+    protected Object doDeserialize(byte[] bytes) throws Throwable {
+        Input input;
+        if (bytes[0] == COMPRESSED) {
+            if (compressor == null) {
+                throw new InstrumentException("compressed data but no compressor configured");
+            }
+            input = new Input(compressor.uncompress(Arrays.copyOfRange(bytes, 1, bytes.length)), 0);
+        } else {
+            input = new Input(bytes, 1);
+        }
+        return readObject(input);
+    }
+
+    private void writeObject(Output out, Object obj) throws Throwable {
+        if (obj == null) {
+            out.writeByte(NULL);
+            return;
+        }
+
+        Class<?> type = obj.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            out.writeString((String) obj);
+        } else if (type == Integer.class) {
+            out.writeByte(INT);
+            out.writeVarLong((Integer) obj);
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            out.writeVarLong((Long) obj);
+        } else if (type == Boolean.class) {
+            out.writeByte((Boolean) obj ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) obj));
+        } else if (type == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeVarLong(Float.floatToRawIntBits((Float) obj));
+        } else if (type == Short.class) {
+            out.writeByte(SHORT);
+            out.writeVarLong((Short) obj);
+        } else if (type == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) obj);
+        } else if (type == Character.class) {
+            out.writeByte(CHAR);
+            out.writeVarLong((Character) obj);
+        } else if (type == byte[].class) {
+            out.writeByte(BYTES);
+            byte[] bytes = (byte[]) obj;
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes, 0, bytes.length);
+        } else if (type == BigDecimal.class) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeString(obj.toString());
+        } else if (type == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            byte[] bytes = ((BigInteger) obj).toByteArray();
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes, 0, bytes.length);
+        } else if (type == Date.class) {
+            out.writeByte(DATE);
+            out.writeVarLong(((Date) obj).getTime());
+        } else if (obj instanceof Enum) {
+            out.writeByte(ENUM);
+            writeClass(out, ((Enum<?>) obj).getDeclaringClass());
+            out.writeString(((Enum<?>) obj).name());
+        } else {
+            Integer ref = out.refs.get(obj);
+            if (ref != null) {
+                out.writeByte(REF);
+                out.writeVarLong(ref);
+                return;
+            }
+            writeComplex(out, obj, type);
+        }
+    }
+
+    private void writeComplex(Output out, Object obj, Class<?> type) throws Throwable {
+        if (comparatorOf(obj) != null) {
+            writeJava(out, obj);
+        } else if (obj instanceof Collection) {
+            Collection<?> collection = (Collection<?>) obj;
+            out.refs.put(obj, out.refs.size());
+            out.writeByte(COLLECTION);
+            writeClass(out, getClassInfo(type).instantiable ? type : substitute(obj));
+            out.writeVarLong(collection.size());
+            for (Object element : collection) {
+                writeObject(out, element);
+            }
+        } else if (obj instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            out.refs.put(obj, out.refs.size());
+            out.writeByte(MAP);
+            writeClass(out, getClassInfo(type).instantiable ? type : LinkedHashMap.class);
+            out.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeObject(out, entry.getKey());
+                writeObject(out, entry.getValue());
+            }
+        } else if (type.isArray()) {
+            int length = Array.getLength(obj);
+            out.refs.put(obj, out.refs.size());
+            out.writeByte(ARRAY);
+            writeClass(out, type.getComponentType());
+            out.writeVarLong(length);
+            for (int i = 0; i < length; i++) {
+                writeObject(out, Array.get(obj, i));
+            }
+        } else {
+            ClassInfo info = getClassInfo(type);
+            if (!info.instantiable) {
+                if (!(obj instanceof Serializable)) {
+                    throw new InstrumentException(type.getName() + " has no default constructor and is not serializable");
+                }
+                writeJava(out, obj);
+                return;
+            }
+
+            out.refs.put(obj, out.refs.size());
+            out.writeByte(OBJECT);
+            writeClass(out, type);
+            for (Field field : info.fields) {
+                writeField(out, field, obj);
+            }
+        }
+    }
+
+    private void writeJava(Output out, Object obj) throws Throwable {
+        out.writeByte(JAVA);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(obj);
+        }
+        out.writeVarLong(bos.size());
+        out.writeBytes(bos.toByteArray(), 0, bos.size());
+    }
+
+    private void writeField(Output out, Field field, Object obj) throws Throwable {
+        Class<?> fieldType = field.getType();
+        if (!fieldType.isPrimitive()) {
+            writeObject(out, field.get(obj));
+        } else if (fieldType == int.class) {
+            out.writeVarLong(field.getInt(obj));
+        } else if (fieldType == long.class) {
+            out.writeVarLong(field.getLong(obj));
+        } else if (fieldType == boolean.class) {
+            out.writeByte(field.getBoolean(obj) ? TRUE : FALSE);
+        } else if (fieldType == double.class) {
+            out.writeLong(Double.doubleToRawLongBits(field.getDouble(obj)));
+        } else if (fieldType == float.class) {
+            out.writeVarLong(Float.floatToRawIntBits(field.getFloat(obj)));
+        } else if (fieldType == short.class) {
+            out.writeVarLong(field.getShort(obj));
+        } else if (fieldType == byte.class) {
+            out.writeByte(field.getByte(obj));
+        } else {
+            out.writeVarLong(field.getChar(obj));
+        }
+    }
+
+    /**
+     * 类引用编码: (编号 << 1) | 1 为注册类; 0 为后续紧跟类名的新类; (n + 1) << 1 为本次已写出的第n个类
+     */
+    private void writeClass(Output out, Class<?> type) {
+        Integer id = registered.get(type);
+        if (id != null) {
+            out.writeVarLong(((long) id << 1) | 1);
+            return;
+        }
+
+        Integer index = out.classes.get(type);
+        if (index != null) {
+            out.writeVarLong((long) (index + 1) << 1);
+            return;
+        }
+
+        out.classes.put(type, out.classes.size());
+        out.writeVarLong(0);
+        out.writeString(type.getName());
+    }
+
+    private Object readObject(Input in) throws Throwable {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) in.readVarLong();
+            case LONG:
+                return in.readVarLong();
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case FLOAT:
+                return Float.intBitsToFloat((int) in.readVarLong());
+            case SHORT:
+                return (short) in.readVarLong();
+            case BYTE:
+                return in.readByte();
+            case CHAR:
+                return (char) in.readVarLong();
+            case STRING:
+                return in.readString();
+            case BYTES:
+                return in.readBytes((int) in.readVarLong());
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            case BIG_INTEGER:
+                return new BigInteger(in.readBytes((int) in.readVarLong()));
+            case DATE:
+                return new Date(in.readVarLong());
+            case ENUM:
+                return Enum.valueOf((Class) readClass(in), in.readString());
+            case REF:
+                return in.refs.get((int) in.readVarLong());
+            case JAVA:
+                byte[] bytes = in.readBytes((int) in.readVarLong());
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                }
+            case COLLECTION:
+                return readCollection(in);
+            case MAP:
+                return readMap(in);
+            case ARRAY:
+                return readArray(in);
+            case OBJECT:
+                return readPojo(in);
+            default:
+                throw new InstrumentException("unknown tag: " + tag);
+        }
+    }
+
+    private Object readCollection(Input in) throws Throwable {
+        ClassInfo info = getClassInfo(readClass(in));
+        Collection<Object> collection = (Collection<Object>) info.constructor.newInstance();
+        in.refs.add(collection);
+        int size = (int) in.readVarLong();
+        for (int i = 0; i < size; i++) {
+            collection.add(readObject(in));
+        }
+        return collection;
+    }
+
+    private Object readMap(Input in) throws Throwable {
+        ClassInfo info = getClassInfo(readClass(in));
+        Map<Object, Object> map = (Map<Object, Object>) info.constructor.newInstance();
+        in.refs.add(map);
+        int size = (int) in.readVarLong();
+        for (int i = 0; i < size; i++) {
+            Object key = readObject(in);
+            map.put(key, readObject(in));
+        }
+        return map;
+    }
+
+    private Object readArray(Input in) throws Throwable {
+        Class<?> componentType = readClass(in);
+        int length = (int) in.readVarLong();
+        Object array = Array.newInstance(componentType, length);
+        in.refs.add(array);
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, readObject(in));
+        }
+        return array;
+    }
+
+    private Object readPojo(Input in) throws Throwable {
+        ClassInfo info = getClassInfo(readClass(in));
+        Object obj = info.constructor.newInstance();
+        in.refs.add(obj);
+        for (Field field : info.fields) {
+            readField(in, field, obj);
+        }
+        return obj;
+    }
+
+    private void readField(Input in, Field field, Object obj) throws Throwable {
+        Class<?> fieldType = field.getType();
+        if (!fieldType.isPrimitive()) {
+            field.set(obj, readObject(in));
+        } else if (fieldType == int.class) {
+            field.setInt(obj, (int) in.readVarLong());
+        } else if (fieldType == long.class) {
+            field.setLong(obj, in.readVarLong());
+        } else if (fieldType == boolean.class) {
+            field.setBoolean(obj, in.readByte() == TRUE);
+        } else if (fieldType == double.class) {
+            field.setDouble(obj, Double.longBitsToDouble(in.readLong()));
+        } else if (fieldType == float.class) {
+            field.setFloat(obj, Float.intBitsToFloat((int) in.readVarLong()));
+        } else if (fieldType == short.class) {
+            field.setShort(obj, (short) in.readVarLong());
+        } else if (fieldType == byte.class) {
+            field.setByte(obj, in.readByte());
+        } else {
+            field.setChar(obj, (char) in.readVarLong());
+        }
+    }
+
+    private Class<?> readClass(Input in) throws ClassNotFoundException {
+        long code = in.readVarLong();
+        if ((code & 1) == 1) {
+            return registeredTypes.get((int) (code >>> 1));
+        }
+        if (code == 0) {
+            Class<?> type = forName(in.readString());
+            in.classes.add(type);
+            return type;
+        }
+        return in.classes.get((int) (code >>> 1) - 1);
+    }
+
+    private static Class<?> forName(String name) throws ClassNotFoundException {
+        switch (name) {
+            case "int":
+                return int.class;
+            case "long":
+                return long.class;
+            case "boolean":
+                return boolean.class;
+            case "double":
+                return double.class;
+            case "float":
+                return float.class;
+            case "short":
+                return short.class;
+            case "byte":
+                return byte.class;
+            case "char":
+                return char.class;
+            default:
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                return Class.forName(name, false, loader != null ? loader : BinarySerializer.class.getClassLoader());
+        }
+    }
+
+    /**
+     * 有序集合/Map的Comparator, 按元素自然顺序排序或非有序类型时为null
+     */
+    private static Comparator<?> comparatorOf(Object obj) {
+        if (obj instanceof SortedSet) {
+            return ((SortedSet<?>) obj).comparator();
+        }
+        if (obj instanceof SortedMap) {
+            return ((SortedMap<?, ?>) obj).comparator();
+        }
+        if (obj instanceof PriorityQueue) {
+            return ((PriorityQueue<?>) obj).comparator();
+        }
+        return null;
+    }
+
+    private static Class<?> substitute(Object collection) {
+        return collection instanceof Set ? LinkedHashSet.class : ArrayList.class;
+    }
+
+    private static ClassInfo getClassInfo(Class<?> type) {
+        return classInfos.computeIfAbsent(type, ClassInfo::new);
+    }
+
+    /**
+     * 类的字段及构造方法, 字段按声明类(父类在前)及名称排序, 保证各节点顺序一致
+     */
+    private static class ClassInfo {
+
+        private final Field[] fields;
+
+        private final Constructor<?> constructor;
+
+        private final boolean instantiable;
+
+        ClassInfo(Class<?> type) {
+            Constructor<?> ctor = null;
+            List<Field> list = new ArrayList<>();
+            if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+                try {
+                    ctor = type.getDeclaredConstructor();
+                    ctor.setAccessible(true);
+                    if (!Collection.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type)) {
+                        collectFields(type, list);
+                    }
+                } catch (NoSuchMethodException | RuntimeException e) {
+                    // 无无参构造方法或无法访问(如JDK模块内部类), 交由调用方降级处理
+                    ctor = null;
+                    list.clear();
+                }
+            }
+            this.constructor = ctor;
+            this.instantiable = ctor != null;
+            this.fields = list.toArray(new Field[0]);
+        }
+
+        private static void collectFields(Class<?> type, List<Field> list) {
+            List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            for (Class<?> c : hierarchy) {
+                Field[] declared = c.getDeclaredFields();
+                Arrays.sort(declared, Comparator.comparing(Field::getName));
+                for (Field field : declared) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    list.add(field);
+                }
+            }
+        }
+    }
+
+    /**
+     * 可复用的输出缓冲区
+     */
+    private static class Output {
+
+        private final IdentityHashMap<Object, Integer> refs = new IdentityHashMap<>();
+
+        private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+        private byte[] buffer = new byte[256];
+
+        private int position;
+
+        private boolean inUse;
+
+        void ensure(int count) {
+            if (position + count > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + count));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int i = 56; i >= 0; i -= 8) {
+                buffer[position++] = (byte) (value >>> i);
+            }
+        }
+
+        /**
+         * ZigZag + 变长编码, 小整数只占1~2个字节
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[position++] = (byte) v;
+        }
+
+        void writeString(String value) {
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (ascii) {
+                writeVarLong(length);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer[position++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
+            }
+        }
+
+        void reset() {
+            position = 0;
+            refs.clear();
+            classes.clear();
+            inUse = false;
+            if (buffer.length > MAX_POOLED_SIZE) {
+                buffer = new byte[256];
+            }
+        }
+    }
+
+    private static class Input {
+
+        private final List<Object> refs = new ArrayList<>();
+
+        private final List<Class<?>> classes = new ArrayList<>();
+
+        private final byte[] buffer;
+
+        private int position;
+
+        Input(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        byte[] readBytes(int length) {
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+
+}
@@ -79,12 +79,16 @@ public class ArgNameGenerator {
 
         String[] xArgs = new String[valueSize];
         for (int i = 0; i < valueSize; ++i) {
-            xArgs[i] = i < X_ARGS.length ? X_ARGS[i] : X_ARGS_PREFIX + i;
+            xArgs[i] = getXArgName(i);
         }
 
         return xArgs;
     }
 
+    public static String getXArgName(int index) {
+        return index < X_ARGS.length ? X_ARGS[index] : X_ARGS_PREFIX + index;
+    }
+
     // Java1.8之后提供了获取参数名方法, 但需要编译时添加`–parameters`参数支持, 如`javac –parameters`, 不然参数名为'arg0'
     private static String[] doGetArgNamesWithJava8(Method method) {
         Parameter[] parameters = method.getParameters();
@@ -113,7 +113,10 @@ public class CacheInfoContainer {
         return builder
                 .setCache(cached.value())
                 .setPrefix(cached.prefix())
-                .setExpire(cached.expire());
+                .setExpire(cached.expire())
+                .setCoalesce(cached.coalesce())
+                .setRefresh(cached.refresh())
+                .setBeta(cached.beta());
     }
 
     private static AnnoHolder.Builder scanCachedGet(AnnoHolder.Builder builder, CachedGet cachedGet) {
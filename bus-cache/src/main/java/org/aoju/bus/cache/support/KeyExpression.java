@@ -0,0 +1,155 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cache.support;
+
+import com.google.common.base.Strings;
+import org.springframework.expression.Expression;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预解析的@CacheKey表达式
+ * 对`#arg`、`#arg[#i]`这类简单形式直接取参数值/批量元素, 不经过SpEL计算;
+ * 其余表达式解析一次后复用
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class KeyExpression {
+
+    private static final Pattern VARIABLE = Pattern.compile("^#([A-Za-z_$][\\w$]*)$");
+
+    private static final Pattern ELEMENT = Pattern.compile("^#([A-Za-z_$][\\w$]*)\\[#i]$");
+
+    private static final String INDEX = "i";
+
+    private final int argIndex;
+
+    private final Kind kind;
+
+    private final int valueIndex;
+
+    private final Expression expression;
+
+    private KeyExpression(int argIndex, Kind kind, int valueIndex, Expression expression) {
+        this.argIndex = argIndex;
+        this.kind = kind;
+        this.valueIndex = valueIndex;
+        this.expression = expression;
+    }
+
+    /**
+     * @param argIndex   @CacheKey所在参数的索引
+     * @param spel       @CacheKey的表达式
+     * @param argNames   方法参数名
+     * @param multiIndex 批量参数的索引, 非批量模式为-1
+     * @return 预解析的表达式
+     */
+    public static KeyExpression of(int argIndex, String spel, String[] argNames, int multiIndex) {
+        if (Strings.isNullOrEmpty(spel)) {
+            return new KeyExpression(argIndex, Kind.DEFAULT, argIndex, null);
+        }
+
+        Matcher matcher = VARIABLE.matcher(spel);
+        if (matcher.matches()) {
+            int index = indexOf(matcher.group(1), argNames);
+            if (index != -1) {
+                return new KeyExpression(argIndex, Kind.VARIABLE, index, null);
+            }
+        }
+
+        Expression expression = SpelCalculator.parse(spel);
+        matcher = ELEMENT.matcher(spel);
+        if (matcher.matches() && multiIndex != -1 && indexOf(matcher.group(1), argNames) == multiIndex) {
+            return new KeyExpression(argIndex, Kind.ELEMENT, multiIndex, expression);
+        }
+        return new KeyExpression(argIndex, Kind.SPEL, -1, expression);
+    }
+
+    private static int indexOf(String name, String[] argNames) {
+        for (int i = 0; i < argNames.length; ++i) {
+            if (argNames[i].equals(name) || ArgNameGenerator.getXArgName(i).equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getArgIndex() {
+        return argIndex;
+    }
+
+    /**
+     * 计算单key模式下的keyPart
+     *
+     * @param argNames  参数名
+     * @param argValues 参数值
+     * @return keyPart
+     */
+    public Object getValue(String[] argNames, Object[] argValues) {
+        switch (kind) {
+            case DEFAULT:
+            case VARIABLE:
+                return argValues[valueIndex];
+            default:
+                return SpelCalculator.calcSpelValueWithContext(expression, argNames, argValues, null, null);
+        }
+    }
+
+    /**
+     * 计算批量模式下第i个元素对应的keyPart
+     *
+     * @param argNames  参数名
+     * @param argValues 参数值
+     * @param element   批量参数中的第i个元素
+     * @param i         元素序号
+     * @return keyPart
+     */
+    public Object getValue(String[] argNames, Object[] argValues, Object element, int i) {
+        switch (kind) {
+            case DEFAULT:
+            case VARIABLE:
+                return argValues[valueIndex];
+            case ELEMENT:
+                // Map作为批量参数时`[#i]`是按key取值, 与遍历的元素不一致
+                if (!(argValues[valueIndex] instanceof Map)) {
+                    return element;
+                }
+            default:
+                return SpelCalculator.calcSpelValueWithContext(expression, argNames, argValues, INDEX, i);
+        }
+    }
+
+    private enum Kind {
+        DEFAULT,
+        VARIABLE,
+        ELEMENT,
+        SPEL
+    }
+
+}
@@ -24,11 +24,13 @@
  ********************************************************************************/
 package org.aoju.bus.cache.support;
 
-import org.aoju.bus.cache.annotation.CacheKey;
 import org.aoju.bus.cache.magic.AnnoHolder;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Kimi Liu
@@ -39,10 +41,12 @@ public class KeyGenerator {
 
     public static String generateSingleKey(AnnoHolder annoHolder, Object[] argValues) {
         String[] argNames = ArgNameGenerator.getArgNames(annoHolder.getMethod());
-        Map<Integer, CacheKey> cacheKeyMap = annoHolder.getCacheKeyMap();
-        String prefix = annoHolder.getPrefix();
+        StringBuilder sb = new StringBuilder(annoHolder.getPrefix());
+        for (KeyExpression expression : annoHolder.getKeyExpressions()) {
+            sb.append(expression.getValue(argNames, argValues));
+        }
 
-        return doGenerateKey(cacheKeyMap, prefix, argNames, argValues);
+        return sb.toString();
     }
 
     //array[]: {multiEntry2Key, key2MultiEntry}
@@ -54,8 +58,8 @@ public class KeyGenerator {
         // 准备要拼装key所需的原材料
         // 标记为multi的参数
         Collection multiArgEntries = getMultiArgEntries(argValues[annoHolder.getMultiIndex()]);
-        // 参数索引 -> CacheKey
-        Map<Integer, CacheKey> argIndex2CacheKey = annoHolder.getCacheKeyMap();
+        // 预解析的@CacheKey表达式
+        KeyExpression[] expressions = annoHolder.getKeyExpressions();
         // 全局prefix
         String prefix = annoHolder.getPrefix();
 
@@ -63,17 +67,29 @@ public class KeyGenerator {
 
         // 根据方法获取原始的参数名
         String[] argNames = ArgNameGenerator.getArgNames(annoHolder.getMethod());
-        // 给参数名添加一个`#i`遍历指令
-        String[] appendArgNames = (String[]) appendArray(argNames, "i");
 
+        // 不随元素变化的keyPart只计算一次
+        Object[] fixedParts = new Object[expressions.length];
+        for (int j = 0; j < expressions.length; ++j) {
+            if (expressions[j].getArgIndex() != annoHolder.getMultiIndex()) {
+                fixedParts[j] = expressions[j].getValue(argNames, argValues);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(prefix);
         int i = 0;
         for (Object multiElement : multiArgEntries) {
-
-            // 给参数值数组的`#i`指令赋值
-            Object[] appendArgValues = appendArray(argValues, i);
-
-            String key = doGenerateKey(argIndex2CacheKey, prefix, appendArgNames, appendArgValues);
-
+            sb.setLength(prefix.length());
+            for (int j = 0; j < expressions.length; ++j) {
+                if (expressions[j].getArgIndex() == annoHolder.getMultiIndex()) {
+                    // `#i`指令对应当前元素序号
+                    sb.append(expressions[j].getValue(argNames, argValues, multiElement, i));
+                } else {
+                    sb.append(fixedParts[j]);
+                }
+            }
+
+            String key = sb.toString();
             key2MultiEntry.put(key, multiElement);
             multiEntry2Key.put(multiElement, key);
             ++i;
@@ -82,32 +98,6 @@ public class KeyGenerator {
         return new Map[]{multiEntry2Key, key2MultiEntry};
     }
 
-    private static String doGenerateKey(Map<Integer, CacheKey> parameterIndex2CacheKey,
-                                        String prefix, String[] argNames, Object[] argValues) {
-
-        StringBuilder sb = new StringBuilder(prefix);
-        for (Map.Entry<Integer, CacheKey> entry : parameterIndex2CacheKey.entrySet()) {
-            int argIndex = entry.getKey();
-            String argSpel = entry.getValue().value();
-
-            Object defaultValue = getDefaultValue(argValues, argIndex);
-            Object keyPart = SpelCalculator.calcSpelValueWithContext(argSpel, argNames, argValues, defaultValue);
-
-            sb.append(keyPart);
-
-        }
-
-        return sb.toString();
-    }
-
-    /**
-     * 获取当spel表达式为空(null or '')时, 默认的拼装keyPart
-     * 注意: 当multi的spel表达式为空时, 这时会将整个`Collection`实例作为keyPart(当然, 这种情况不会发生)...
-     */
-    private static Object getDefaultValue(Object[] argValues, int argIndex) {
-        return argValues[argIndex];
-    }
-
     /**
      * 将标记为`multi`的参数转成`Collection`实例
      *
@@ -125,14 +115,8 @@ public class KeyGenerator {
             return ((Map) multiArg).keySet();
         } else {
             // 此处应该在multi参数校验的时候确保只能为Collection、Map、Object[]三种类型
-            return Arrays.stream((Object[]) multiArg).collect(Collectors.toList());
+            return Arrays.asList((Object[]) multiArg);
         }
     }
 
-    private static Object[] appendArray(Object[] origin, Object append) {
-        Object[] dest = Arrays.copyOf(origin, origin.length + 1);
-        dest[origin.length] = append;
-
-        return dest;
-    }
 }
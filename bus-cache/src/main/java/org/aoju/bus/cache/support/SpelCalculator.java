@@ -26,13 +26,21 @@ package org.aoju.bus.cache.support;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Spel表达式的计算功能(@Cached内的condition、@CacheKey内的spel只是作为一个增值服务, 并不作为核心功能, 只是作为key拼装的一个亮点, 并不是必须功能)
+ * 表达式解析结果按字符串缓存并以混合编译模式执行, 计算上下文按线程复用
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -40,28 +48,60 @@ import org.springframework.expression.spel.support.StandardEvaluationContext;
  */
 public class SpelCalculator {
 
-    private static final ExpressionParser parser = new SpelExpressionParser();
+    private static final ExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, SpelCalculator.class.getClassLoader()));
+
+    private static final ConcurrentMap<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<VariableContext> contexts = ThreadLocal.withInitial(VariableContext::new);
 
     public static Object calcSpelValueWithContext(String spel, String[] argNames, Object[] argValues, Object defaultValue) {
         if (Strings.isNullOrEmpty(spel)) {
             return defaultValue;
         }
 
-        // 将[参数名->参数值]导入spel环境
-        EvaluationContext context = new StandardEvaluationContext();
+        return calcSpelValueWithContext(parse(spel), argNames, argValues, null, null);
+    }
 
+    /**
+     * 使用已解析的表达式计算
+     *
+     * @param expression 表达式
+     * @param argNames   参数名
+     * @param argValues  参数值
+     * @param extName    附加变量名, 如批量模式下的`i`, 可为空
+     * @param extValue   附加变量值
+     * @return 计算结果
+     */
+    public static Object calcSpelValueWithContext(Expression expression, String[] argNames, Object[] argValues,
+                                                  String extName, Object extValue) {
         Preconditions.checkState(argNames.length == argValues.length);
-        for (int i = 0; i < argValues.length; ++i) {
-            context.setVariable(argNames[i], argValues[i]);
-        }
 
-        // todo: 先将xArg放到这儿, 后面可以再想下可以放到哪儿?
-        String[] xArgNames = ArgNameGenerator.getXArgNames(argValues.length);
-        for (int i = 0; i < argValues.length; ++i) {
-            context.setVariable(xArgNames[i], argValues[i]);
+        VariableContext context = contexts.get();
+        if (context.inUse) {
+            // 表达式内调用的方法再次触发缓存计算时, 不能复用外层上下文
+            context = new VariableContext();
         }
+        context.inUse = true;
+        try {
+            // 将[参数名->参数值]导入spel环境
+            for (int i = 0; i < argValues.length; ++i) {
+                context.setVariable(argNames[i], argValues[i]);
+            }
 
-        return parser.parseExpression(spel).getValue(context);
+            // todo: 先将xArg放到这儿, 后面可以再想下可以放到哪儿?
+            for (int i = 0; i < argValues.length; ++i) {
+                context.setVariable(ArgNameGenerator.getXArgName(i), argValues[i]);
+            }
+
+            if (extName != null) {
+                context.setVariable(extName, extValue);
+            }
+
+            return expression.getValue(context);
+        } finally {
+            context.reset();
+        }
     }
 
     public static Object calcSpelWithNoContext(String spel, Object defaultValue) {
@@ -69,7 +109,36 @@ public class SpelCalculator {
             return defaultValue;
         }
 
-        return parser.parseExpression(spel).getValue(defaultValue);
+        return parse(spel).getValue(defaultValue);
+    }
+
+    public static Expression parse(String spel) {
+        return expressions.computeIfAbsent(spel, parser::parseExpression);
+    }
+
+    /**
+     * 可复用的计算上下文, 每次计算结束后清空变量
+     */
+    private static class VariableContext extends StandardEvaluationContext {
+
+        private final Map<String, Object> variables = new HashMap<>();
+
+        private boolean inUse;
+
+        @Override
+        public void setVariable(String name, Object value) {
+            variables.put(name, value);
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            return variables.get(name);
+        }
+
+        void reset() {
+            variables.clear();
+            inUse = false;
+        }
     }
 
 }
@@ -24,15 +24,22 @@
  ********************************************************************************/
 package org.aoju.bus.core.io;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * ByteBuffer内存页
+ * 按伙伴算法管理：内存页以{@link #UNIT}字节为单位,按2的幂划分为若干阶的块,
+ * 每阶空闲块以数组实现的双向链表串联,并以位图记录非空的阶,
+ * 申请时直接定位不小于所需阶的最小空闲块并逐级拆分,释放时与同阶的空闲伙伴逐级合并,
+ * 与内存页大小无关；
+ * 较小的块释放后先放入当前线程的缓存,同一线程再次申请同阶的块时无需加锁,
+ * 缓存由定时任务在线程空闲或结束后归还
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -41,30 +48,83 @@ import java.util.concurrent.locks.ReentrantLock;
 public class PageBuffer {
 
     /**
-     * 当前空闲的虚拟Buffer
+     * 最小分配单位的位数,即64字节
      */
-    private List<VirtualBuffer> availableBuffers;
+    private static final int UNIT_SHIFT = 6;
+    private static final int UNIT = 1 << UNIT_SHIFT;
     /**
-     * 待回收的虚拟Buffer
+     * 线程缓存的最大阶,即64KB及以下的块
      */
-    private ConcurrentLinkedQueue<VirtualBuffer> cleanBuffers = new ConcurrentLinkedQueue<>();
+    private static final int CACHE_MAX_ORDER = 10;
+    /**
+     * 每个线程每阶最多缓存的块数
+     */
+    private static final int CACHE_SIZE = 8;
 
     /**
      * 当前缓存页的物理缓冲区
      */
-    private ByteBuffer buffer;
-    private ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
 
-    private long lastAllocateTime;
+    /**
+     * 单位总数
+     */
+    private final int units;
+    private final int maxOrder;
+    /**
+     * 各阶空闲链表的头,-1表示为空
+     */
+    private final int[] heads;
+    /**
+     * 空闲块在链表中的前后块,按块起始单位索引
+     */
+    private final int[] next;
+    private final int[] prev;
+    /**
+     * 以该单位起始的空闲块的阶,-1表示不是空闲块的起始单位
+     */
+    private final byte[] freeOrders;
+    /**
+     * 第k位表示第k阶是否有空闲块
+     */
+    private int freeMask;
+    /**
+     * 已分配的单位数,含线程缓存中的块
+     */
+    private int usedUnits;
+
+    private final ThreadLocal<Cache> caches = ThreadLocal.withInitial(this::newCache);
+    private final List<Cache> allCaches = new CopyOnWriteArrayList<>();
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
 
     /**
      * @param size   缓存页大小
      * @param direct 是否使用堆外内存
      */
     PageBuffer(int size, boolean direct) {
-        availableBuffers = new LinkedList<>();
         this.buffer = allocate0(size, direct);
-        availableBuffers.add(new VirtualBuffer(this, null, buffer.position(), buffer.limit()));
+        this.units = size >> UNIT_SHIFT;
+        this.maxOrder = units == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(units);
+        this.heads = new int[maxOrder + 1];
+        this.next = new int[units];
+        this.prev = new int[units];
+        this.freeOrders = new byte[units];
+        Arrays.fill(heads, -1);
+        Arrays.fill(freeOrders, (byte) -1);
+        // 从起始位置依次放入对齐的最大块
+        int unit = 0;
+        while (unit < units) {
+            int order = unit == 0 ? maxOrder : Math.min(maxOrder, Integer.numberOfTrailingZeros(unit));
+            while (unit + (1 << order) > units) {
+                order--;
+            }
+            push(unit, order);
+            unit += 1 << order;
+        }
     }
 
     /**
@@ -78,118 +138,338 @@ public class PageBuffer {
         return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
     }
 
+    /**
+     * 申请指定大小的虚拟Buffer,内存页空间不足时申请不属于内存页的堆内缓冲区
+     *
+     * @param size 大小
+     * @return 虚拟Buffer
+     */
     public VirtualBuffer allocate(final int size) {
-        lastAllocateTime = System.currentTimeMillis();
-        VirtualBuffer cleanBuffer = cleanBuffers.poll();
-        if (cleanBuffer != null && cleanBuffer.getParentLimit() - cleanBuffer.getParentPosition() >= size) {
-            cleanBuffer.buffer().clear();
-            cleanBuffer.buffer(cleanBuffer.buffer());
-            return cleanBuffer;
+        allocations.increment();
+        final int order = orderOf(size);
+        if (order > maxOrder) {
+            fallbacks.increment();
+            return new VirtualBuffer(null, allocate0(size, false), 0, 0);
+        }
+        if (order <= CACHE_MAX_ORDER) {
+            VirtualBuffer cached = caches.get().poll(order, size);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
         }
         lock.lock();
         try {
-            if (cleanBuffer != null) {
-                clean0(cleanBuffer);
-            }
-            while ((cleanBuffer = cleanBuffers.poll()) != null) {
-                if (cleanBuffer.getParentLimit() - cleanBuffer.getParentPosition() >= size) {
-                    cleanBuffer.buffer().clear();
-                    cleanBuffer.buffer(cleanBuffer.buffer());
-                    return cleanBuffer;
-                } else {
-                    clean0(cleanBuffer);
-                }
-            }
-            Iterator<VirtualBuffer> iterator = availableBuffers.iterator();
-            VirtualBuffer bufferChunk;
-            while (iterator.hasNext()) {
-                VirtualBuffer freeChunk = iterator.next();
-                final int remaining = freeChunk.getParentLimit() - freeChunk.getParentPosition();
-                if (remaining < size) {
-                    continue;
-                }
-                if (remaining == size) {
-                    iterator.remove();
-                    buffer.limit(freeChunk.getParentLimit());
-                    buffer.position(freeChunk.getParentPosition());
-                    freeChunk.buffer(buffer.slice());
-                    bufferChunk = freeChunk;
-                } else {
-                    buffer.limit(freeChunk.getParentPosition() + size);
-                    buffer.position(freeChunk.getParentPosition());
-                    bufferChunk = new VirtualBuffer(this, buffer.slice(), buffer.position(), buffer.limit());
-                    freeChunk.setParentPosition(buffer.limit());
-                }
-                if (bufferChunk.buffer().remaining() != size) {
-                    throw new RuntimeException("allocate " + size + ", buffer:" + bufferChunk);
-                }
-                return bufferChunk;
+            final int unit = allocateBlock(order);
+            if (unit >= 0) {
+                final int position = unit << UNIT_SHIFT;
+                return new VirtualBuffer(this, slice(position, size), position, position + (UNIT << order));
             }
         } finally {
             lock.unlock();
         }
+        fallbacks.increment();
         return new VirtualBuffer(null, allocate0(size, false), 0, 0);
     }
 
     void clean(VirtualBuffer cleanBuffer) {
-        if (cleanBuffers.offer(cleanBuffer)) {
+        final int order = orderOf(cleanBuffer.getParentLimit() - cleanBuffer.getParentPosition());
+        if (order <= CACHE_MAX_ORDER && caches.get().offer(order, cleanBuffer)) {
             return;
         }
         lock.lock();
         try {
-            clean0(cleanBuffer);
+            freeBlock(cleanBuffer.getParentPosition() >> UNIT_SHIFT, order);
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * 归还自上次调用以来未使用或所属线程已结束的线程缓存
+     */
     void tryClean() {
-        if (System.currentTimeMillis() - lastAllocateTime < 1000 || !lock.tryLock()) {
-            return;
+        for (Cache cache : allCaches) {
+            final Thread owner = cache.owner.get();
+            final boolean dead = owner == null || !owner.isAlive();
+            final boolean idle = !cache.active;
+            cache.active = false;
+            if (dead || idle) {
+                cache.drain();
+                if (dead) {
+                    allCaches.remove(cache);
+                }
+            }
         }
+    }
+
+    /**
+     * 内存页容量
+     *
+     * @return 字节数
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 已分配的空间,含线程缓存中的块
+     *
+     * @return 字节数
+     */
+    public int getUsed() {
+        lock.lock();
         try {
-            VirtualBuffer cleanBuffer;
-            while ((cleanBuffer = cleanBuffers.poll()) != null) {
-                clean0(cleanBuffer);
-            }
+            return usedUnits << UNIT_SHIFT;
         } finally {
             lock.unlock();
         }
+    }
 
+    /**
+     * 空闲空间
+     *
+     * @return 字节数
+     */
+    public int getFree() {
+        return (units << UNIT_SHIFT) - getUsed();
     }
 
-    private void clean0(VirtualBuffer cleanBuffer) {
-        int index = 0;
-        Iterator<VirtualBuffer> iterator = availableBuffers.iterator();
-        while (iterator.hasNext()) {
-            VirtualBuffer freeBuffer = iterator.next();
-            //cleanBuffer在freeBuffer之前并且形成连续块
-            if (freeBuffer.getParentPosition() == cleanBuffer.getParentLimit()) {
-                freeBuffer.setParentPosition(cleanBuffer.getParentPosition());
-                return;
+    /**
+     * 最大的空闲块
+     *
+     * @return 字节数
+     */
+    public int getLargestFree() {
+        lock.lock();
+        try {
+            return freeMask == 0 ? 0 : UNIT << (31 - Integer.numberOfLeadingZeros(freeMask));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 碎片率,即最大空闲块以外的空闲空间占全部空闲空间的比例
+     *
+     * @return 0~1
+     */
+    public double getFragmentation() {
+        final int free = getFree();
+        return free == 0 ? 0 : 1 - (double) getLargestFree() / free;
+    }
+
+    /**
+     * 申请次数
+     *
+     * @return 次数
+     */
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * 从线程缓存中申请成功的次数
+     *
+     * @return 次数
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * 因空间不足或超出内存页大小而申请堆内缓冲区的次数
+     *
+     * @return 次数
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PageBuffer{capacity=" + getCapacity() +
+                ", used=" + getUsed() +
+                ", largestFree=" + getLargestFree() +
+                ", fragmentation=" + String.format("%.2f", getFragmentation()) +
+                ", allocations=" + getAllocations() +
+                ", cacheHits=" + getCacheHits() +
+                ", fallbacks=" + getFallbacks() +
+                '}';
+    }
+
+    /**
+     * 容纳指定大小所需的阶
+     *
+     * @param size 大小
+     * @return 阶
+     */
+    private static int orderOf(int size) {
+        final int count = Math.max(1, (size + UNIT - 1) >>> UNIT_SHIFT);
+        return 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    /**
+     * 截取物理缓冲区,调用时需持有锁
+     */
+    private ByteBuffer slice(int position, int size) {
+        buffer.limit(position + size);
+        buffer.position(position);
+        return buffer.slice();
+    }
+
+    /**
+     * 分配指定阶的块,调用时需持有锁
+     *
+     * @param order 阶
+     * @return 块起始单位, 没有足够空间时返回-1
+     */
+    private int allocateBlock(int order) {
+        final int candidates = freeMask & (-1 << order);
+        if (candidates == 0) {
+            return -1;
+        }
+        int current = Integer.numberOfTrailingZeros(candidates);
+        final int unit = heads[current];
+        remove(unit, current);
+        // 逐级拆分,后一半放回空闲链表
+        while (current > order) {
+            current--;
+            push(unit + (1 << current), current);
+        }
+        usedUnits += 1 << order;
+        return unit;
+    }
+
+    /**
+     * 释放块并与空闲伙伴合并,调用时需持有锁
+     *
+     * @param unit  块起始单位
+     * @param order 阶
+     */
+    private void freeBlock(int unit, int order) {
+        usedUnits -= 1 << order;
+        while (order < maxOrder) {
+            final int buddy = unit ^ (1 << order);
+            if (buddy >= units || freeOrders[buddy] != order) {
+                break;
             }
-            //cleanBuffer与freeBuffer之后并形成连续块
-            if (freeBuffer.getParentLimit() == cleanBuffer.getParentPosition()) {
-                freeBuffer.setParentLimit(cleanBuffer.getParentLimit());
-                //判断后一个是否连续
-                if (iterator.hasNext()) {
-                    VirtualBuffer next = iterator.next();
-                    if (next.getParentPosition() == freeBuffer.getParentLimit()) {
-                        freeBuffer.setParentLimit(next.getParentLimit());
-                        iterator.remove();
-                    } else if (next.getParentPosition() < freeBuffer.getParentLimit()) {
-                        throw new IllegalStateException("");
-                    }
+            remove(buddy, order);
+            unit = Math.min(unit, buddy);
+            order++;
+        }
+        push(unit, order);
+    }
+
+    private void push(int unit, int order) {
+        final int head = heads[order];
+        next[unit] = head;
+        prev[unit] = -1;
+        if (head >= 0) {
+            prev[head] = unit;
+        }
+        heads[order] = unit;
+        freeOrders[unit] = (byte) order;
+        freeMask |= 1 << order;
+    }
+
+    private void remove(int unit, int order) {
+        final int before = prev[unit];
+        final int after = next[unit];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            heads[order] = after;
+            if (after < 0) {
+                freeMask &= ~(1 << order);
+            }
+        }
+        if (after >= 0) {
+            prev[after] = before;
+        }
+        freeOrders[unit] = -1;
+    }
+
+    private Cache newCache() {
+        Cache cache = new Cache(Thread.currentThread());
+        allCaches.add(cache);
+        return cache;
+    }
+
+    /**
+     * 线程缓存,仅所属线程及定时归还任务访问,锁几乎没有竞争
+     * <p>只缓存内存块及其映射的ByteBuffer,每次分配都返回新的VirtualBuffer,
+     * 避免已释放的VirtualBuffer被复用后重复释放检查失效</p>
+     */
+    private final class Cache {
+
+        private final WeakReference<Thread> owner;
+        private final ByteBuffer[][] buffers = new ByteBuffer[CACHE_MAX_ORDER + 1][CACHE_SIZE];
+        private final int[][] positions = new int[CACHE_MAX_ORDER + 1][CACHE_SIZE];
+        private final int[] counts = new int[CACHE_MAX_ORDER + 1];
+        /**
+         * 自上次{@link #tryClean()}以来是否使用过
+         */
+        private volatile boolean active = true;
+
+        Cache(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        synchronized VirtualBuffer poll(int order, int size) {
+            if (!active) {
+                active = true;
+            }
+            final int count = counts[order];
+            if (count == 0) {
+                return null;
+            }
+            counts[order] = count - 1;
+            ByteBuffer byteBuffer = buffers[order][count - 1];
+            final int position = positions[order][count - 1];
+            buffers[order][count - 1] = null;
+            if (byteBuffer.capacity() >= size) {
+                byteBuffer.clear();
+                byteBuffer.limit(size);
+            } else {
+                lock.lock();
+                try {
+                    byteBuffer = slice(position, size);
+                } finally {
+                    lock.unlock();
                 }
-                return;
             }
-            if (freeBuffer.getParentPosition() > cleanBuffer.getParentLimit()) {
-                availableBuffers.add(index, cleanBuffer);
-                return;
+            return new VirtualBuffer(PageBuffer.this, byteBuffer, position, position + (UNIT << order));
+        }
+
+        synchronized boolean offer(int order, VirtualBuffer buffer) {
+            if (!active) {
+                active = true;
+            }
+            final int count = counts[order];
+            if (count == CACHE_SIZE) {
+                return false;
+            }
+            buffers[order][count] = buffer.buffer();
+            positions[order][count] = buffer.getParentPosition();
+            counts[order] = count + 1;
+            return true;
+        }
+
+        synchronized void drain() {
+            lock.lock();
+            try {
+                for (int order = 0; order <= CACHE_MAX_ORDER; order++) {
+                    for (int i = 0; i < counts[order]; i++) {
+                        buffers[order][i] = null;
+                        freeBlock(positions[order][i] >> UNIT_SHIFT, order);
+                    }
+                    counts[order] = 0;
+                }
+            } finally {
+                lock.unlock();
             }
-            index++;
         }
-        availableBuffers.add(cleanBuffer);
     }
 
 }
@@ -63,6 +63,16 @@ public final class VirtualBuffer {
         this.parentLimit = parentLimit;
     }
 
+    /**
+     * 包装外部ByteBuffer,该缓冲区不归属任何内存页,释放时不做回收
+     *
+     * @param buffer 调用方持有的ByteBuffer
+     * @return 虚拟buffer
+     */
+    public static VirtualBuffer wrap(ByteBuffer buffer) {
+        return new VirtualBuffer(null, buffer, 0, 0);
+    }
+
     int getParentPosition() {
         return parentPosition;
     }
@@ -97,6 +97,12 @@ public class CronTimer extends Thread {
      * @param millis 当前时间
      */
     private void spawnLauncher(final long millis) {
+        final TimingWheel wheel = this.scheduler.timingWheel;
+        if (null != wheel) {
+            // 时间轮只处理到期任务,开销很小,直接在计时器线程中推进
+            wheel.advance(millis);
+            return;
+        }
         this.scheduler.launcherManager.spawnLauncher(millis);
     }
 
@@ -26,7 +26,6 @@ package org.aoju.bus.cron;
 
 import org.aoju.bus.core.lang.Assert;
 import org.aoju.bus.core.lang.Charset;
-import org.aoju.bus.core.lang.Fields;
 import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.utils.DateUtils;
 import org.aoju.bus.cron.factory.Task;
@@ -35,7 +34,9 @@ import org.aoju.bus.setting.Setting;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TimeZone;
 
 /**
  * 定时任务工具类
@@ -270,14 +271,14 @@ public final class CronUtils {
         Assert.isTrue(start < end, "Start date is later than end !");
 
         final List<Date> result = new ArrayList<>(count);
-        long step = isMatchSecond ? Fields.Unit.SECOND.getMillis() : Fields.Unit.MINUTE.getMillis();
-        for (long i = start; i < end; i += step) {
-            if (pattern.match(i, isMatchSecond)) {
-                result.add(DateUtils.date(i));
-                if (result.size() >= count) {
-                    break;
-                }
+        // 直接跳到下一个执行时间,无需逐秒（分）匹配
+        final Iterator<Long> iterator = pattern.iterator(TimeZone.getDefault(), start - 1, isMatchSecond);
+        while (result.size() < count && iterator.hasNext()) {
+            final long millis = iterator.next();
+            if (millis >= end) {
+                break;
             }
+            result.add(DateUtils.date(millis));
         }
         return result;
     }
@@ -84,6 +84,14 @@ public class Scheduler {
      * 是否为守护线程
      */
     protected boolean daemon;
+    /**
+     * 是否使用时间轮调度
+     */
+    protected boolean useTimingWheel = false;
+    /**
+     * 时间轮,仅在使用时间轮调度且已启动时存在
+     */
+    protected volatile TimingWheel timingWheel;
     /**
      * 定时任务表
      */
@@ -185,6 +193,34 @@ public class Scheduler {
         return this;
     }
 
+    /**
+     * 是否使用时间轮调度
+     *
+     * @return <code>true</code>使用,<code>false</code>不使用
+     */
+    public boolean isUseTimingWheel() {
+        return this.useTimingWheel;
+    }
+
+    /**
+     * 设置是否使用时间轮调度,默认不使用
+     * 默认方式下每个时间单元都要匹配任务表中的全部表达式；
+     * 时间轮方式预先计算每个任务的下一次执行时间,每个时间单元只处理到期的任务,适合任务数量很大的场景
+     *
+     * @param useTimingWheel <code>true</code>使用,<code>false</code>不使用
+     * @return this
+     * @throws InstrumentException 定时任务已经启动抛出此异常
+     */
+    public Scheduler setUseTimingWheel(boolean useTimingWheel) throws InstrumentException {
+        synchronized (lock) {
+            if (started) {
+                throw new InstrumentException("Scheduler already started!");
+            }
+            this.useTimingWheel = useTimingWheel;
+        }
+        return this;
+    }
+
     /**
      * 增加监听器
      *
@@ -367,6 +403,10 @@ public class Scheduler {
      */
     public Scheduler clear() {
         this.taskTable = new TaskTable(this);
+        final TimingWheel wheel = this.timingWheel;
+        if (null != wheel) {
+            wheel.clear();
+        }
         return this;
     }
 
@@ -404,6 +444,9 @@ public class Scheduler {
             ).build();
             this.launcherManager = new LauncherManager(this);
             this.executorManager = new ExecutorManager(this);
+            if (this.useTimingWheel) {
+                this.taskTable.bind(new TimingWheel(this, System.currentTimeMillis()));
+            }
 
             // Start CronTimer
             timer = new CronTimer(this);
@@ -441,6 +484,7 @@ public class Scheduler {
             // 停止CronTimer
             this.timer.stopTimer();
             this.timer = null;
+            this.timingWheel = null;
 
             //停止线程池
             this.threadExecutor.shutdown();
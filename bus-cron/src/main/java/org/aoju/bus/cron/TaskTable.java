@@ -84,6 +84,10 @@ public class TaskTable {
             patterns.add(pattern);
             tasks.add(task);
             size++;
+            final TimingWheel wheel = this.scheduler.timingWheel;
+            if (null != wheel) {
+                wheel.add(id, pattern, task);
+            }
         } finally {
             writeLock.unlock();
         }
@@ -105,6 +109,10 @@ public class TaskTable {
                 patterns.remove(index);
                 ids.remove(index);
                 size--;
+                final TimingWheel wheel = this.scheduler.timingWheel;
+                if (null != wheel) {
+                    wheel.remove(id);
+                }
             }
         } finally {
             writeLock.unlock();
@@ -125,6 +133,10 @@ public class TaskTable {
             final int index = ids.indexOf(id);
             if (index > -1) {
                 patterns.set(index, pattern);
+                final TimingWheel wheel = this.scheduler.timingWheel;
+                if (null != wheel) {
+                    wheel.updatePattern(id, pattern);
+                }
                 return true;
             }
         } finally {
@@ -215,6 +227,24 @@ public class TaskTable {
         return null;
     }
 
+    /**
+     * 将表中现有任务载入时间轮并启用,之后的增删改同步到时间轮
+     *
+     * @param wheel {@link TimingWheel}
+     */
+    protected void bind(TimingWheel wheel) {
+        final Lock readLock = lock.readLock();
+        try {
+            readLock.lock();
+            for (int i = 0; i < size; i++) {
+                wheel.add(ids.get(i), patterns.get(i), tasks.get(i));
+            }
+            this.scheduler.timingWheel = wheel;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     /**
      * 如果时间匹配则执行相应的Task,带读锁
      *
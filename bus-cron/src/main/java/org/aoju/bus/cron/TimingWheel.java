@@ -0,0 +1,335 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.cron;
+
+import org.aoju.bus.cron.factory.Task;
+import org.aoju.bus.cron.pattern.CronPattern;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 分层时间轮
+ * 每个任务按表达式预先计算下一次执行时间,放入对应层级的槽位中；
+ * 每次推进只处理到期槽位中的任务,高层槽位在低层转完一圈时逐级下沉,
+ * 因此每个时间单元的开销与到期任务数相关,而与任务总数无关
+ * <p>
+ * 时间轮共5层,每层64个槽位,按秒计时可覆盖约34年,更远的任务放入溢出链表,在顶层转完一圈时重新分配
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_SIZE = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOT_SIZE - 1;
+    private static final int LEVELS = 5;
+    /**
+     * 一次推进超过此时间单元数视为时钟跳变,重新计算所有任务
+     */
+    private static final long MAX_CATCH_UP = SLOT_SIZE;
+
+    private final Scheduler scheduler;
+    private final TimeZone timezone;
+    private final boolean matchSecond;
+    /**
+     * 时间单元,毫秒
+     */
+    private final long unit;
+
+    private final Entry[][] wheels = new Entry[LEVELS][SLOT_SIZE];
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Entry overflow;
+    /**
+     * 当前已处理到的时间单元
+     */
+    private long currentTick;
+
+    /**
+     * 构造
+     *
+     * @param scheduler {@link Scheduler}
+     * @param millis    起始时间
+     */
+    public TimingWheel(Scheduler scheduler, long millis) {
+        this.scheduler = scheduler;
+        this.timezone = scheduler.getTimeZone();
+        this.matchSecond = scheduler.matchSecond;
+        this.unit = matchSecond ? 1000L : 60 * 1000L;
+        this.currentTick = millis / unit;
+    }
+
+    /**
+     * 加入任务,如果ID已存在则替换
+     *
+     * @param id      任务ID
+     * @param pattern {@link CronPattern}
+     * @param task    {@link Task}
+     */
+    public synchronized void add(String id, CronPattern pattern, Task task) {
+        remove(id);
+        final Entry entry = new Entry(pattern, task);
+        entries.put(id, entry);
+        schedule(entry, currentTick * unit + unit - 1);
+    }
+
+    /**
+     * 移除任务
+     *
+     * @param id 任务ID
+     */
+    public synchronized void remove(String id) {
+        final Entry entry = entries.remove(id);
+        if (null != entry) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * 更新任务表达式
+     *
+     * @param id      任务ID
+     * @param pattern 新的表达式
+     */
+    public synchronized void updatePattern(String id, CronPattern pattern) {
+        final Entry entry = entries.get(id);
+        if (null != entry) {
+            add(id, pattern, entry.task);
+        }
+    }
+
+    /**
+     * 清空所有任务
+     */
+    public synchronized void clear() {
+        entries.clear();
+        for (Entry[] wheel : wheels) {
+            for (int i = 0; i < SLOT_SIZE; i++) {
+                wheel[i] = null;
+            }
+        }
+        overflow = null;
+    }
+
+    /**
+     * 任务数
+     *
+     * @return 任务数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 推进时间轮到指定时间,并执行期间到期的任务
+     *
+     * @param millis 当前时间
+     */
+    public synchronized void advance(long millis) {
+        final long targetTick = millis / unit;
+        if (targetTick < currentTick || targetTick - currentTick > MAX_CATCH_UP) {
+            // 时钟回拨或大幅跳变,逐格推进无意义,直接按当前时间重排
+            currentTick = targetTick;
+            rebuild(millis);
+            return;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            fire((int) (currentTick & SLOT_MASK));
+        }
+    }
+
+    /**
+     * 低层转完一圈时,将上层对应槽位的任务重新分配到低层
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if (((currentTick >>> (SLOT_BITS * level - SLOT_BITS)) & SLOT_MASK) != 0) {
+                return;
+            }
+            final int index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            Entry entry = wheels[level][index];
+            wheels[level][index] = null;
+            while (null != entry) {
+                final Entry next = entry.next;
+                entry.prev = entry.next = null;
+                place(entry);
+                entry = next;
+            }
+        }
+        // 顶层转完一圈,重新分配溢出任务
+        Entry entry = overflow;
+        overflow = null;
+        while (null != entry) {
+            final Entry next = entry.next;
+            entry.prev = entry.next = null;
+            place(entry);
+            entry = next;
+        }
+    }
+
+    /**
+     * 执行第0层指定槽位中的到期任务,并计算下一次执行时间
+     *
+     * @param index 槽位
+     */
+    private void fire(int index) {
+        Entry entry = wheels[0][index];
+        wheels[0][index] = null;
+        final long millis = currentTick * unit;
+        while (null != entry) {
+            final Entry next = entry.next;
+            entry.prev = entry.next = null;
+            entry.level = -1;
+            if (entry.tick == currentTick) {
+                this.scheduler.executorManager.spawnExecutor(entry.task);
+                schedule(entry, millis + unit - 1);
+            } else {
+                place(entry);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * 按当前时间重新计算所有任务的下一次执行时间
+     *
+     * @param millis 当前时间
+     */
+    private void rebuild(long millis) {
+        for (Entry[] wheel : wheels) {
+            for (int i = 0; i < SLOT_SIZE; i++) {
+                wheel[i] = null;
+            }
+        }
+        overflow = null;
+        for (Entry entry : entries.values()) {
+            entry.prev = entry.next = null;
+            entry.level = -1;
+            schedule(entry, millis);
+        }
+    }
+
+    /**
+     * 计算任务在给定时间之后的下一次执行时间并放入时间轮,无后续执行时间的任务不再调度
+     *
+     * @param entry  任务
+     * @param millis 起始时间
+     */
+    private void schedule(Entry entry, long millis) {
+        final long next = entry.pattern.nextMatchAfter(timezone, millis, matchSecond);
+        if (next < 0) {
+            return;
+        }
+        entry.tick = next / unit;
+        place(entry);
+    }
+
+    /**
+     * 根据到期时间与当前时间的差距选择层级和槽位
+     *
+     * @param entry 任务
+     */
+    private void place(Entry entry) {
+        final long delta = entry.tick - currentTick;
+        if (delta <= 0) {
+            // 已到期但错过处理的任务放在下一格执行
+            entry.tick = currentTick + 1;
+            link(entry, 0, (int) (entry.tick & SLOT_MASK));
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                link(entry, level, (int) ((entry.tick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                return;
+            }
+        }
+        entry.next = overflow;
+        if (null != overflow) {
+            overflow.prev = entry;
+        }
+        overflow = entry;
+        entry.level = LEVELS;
+    }
+
+    private void link(Entry entry, int level, int index) {
+        final Entry head = wheels[level][index];
+        entry.next = head;
+        if (null != head) {
+            head.prev = entry;
+        }
+        wheels[level][index] = entry;
+        entry.level = level;
+        entry.index = index;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.level < 0) {
+            return;
+        }
+        if (null != entry.prev) {
+            entry.prev.next = entry.next;
+        } else if (entry.level == LEVELS) {
+            overflow = entry.next;
+        } else {
+            wheels[entry.level][entry.index] = entry.next;
+        }
+        if (null != entry.next) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = entry.next = null;
+        entry.level = -1;
+    }
+
+    /**
+     * 时间轮中的任务节点,以双向链表挂在槽位上
+     */
+    private static class Entry {
+
+        private final CronPattern pattern;
+        private final Task task;
+        /**
+         * 到期时间单元
+         */
+        private long tick;
+        /**
+         * 所在层级及槽位,未调度时层级为-1,溢出链表中层级为{@link #LEVELS}
+         */
+        private int level = -1;
+        private int index;
+        private Entry prev;
+        private Entry next;
+
+        Entry(CronPattern pattern, Task task) {
+            this.pattern = pattern;
+            this.task = task;
+        }
+    }
+
+}
@@ -29,11 +29,16 @@ import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.utils.DateUtils;
 import org.aoju.bus.core.utils.StringUtils;
 import org.aoju.bus.cron.pattern.matcher.AlwaysTrueValueMatcher;
+import org.aoju.bus.cron.pattern.matcher.BoolArrayValueMatcher;
 import org.aoju.bus.cron.pattern.matcher.DayOfMonthValueMatcher;
 import org.aoju.bus.cron.pattern.matcher.ValueMatcher;
 import org.aoju.bus.cron.pattern.matcher.ValueMatcherBuilder;
 import org.aoju.bus.cron.pattern.parser.*;
 
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.*;
 
 /**
@@ -235,6 +240,359 @@ public class CronPattern {
         return false;
     }
 
+    /**
+     * 在指定匹配器中查找不小于给定值的第一个匹配值
+     *
+     * @param matcher {@link ValueMatcher}
+     * @param value   起始值
+     * @param max     字段最大值
+     * @return 匹配值, 无匹配返回-1
+     */
+    private static int nextMatch(ValueMatcher matcher, int value, int max) {
+        if (matcher instanceof AlwaysTrueValueMatcher) {
+            return value <= max ? value : -1;
+        }
+        if (matcher instanceof BoolArrayValueMatcher) {
+            final int next = ((BoolArrayValueMatcher) matcher).nextMatch(value);
+            return next <= max ? next : -1;
+        }
+        for (int i = value; i <= max; i++) {
+            if (matcher.match(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在指定匹配器中查找不大于给定值的最后一个匹配值
+     *
+     * @param matcher {@link ValueMatcher}
+     * @param value   起始值
+     * @param min     字段最小值
+     * @return 匹配值, 无匹配返回-1
+     */
+    private static int previousMatch(ValueMatcher matcher, int value, int min) {
+        if (matcher instanceof AlwaysTrueValueMatcher) {
+            return value >= min ? value : -1;
+        }
+        if (matcher instanceof BoolArrayValueMatcher) {
+            final int previous = ((BoolArrayValueMatcher) matcher).previousMatch(value);
+            return previous >= min ? previous : -1;
+        }
+        for (int i = value; i >= min; i--) {
+            if (matcher.match(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 某一时间单元的最后时刻,非秒匹配模式下为该分钟的0秒
+     *
+     * @param start         下一个时间单元的起点
+     * @param isMatchSecond 是否匹配秒
+     * @return 时间
+     */
+    private static LocalDateTime lastBefore(LocalDateTime start, boolean isMatchSecond) {
+        return start.minusSeconds(1).truncatedTo(isMatchSecond ? ChronoUnit.SECONDS : ChronoUnit.MINUTES);
+    }
+
+    /**
+     * 计算给定时间之后（不含）第一个匹配表达式的时间点,使用默认时区
+     *
+     * @param millis        起始时间毫秒数
+     * @param isMatchSecond 是否匹配秒
+     * @return 下一个匹配的时间毫秒数, 100年内无匹配返回-1
+     */
+    public long nextMatchAfter(long millis, boolean isMatchSecond) {
+        return nextMatchAfter(TimeZone.getDefault(), millis, isMatchSecond);
+    }
+
+    /**
+     * 计算给定时间之后（不含）第一个匹配表达式的时间点
+     * 从高位字段到低位字段逐个检查,不匹配时直接跳到该字段的下一个匹配值并将低位字段归零
+     *
+     * @param timezone      时区 {@link TimeZone}
+     * @param millis        起始时间毫秒数
+     * @param isMatchSecond 是否匹配秒
+     * @return 下一个匹配的时间毫秒数, 100年内无匹配返回-1
+     */
+    public long nextMatchAfter(TimeZone timezone, long millis, boolean isMatchSecond) {
+        long next = -1;
+        for (int i = 0; i < matcherSize; i++) {
+            final long candidate = nextMatchAfter(i, timezone, millis, isMatchSecond);
+            if (candidate > 0 && (next < 0 || candidate < next)) {
+                next = candidate;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * 计算给定时间之前（不含）最后一个匹配表达式的时间点,使用默认时区
+     *
+     * @param millis        起始时间毫秒数
+     * @param isMatchSecond 是否匹配秒
+     * @return 上一个匹配的时间毫秒数, 100年内无匹配返回-1
+     */
+    public long previousMatchBefore(long millis, boolean isMatchSecond) {
+        return previousMatchBefore(TimeZone.getDefault(), millis, isMatchSecond);
+    }
+
+    /**
+     * 计算给定时间之前（不含）最后一个匹配表达式的时间点,可用于判断两次检查之间是否错过了执行
+     *
+     * @param timezone      时区 {@link TimeZone}
+     * @param millis        起始时间毫秒数
+     * @param isMatchSecond 是否匹配秒
+     * @return 上一个匹配的时间毫秒数, 100年内无匹配返回-1
+     */
+    public long previousMatchBefore(TimeZone timezone, long millis, boolean isMatchSecond) {
+        long previous = -1;
+        for (int i = 0; i < matcherSize; i++) {
+            final long candidate = previousMatchBefore(i, timezone, millis, isMatchSecond);
+            if (candidate > previous) {
+                previous = candidate;
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * 给定时间之后的执行时间迭代器,按时间先后依次返回,无后续执行时间时结束
+     *
+     * @param timezone      时区 {@link TimeZone}
+     * @param millis        起始时间毫秒数（不含）
+     * @param isMatchSecond 是否匹配秒
+     * @return 执行时间毫秒数迭代器
+     */
+    public Iterator<Long> iterator(TimeZone timezone, long millis, boolean isMatchSecond) {
+        return new Iterator<Long>() {
+
+            private long next = nextMatchAfter(timezone, millis, isMatchSecond);
+
+            @Override
+            public boolean hasNext() {
+                return next > 0;
+            }
+
+            @Override
+            public Long next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                final long current = next;
+                next = nextMatchAfter(timezone, current, isMatchSecond);
+                return current;
+            }
+        };
+    }
+
+    /**
+     * 给定时间之后的若干个执行时间
+     *
+     * @param timezone      时区 {@link TimeZone}
+     * @param millis        起始时间毫秒数（不含）
+     * @param isMatchSecond 是否匹配秒
+     * @param count         最多返回的个数
+     * @return 执行时间列表
+     */
+    public List<Date> nextMatches(TimeZone timezone, long millis, boolean isMatchSecond, int count) {
+        final List<Date> result = new ArrayList<>(count);
+        final Iterator<Long> iterator = iterator(timezone, millis, isMatchSecond);
+        while (result.size() < count && iterator.hasNext()) {
+            result.add(new Date(iterator.next()));
+        }
+        return result;
+    }
+
+    /**
+     * 计算单一表达式在给定时间之后的第一个匹配时间点
+     * 按本地时间逐字段查找,再换算为时间戳：夏令时跳过的本地时间不匹配,重复的本地时间两次都可匹配,与{@link #match(TimeZone, long, boolean)}一致
+     *
+     * @param index         单一表达式位置
+     * @param timezone      时区
+     * @param millis        起始时间毫秒数
+     * @param isMatchSecond 是否匹配秒
+     * @return 下一个匹配的时间毫秒数, 无匹配返回-1
+     */
+    private long nextMatchAfter(int index, TimeZone timezone, long millis, boolean isMatchSecond) {
+        final ZoneId zone = timezone.toZoneId();
+        final ZoneRules rules = zone.getRules();
+        final Instant instant = Instant.ofEpochMilli(millis);
+        LocalDateTime local = LocalDateTime.ofInstant(instant, zone);
+        // 处于夏令时重复时段的第一遍时,第二遍中更早的本地时间仍在之后发生,需从重复时段起点开始查找
+        final ZoneOffsetTransition transition = rules.nextTransition(instant);
+        if (null != transition && transition.isOverlap() && false == local.isBefore(transition.getDateTimeAfter())) {
+            local = transition.getDateTimeAfter();
+        }
+        local = local.truncatedTo(isMatchSecond ? ChronoUnit.SECONDS : ChronoUnit.MINUTES);
+
+        long next = -1;
+        final int maxYear = local.getYear() + 100;
+        while (local.getYear() <= maxYear) {
+            // 夏令时重复的时段内,本地时间靠后的匹配可能对应更早的时间点,直到本地时间最早的时间点也不早于已找到的结果为止
+            if (next > 0 && local.atZone(zone).toInstant().toEpochMilli() >= next) {
+                return next;
+            }
+            final int year = local.getYear();
+            final int y = nextMatch(yearMatchers.get(index), year, maxYear);
+            if (y < 0) {
+                return next;
+            }
+            if (y != year) {
+                local = LocalDateTime.of(y, 1, 1, 0, 0);
+                continue;
+            }
+            final int month = nextMatch(monthMatchers.get(index), local.getMonthValue(), 12);
+            if (month < 0) {
+                local = LocalDateTime.of(year + 1, 1, 1, 0, 0);
+                continue;
+            }
+            if (month != local.getMonthValue()) {
+                local = LocalDateTime.of(year, month, 1, 0, 0);
+                continue;
+            }
+            if (false == isMatchDayOfMonth(dayOfMonthMatchers.get(index), local.getDayOfMonth(), month, Year.isLeap(year))
+                    || false == dayOfWeekMatchers.get(index).match(local.getDayOfWeek().getValue() % 7)) {
+                local = local.plusDays(1).truncatedTo(ChronoUnit.DAYS);
+                continue;
+            }
+            final int hour = nextMatch(hourMatchers.get(index), local.getHour(), 23);
+            if (hour < 0) {
+                local = local.plusDays(1).truncatedTo(ChronoUnit.DAYS);
+                continue;
+            }
+            if (hour != local.getHour()) {
+                local = local.withHour(hour).truncatedTo(ChronoUnit.HOURS);
+                continue;
+            }
+            final int minute = nextMatch(minuteMatchers.get(index), local.getMinute(), 59);
+            if (minute < 0) {
+                local = local.plusHours(1).truncatedTo(ChronoUnit.HOURS);
+                continue;
+            }
+            if (minute != local.getMinute()) {
+                local = local.withMinute(minute).truncatedTo(ChronoUnit.MINUTES);
+                continue;
+            }
+            if (isMatchSecond) {
+                final int second = nextMatch(secondMatchers.get(index), local.getSecond(), 59);
+                if (second < 0) {
+                    local = local.plusMinutes(1).truncatedTo(ChronoUnit.MINUTES);
+                    continue;
+                }
+                if (second != local.getSecond()) {
+                    local = local.withSecond(second);
+                    continue;
+                }
+            }
+
+            // 本地时间可能对应0个（夏令时跳过）、1个或2个（夏令时重复）时间点
+            for (ZoneOffset offset : rules.getValidOffsets(local)) {
+                final long candidate = local.toInstant(offset).toEpochMilli();
+                if (candidate > millis && (next < 0 || candidate < next)) {
+                    next = candidate;
+                }
+            }
+            local = isMatchSecond ? local.plusSeconds(1) : local.plusMinutes(1);
+        }
+        return next;
+    }
+
+    /**
+     * 计算单一表达式在给定时间之前的最后一个匹配时间点,查找方式与{@link #nextMatchAfter(int, TimeZone, long, boolean)}对称
+     *
+     * @param index         单一表达式位置
+     * @param timezone      时区
+     * @param millis        起始时间毫秒数
+     * @param isMatchSecond 是否匹配秒
+     * @return 上一个匹配的时间毫秒数, 无匹配返回-1
+     */
+    private long previousMatchBefore(int index, TimeZone timezone, long millis, boolean isMatchSecond) {
+        final ZoneId zone = timezone.toZoneId();
+        final ZoneRules rules = zone.getRules();
+        final Instant instant = Instant.ofEpochMilli(millis);
+        LocalDateTime local = LocalDateTime.ofInstant(instant, zone);
+        // 处于夏令时重复时段的第二遍时,第一遍中更晚的本地时间仍在之前发生,需从重复时段终点开始查找
+        final ZoneOffsetTransition transition = rules.previousTransition(instant);
+        if (null != transition && transition.isOverlap() && local.isBefore(transition.getDateTimeBefore())) {
+            local = lastBefore(transition.getDateTimeBefore(), true);
+        }
+        local = local.truncatedTo(isMatchSecond ? ChronoUnit.SECONDS : ChronoUnit.MINUTES);
+
+        long previous = -1;
+        final int minYear = local.getYear() - 100;
+        while (local.getYear() >= minYear) {
+            if (previous > 0 && local.atZone(zone).withLaterOffsetAtOverlap().toInstant().toEpochMilli() <= previous) {
+                return previous;
+            }
+            final int year = local.getYear();
+            final int y = previousMatch(yearMatchers.get(index), year, minYear);
+            if (y < 0) {
+                return previous;
+            }
+            if (y != year) {
+                local = lastBefore(LocalDateTime.of(y + 1, 1, 1, 0, 0), isMatchSecond);
+                continue;
+            }
+            final int month = previousMatch(monthMatchers.get(index), local.getMonthValue(), 1);
+            if (month < 0) {
+                local = lastBefore(LocalDateTime.of(year, 1, 1, 0, 0), isMatchSecond);
+                continue;
+            }
+            if (month != local.getMonthValue()) {
+                local = lastBefore(LocalDateTime.of(year, month, 1, 0, 0).plusMonths(1), isMatchSecond);
+                continue;
+            }
+            if (false == isMatchDayOfMonth(dayOfMonthMatchers.get(index), local.getDayOfMonth(), month, Year.isLeap(year))
+                    || false == dayOfWeekMatchers.get(index).match(local.getDayOfWeek().getValue() % 7)) {
+                local = lastBefore(local.truncatedTo(ChronoUnit.DAYS), isMatchSecond);
+                continue;
+            }
+            final int hour = previousMatch(hourMatchers.get(index), local.getHour(), 0);
+            if (hour < 0) {
+                local = lastBefore(local.truncatedTo(ChronoUnit.DAYS), isMatchSecond);
+                continue;
+            }
+            if (hour != local.getHour()) {
+                local = lastBefore(local.truncatedTo(ChronoUnit.DAYS).withHour(hour).plusHours(1), isMatchSecond);
+                continue;
+            }
+            final int minute = previousMatch(minuteMatchers.get(index), local.getMinute(), 0);
+            if (minute < 0) {
+                local = lastBefore(local.truncatedTo(ChronoUnit.HOURS), isMatchSecond);
+                continue;
+            }
+            if (minute != local.getMinute()) {
+                local = lastBefore(local.truncatedTo(ChronoUnit.HOURS).withMinute(minute).plusMinutes(1), isMatchSecond);
+                continue;
+            }
+            if (isMatchSecond) {
+                final int second = previousMatch(secondMatchers.get(index), local.getSecond(), 0);
+                if (second < 0) {
+                    local = lastBefore(local.truncatedTo(ChronoUnit.MINUTES), true);
+                    continue;
+                }
+                if (second != local.getSecond()) {
+                    local = local.withSecond(second);
+                    continue;
+                }
+            }
+
+            for (ZoneOffset offset : rules.getValidOffsets(local)) {
+                final long candidate = local.toInstant(offset).toEpochMilli();
+                if (candidate < millis && candidate > previous) {
+                    previous = candidate;
+                }
+            }
+            local = isMatchSecond ? local.minusSeconds(1) : local.minusMinutes(1);
+        }
+        return previous;
+    }
+
     @Override
     public String toString() {
         return this.pattern;
@@ -315,7 +673,7 @@ public class CronPattern {
                 throw new InstrumentException("Invalid pattern [{}], parsing 'year' field error!", pattern);
             }
         } else {// 不支持年的表达式,全部匹配
-            this.secondMatchers.add(new AlwaysTrueValueMatcher());
+            this.yearMatchers.add(new AlwaysTrueValueMatcher());
         }
         matcherSize++;
     }
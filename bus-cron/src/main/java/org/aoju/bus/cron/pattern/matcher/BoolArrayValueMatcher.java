@@ -55,6 +55,36 @@ public class BoolArrayValueMatcher implements ValueMatcher {
         return bValues[value];
     }
 
+    /**
+     * 查找不小于给定值的第一个匹配值
+     *
+     * @param value 起始值
+     * @return 匹配值, 无匹配返回-1
+     */
+    public int nextMatch(int value) {
+        for (int i = Math.max(value, 0); i < bValues.length; i++) {
+            if (bValues[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找不大于给定值的最后一个匹配值
+     *
+     * @param value 起始值
+     * @return 匹配值, 无匹配返回-1
+     */
+    public int previousMatch(int value) {
+        for (int i = Math.min(value, bValues.length - 1); i >= 0; i--) {
+            if (bValues[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public String toString() {
         return StringUtils.format("Matcher:{}", this.bValues);
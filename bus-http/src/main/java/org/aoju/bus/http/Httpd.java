@@ -34,6 +34,7 @@ import org.aoju.bus.http.metric.CookieJar;
 import org.aoju.bus.http.metric.Dispatcher;
 import org.aoju.bus.http.metric.EventListener;
 import org.aoju.bus.http.metric.Interceptor;
+import org.aoju.bus.http.metric.http.ContentCoding;
 import org.aoju.bus.http.metric.proxy.NullProxySelector;
 import org.aoju.bus.http.secure.Authenticator;
 import org.aoju.bus.http.secure.CertificateChainCleaner;
@@ -210,6 +211,15 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
      * Web socket ping间隔(毫秒)
      */
     final int pingInterval;
+    /**
+     * 可透明解码的响应内容编码
+     */
+    final List<ContentCoding> contentCodings;
+    /**
+     * 请求体压缩编码及触发压缩的最小长度
+     */
+    final ContentCoding requestCoding;
+    final long requestCodingThreshold;
 
     public Httpd() {
         this(new Builder());
@@ -262,6 +272,9 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
         this.readTimeout = builder.readTimeout;
         this.writeTimeout = builder.writeTimeout;
         this.pingInterval = builder.pingInterval;
+        this.contentCodings = org.aoju.bus.http.Builder.immutableList(builder.contentCodings);
+        this.requestCoding = builder.requestCoding;
+        this.requestCodingThreshold = builder.requestCodingThreshold;
 
         if (interceptors.contains(null)) {
             throw new IllegalStateException("Null interceptor: " + interceptors);
@@ -402,6 +415,18 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
         return eventListenerFactory;
     }
 
+    public List<ContentCoding> contentCodings() {
+        return contentCodings;
+    }
+
+    public ContentCoding requestCoding() {
+        return requestCoding;
+    }
+
+    public long requestCodingThreshold() {
+        return requestCodingThreshold;
+    }
+
 
     public Builder newBuilder() {
         return new Builder(this);
@@ -437,6 +462,9 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
         int readTimeout;
         int writeTimeout;
         int pingInterval;
+        final List<ContentCoding> contentCodings = new ArrayList<>();
+        ContentCoding requestCoding;
+        long requestCodingThreshold;
 
         public Builder() {
             dispatcher = new Dispatcher();
@@ -463,6 +491,8 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
             readTimeout = 10_000;
             writeTimeout = 10_000;
             pingInterval = 0;
+            contentCodings.add(ContentCoding.GZIP);
+            requestCodingThreshold = Long.MAX_VALUE;
         }
 
         Builder(Httpd httpd) {
@@ -494,6 +524,9 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
             this.readTimeout = httpd.readTimeout;
             this.writeTimeout = httpd.writeTimeout;
             this.pingInterval = httpd.pingInterval;
+            this.contentCodings.addAll(httpd.contentCodings);
+            this.requestCoding = httpd.requestCoding;
+            this.requestCodingThreshold = httpd.requestCodingThreshold;
         }
 
         /**
@@ -907,6 +940,50 @@ public class Httpd implements Cloneable, NewCall.Factory, WebSocket.Factory {
             return this;
         }
 
+        /**
+         * 注册响应内容编码，注册顺序即{@code Accept-Encoding}中的优先顺序。
+         * 同名编码会替换已注册的编码，默认只注册gzip，deflate等需显式注册
+         *
+         * @param coding 内容编码
+         * @return 构造器
+         */
+        public Builder addContentCoding(ContentCoding coding) {
+            if (coding == null) throw new IllegalArgumentException("coding == null");
+            for (int i = 0; i < contentCodings.size(); i++) {
+                if (contentCodings.get(i).name().equalsIgnoreCase(coding.name())) {
+                    contentCodings.set(i, coding);
+                    return this;
+                }
+            }
+            contentCodings.add(coding);
+            return this;
+        }
+
+        /**
+         * 移除所有已注册的内容编码，之后不再自动添加{@code Accept-Encoding}
+         *
+         * @return 构造器
+         */
+        public Builder clearContentCodings() {
+            contentCodings.clear();
+            return this;
+        }
+
+        /**
+         * 对长度已知且不小于{@code threshold}字节的请求体使用{@code coding}压缩，
+         * 并添加相应的{@code Content-Encoding}头。已设置该头的请求不会被重复压缩
+         *
+         * @param coding    编码，为空时关闭请求体压缩
+         * @param threshold 触发压缩的最小长度
+         * @return 构造器
+         */
+        public Builder requestCoding(ContentCoding coding, long threshold) {
+            if (threshold < 0) throw new IllegalArgumentException("threshold < 0: " + threshold);
+            this.requestCoding = coding;
+            this.requestCodingThreshold = coding == null ? Long.MAX_VALUE : threshold;
+            return this;
+        }
+
         public Builder connectionSpecs(List<ConnectionSuite> connectionSuites) {
             this.connectionSuites = org.aoju.bus.http.Builder.immutableList(connectionSuites);
             return this;
@@ -35,6 +35,7 @@ import org.aoju.bus.http.bodys.FormBody;
 import org.aoju.bus.http.bodys.MultipartBody;
 import org.aoju.bus.http.bodys.RequestBody;
 import org.aoju.bus.http.magic.HttpProxy;
+import org.aoju.bus.http.metric.CachingDns;
 import org.aoju.bus.http.metric.Dispatcher;
 import org.aoju.bus.http.secure.X509TrustManager;
 import org.aoju.bus.logger.Logger;
@@ -190,14 +191,14 @@ public class Httpx extends Httpd {
                 return chain.proceed(request);
             });
             if (ObjectUtils.isNotEmpty(dns)) {
-                builder.dns(hostname -> {
+                builder.dns(new CachingDns.Builder().dns(hostname -> {
                     try {
                         return dns.lookup(hostname);
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        Logger.warn("dns lookup failed, fallback to system dns: {}", e.getMessage());
                     }
                     return DnsX.SYSTEM.lookup(hostname);
-                });
+                }).build());
             }
             if (ObjectUtils.isNotEmpty(httpProxy)) {
                 builder.proxy(httpProxy.proxy());
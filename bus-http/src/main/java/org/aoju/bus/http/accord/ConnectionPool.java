@@ -25,11 +25,16 @@
 package org.aoju.bus.http.accord;
 
 import org.aoju.bus.core.utils.IoUtils;
-import org.aoju.bus.http.Address;
-import org.aoju.bus.http.Builder;
-import org.aoju.bus.http.Route;
+import org.aoju.bus.http.*;
 import org.aoju.bus.http.accord.platform.Platform;
+import org.aoju.bus.http.metric.EventListener;
+import org.aoju.bus.http.secure.CertificatePinner;
+import org.aoju.bus.logger.Logger;
 
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.ref.Reference;
 import java.net.Socket;
 import java.util.*;
@@ -42,6 +47,10 @@ import java.util.concurrent.TimeUnit;
  * 管理HTTP和HTTP/2连接的重用，以减少网络延迟。 共享相同的
  * {@link Address}的HTTP请求可能共享一个{@link Connection}
  * 该类实现了哪些连接保持开放以供将来使用的策略
+ * <p>
+ * 连接按主机(host:port)建立索引，获取连接时只需扫描同主机的连接，
+ * 仅在需要HTTP/2连接合并时才扫描多路复用连接；同时支持单主机最大连接数、
+ * 单主机最小空闲连接(后台预热)以及连接池利用率统计
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -56,14 +65,42 @@ public final class ConnectionPool {
     private static final Executor executor = new ThreadPoolExecutor(0,
             Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
             new SynchronousQueue<>(), Builder.threadFactory("Httpd ConnectionPool", true));
+    /**
+     * 统计信息保留的最大主机数
+     */
+    private static final int MAX_HOSTS = 256;
+    /**
+     * 预热检查的最大间隔
+     */
+    private static final long WARM_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
     public final Deque<RealConnection> connections = new ArrayDeque<>();
     public final RouteDatabase routeDatabase = new RouteDatabase();
+    /**
+     * 按主机索引的连接，访问顺序，超出上限时淘汰最久未使用且已无连接的主机
+     */
+    private final Map<String, HostConnections> hosts = new LinkedHashMap<String, HostConnections>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HostConnections> eldest) {
+            return size() > MAX_HOSTS && eldest.getValue().isEmpty();
+        }
+    };
+    /**
+     * 多路复用(HTTP/2)连接，用于跨主机的连接合并
+     */
+    private final List<RealConnection> multiplexed = new ArrayList<>();
     /**
      * 每个地址的最大空闲连接数.
      */
     private final int maxIdleConnections;
     private final long keepAliveDurationNs;
+    /**
+     * 预热线程的等待对象，避免被连接池上的notifyAll频繁唤醒
+     */
+    private final Object warmLock = new Object();
     boolean cleanupRunning;
+    boolean warmRunning;
+    private int maxConnectionsPerRoute = Integer.MAX_VALUE;
     private final Runnable cleanupRunnable = () -> {
         while (true) {
             long waitNanos = cleanup(System.nanoTime());
@@ -80,6 +117,30 @@ public final class ConnectionPool {
             }
         }
     };
+    private final Runnable warmRunnable = () -> {
+        while (true) {
+            List<HostConnections> targets = new ArrayList<>();
+            synchronized (ConnectionPool.this) {
+                for (HostConnections host : hosts.values()) {
+                    if (host.minIdle > 0) targets.add(host);
+                }
+                if (targets.isEmpty()) {
+                    warmRunning = false;
+                    return;
+                }
+            }
+            for (HostConnections host : targets) {
+                warm(host);
+            }
+            synchronized (warmLock) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(warmLock,
+                            Math.min(ConnectionPool.this.keepAliveDurationNs / 2, WARM_INTERVAL_NANOS));
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    };
 
     /**
      * 使用适合于单用户应用程序的调优参数创建新的连接池。
@@ -99,6 +160,10 @@ public final class ConnectionPool {
         }
     }
 
+    private static String key(Address address) {
+        return address.url().host() + ":" + address.url().port();
+    }
+
     /**
      * 返回池中空闲连接的数量
      *
@@ -123,6 +188,65 @@ public final class ConnectionPool {
         return connections.size();
     }
 
+    /**
+     * 设置每个主机(host:port)的最大连接数，包含正在建立的连接。
+     * 达到上限后新的请求将等待已有连接空闲，最长等待连接超时时间
+     *
+     * @param maxConnectionsPerRoute 最大连接数
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        if (maxConnectionsPerRoute < 1) {
+            throw new IllegalArgumentException("max < 1: " + maxConnectionsPerRoute);
+        }
+        synchronized (this) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            notifyAll();
+        }
+    }
+
+    public synchronized int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * 为{@code url}所在主机保持至少{@code minIdle}个空闲连接。后台线程会提前完成
+     * TCP和TLS握手，使首个请求无需等待建连；预热的连接不受最大空闲连接数的淘汰，
+     * 但仍会在keep alive超时后关闭并重新预热。{@code minIdle}为0时取消预热
+     *
+     * @param client  用于建连的客户端配置(超时、代理、TLS等)
+     * @param url     目标地址
+     * @param minIdle 最小空闲连接数
+     */
+    public void setMinIdle(Httpd client, String url, int minIdle) {
+        if (minIdle < 0) throw new IllegalArgumentException("minIdle < 0: " + minIdle);
+        UnoUrl unoUrl = UnoUrl.get(url);
+        SSLSocketFactory sslSocketFactory = null;
+        HostnameVerifier hostnameVerifier = null;
+        CertificatePinner certificatePinner = null;
+        if (unoUrl.isHttps()) {
+            sslSocketFactory = client.sslSocketFactory();
+            hostnameVerifier = client.hostnameVerifier();
+            certificatePinner = client.certificatePinner();
+        }
+        Address address = new Address(unoUrl.host(), unoUrl.port(), client.dns(), client.socketFactory(),
+                sslSocketFactory, hostnameVerifier, certificatePinner, client.proxyAuthenticator(),
+                client.proxy(), client.protocols(), client.connectionSpecs(), client.proxySelector());
+
+        synchronized (this) {
+            HostConnections host = host(address);
+            host.minIdle = minIdle;
+            host.address = address;
+            host.client = minIdle > 0 ? client : null;
+            if (minIdle > 0 && !warmRunning) {
+                warmRunning = true;
+                executor.execute(warmRunnable);
+            }
+        }
+        synchronized (warmLock) {
+            warmLock.notifyAll();
+        }
+    }
+
     /**
      * 返回一个循环连接到{@code address}，如果不存在这样的连接，
      * 则返回null。如果地址尚未被路由，则路由为空.
@@ -134,7 +258,19 @@ public final class ConnectionPool {
      */
     public RealConnection get(Address address, StreamAllocation streamAllocation, Route route) {
         assert (Thread.holdsLock(this));
-        for (RealConnection connection : connections) {
+        HostConnections host = hosts.get(key(address));
+        if (host != null) {
+            for (RealConnection connection : host.connections) {
+                if (connection.isEligible(address, route)) {
+                    streamAllocation.acquire(connection, true);
+                    host.reused++;
+                    return connection;
+                }
+            }
+        }
+        // 只有已路由的HTTP/2连接才能跨主机合并
+        if (route == null) return null;
+        for (RealConnection connection : multiplexed) {
             if (connection.isEligible(address, route)) {
                 streamAllocation.acquire(connection, true);
                 return connection;
@@ -153,7 +289,9 @@ public final class ConnectionPool {
      */
     public Socket deduplicate(Address address, StreamAllocation streamAllocation) {
         assert (Thread.holdsLock(this));
-        for (RealConnection connection : connections) {
+        HostConnections host = hosts.get(key(address));
+        if (host == null) return null;
+        for (RealConnection connection : host.connections) {
             if (connection.isEligible(address, null)
                     && connection.isMultiplexed()
                     && connection != streamAllocation.connection()) {
@@ -170,6 +308,79 @@ public final class ConnectionPool {
             executor.execute(cleanupRunnable);
         }
         connections.add(connection);
+        HostConnections host = host(connection.route().address());
+        host.connections.add(connection);
+        host.created++;
+        if (connection.isMultiplexed()) {
+            multiplexed.add(connection);
+        }
+    }
+
+    /**
+     * 为{@code address}预留一个新建连接的名额。调用方必须在连接池上同步，
+     * 并在连接放入池中或建连失败后调用{@link #unreserve(Address)}
+     *
+     * @param address 地址
+     * @return 未超过单主机最大连接数时返回true
+     */
+    boolean reserve(Address address) {
+        assert (Thread.holdsLock(this));
+        HostConnections host = host(address);
+        if (routeConnectionCount(host, address) + host.connecting >= maxConnectionsPerRoute) {
+            return false;
+        }
+        host.connecting++;
+        return true;
+    }
+
+    /**
+     * 统计主机上可以承载{@code address}的连接数，包括正在使用的连接；
+     * 代理、TLS配置等不同而无法用于该地址的连接，以及不再接受新流的连接不计入
+     *
+     * @param host    主机连接
+     * @param address 地址
+     * @return 连接数
+     */
+    private static int routeConnectionCount(HostConnections host, Address address) {
+        int count = 0;
+        for (RealConnection connection : host.connections) {
+            if (!connection.noNewStreams
+                    && Builder.instance.equalsNonHost(connection.route().address(), address)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void unreserve(Address address) {
+        assert (Thread.holdsLock(this));
+        HostConnections host = hosts.get(key(address));
+        if (host != null && host.connecting > 0) {
+            host.connecting--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * 等待{@code address}所在主机有连接空闲或关闭，调用方必须在连接池上同步
+     *
+     * @param address 地址
+     * @param nanos   最长等待时间
+     * @throws InterruptedIOException 等待被中断
+     */
+    void await(Address address, long nanos) throws InterruptedIOException {
+        assert (Thread.holdsLock(this));
+        HostConnections host = host(address);
+        long start = System.nanoTime();
+        try {
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        } finally {
+            host.waits++;
+            host.waitNanos += System.nanoTime() - start;
+        }
     }
 
     /**
@@ -180,14 +391,13 @@ public final class ConnectionPool {
      */
     public boolean connectionBecameIdle(RealConnection connection) {
         assert (Thread.holdsLock(this));
+        // 唤醒清理线程(可能已经超过了空闲连接限制)以及等待单主机连接名额的线程
+        notifyAll();
         if (connection.noNewStreams || maxIdleConnections == 0) {
-            connections.remove(connection);
+            remove(connection);
             return true;
-        } else {
-            // 唤醒清理线程:可能已经超过了空闲连接限制
-            notifyAll();
-            return false;
         }
+        return false;
     }
 
     /**
@@ -202,8 +412,10 @@ public final class ConnectionPool {
                     connection.noNewStreams = true;
                     evictedConnections.add(connection);
                     i.remove();
+                    unindex(connection);
                 }
             }
+            notifyAll();
         }
 
         for (RealConnection connection : evictedConnections) {
@@ -211,6 +423,33 @@ public final class ConnectionPool {
         }
     }
 
+    /**
+     * 返回连接池利用率的快照，即正在使用的连接占全部连接的比例
+     *
+     * @return 利用率，取值范围[0, 1]
+     */
+    public synchronized double utilization() {
+        int total = connections.size();
+        return total == 0 ? 0 : (double) (total - idleConnectionCount()) / total;
+    }
+
+    /**
+     * 返回每个主机的连接统计快照
+     *
+     * @return 统计信息
+     */
+    public synchronized List<HostStats> hostStats() {
+        List<HostStats> result = new ArrayList<>(hosts.size());
+        for (Map.Entry<String, HostConnections> entry : hosts.entrySet()) {
+            HostConnections host = entry.getValue();
+            int idle = host.idleCount();
+            result.add(new HostStats(entry.getKey(), host.connections.size(), idle,
+                    host.connections.size() - idle, host.connecting, host.minIdle,
+                    host.created, host.reused, host.waits, host.waitNanos));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
     /**
      * 对这个池执行维护，如果连接超出了keep alive限制或idle connections限制，就会清除空闲时间最长的连接
      * 返回到该方法的下一次预定调用之前在nanos中的睡眠时间。如果不需要进一步清理，则返回-1
@@ -223,9 +462,17 @@ public final class ConnectionPool {
         int idleConnectionCount = 0;
         RealConnection longestIdleConnection = null;
         long longestIdleDurationNs = Long.MIN_VALUE;
+        RealConnection longestEvictableConnection = null;
+        long longestEvictableDurationNs = Long.MIN_VALUE;
 
         // 找到与清除的联系，或者下一次清除的时间
         synchronized (this) {
+            // 预热主机剩余可豁免数量驱逐的空闲连接数
+            Map<String, Integer> reserved = new HashMap<>();
+            for (Map.Entry<String, HostConnections> entry : hosts.entrySet()) {
+                if (entry.getValue().minIdle > 0) reserved.put(entry.getKey(), entry.getValue().minIdle);
+            }
+
             for (Iterator<RealConnection> i = connections.iterator(); i.hasNext(); ) {
                 RealConnection connection = i.next();
 
@@ -235,21 +482,41 @@ public final class ConnectionPool {
                     continue;
                 }
 
-                idleConnectionCount++;
-
                 // 如果连接准备好被驱逐，我们就完成了
                 long idleDurationNs = now - connection.idleAtNanos;
                 if (idleDurationNs > longestIdleDurationNs) {
                     longestIdleDurationNs = idleDurationNs;
                     longestIdleConnection = connection;
                 }
+
+                // 预热的连接只受keep alive限制
+                String key = key(connection.route().address());
+                Integer remaining = reserved.get(key);
+                if (remaining != null && remaining > 0 && !connection.noNewStreams) {
+                    reserved.put(key, remaining - 1);
+                    continue;
+                }
+
+                idleConnectionCount++;
+                if (idleDurationNs > longestEvictableDurationNs) {
+                    longestEvictableDurationNs = idleDurationNs;
+                    longestEvictableConnection = connection;
+                }
             }
 
-            if (longestIdleDurationNs >= this.keepAliveDurationNs
-                    || idleConnectionCount > this.maxIdleConnections) {
+            RealConnection evicted = null;
+            if (longestIdleDurationNs >= this.keepAliveDurationNs) {
+                evicted = longestIdleConnection;
+            } else if (idleConnectionCount > this.maxIdleConnections) {
+                evicted = longestEvictableConnection;
+            }
+
+            if (evicted != null) {
                 // 我们发现了与驱逐有关的证据。将它从列表中移除，然后在下面(同步块外部)关闭它
-                connections.remove(longestIdleConnection);
-            } else if (idleConnectionCount > 0) {
+                longestIdleConnection = evicted;
+                remove(evicted);
+                notifyAll();
+            } else if (longestIdleConnection != null) {
                 // 一个连接将准备驱逐很快.
                 return keepAliveDurationNs - longestIdleDurationNs;
             } else if (inUseConnectionCount > 0) {
@@ -267,6 +534,85 @@ public final class ConnectionPool {
         return 0;
     }
 
+    /**
+     * 为主机补足空闲连接。每次只建立缺少的数量，HTTP/2连接可承载多路请求，建立一个即可
+     *
+     * @param host 主机连接信息
+     */
+    private void warm(HostConnections host) {
+        Address address;
+        Httpd client;
+        int needed;
+        synchronized (this) {
+            address = host.address;
+            client = host.client;
+            if (client == null) return;
+            for (RealConnection connection : host.connections) {
+                if (connection.isMultiplexed() && !connection.noNewStreams) return;
+            }
+            needed = host.minIdle - host.idleCount() - host.connecting;
+        }
+
+        for (int i = 0; i < needed; i++) {
+            synchronized (this) {
+                if (!reserve(address)) return;
+            }
+            RealConnection connection = null;
+            boolean pooled = false;
+            try {
+                RouteSelector.Selection selection = new RouteSelector(
+                        address, routeDatabase, null, EventListener.NONE).next();
+                Route route = selection.next();
+                connection = new RealConnection(this, route);
+                connection.connect(client.connectTimeoutMillis(), client.readTimeoutMillis(),
+                        client.writeTimeoutMillis(), client.pingIntervalMillis(),
+                        client.retryOnConnectionFailure(), null, EventListener.NONE);
+                routeDatabase.connected(route);
+                synchronized (this) {
+                    connection.idleAtNanos = System.nanoTime();
+                    put(connection);
+                    pooled = true;
+                }
+                if (connection.isMultiplexed()) return;
+            } catch (IOException | RuntimeException e) {
+                Logger.warn("connection pool warm-up failed for {}: {}", key(address), e.getMessage());
+                return;
+            } finally {
+                synchronized (this) {
+                    unreserve(address);
+                }
+                if (!pooled && connection != null) {
+                    IoUtils.close(connection.socket());
+                }
+            }
+        }
+    }
+
+    private HostConnections host(Address address) {
+        String key = key(address);
+        HostConnections host = hosts.get(key);
+        if (host == null) {
+            host = new HostConnections();
+            hosts.put(key, host);
+        }
+        return host;
+    }
+
+    private void remove(RealConnection connection) {
+        connections.remove(connection);
+        unindex(connection);
+    }
+
+    private void unindex(RealConnection connection) {
+        HostConnections host = hosts.get(key(connection.route().address()));
+        if (host != null) {
+            host.connections.remove(connection);
+        }
+        if (connection.isMultiplexed()) {
+            multiplexed.remove(connection);
+        }
+    }
+
     /**
      * 删除任何泄漏的分配，然后返回{@code connection}上剩余的活动分配的数量。
      * 泄漏检测是不精确的，并且依赖于垃圾收集
@@ -304,4 +650,128 @@ public final class ConnectionPool {
         return references.size();
     }
 
+    /**
+     * 单个主机的连接及统计信息，所有字段由连接池监视器保护
+     */
+    private static final class HostConnections {
+
+        final List<RealConnection> connections = new ArrayList<>(4);
+        int connecting;
+        int minIdle;
+        Address address;
+        Httpd client;
+        long created;
+        long reused;
+        long waits;
+        long waitNanos;
+
+        int idleCount() {
+            int idle = 0;
+            for (RealConnection connection : connections) {
+                if (connection.allocations.isEmpty()) idle++;
+            }
+            return idle;
+        }
+
+        boolean isEmpty() {
+            return connections.isEmpty() && connecting == 0 && minIdle == 0;
+        }
+    }
+
+    /**
+     * 单个主机连接统计的快照
+     */
+    public static final class HostStats {
+
+        private final String host;
+        private final int total;
+        private final int idle;
+        private final int inUse;
+        private final int connecting;
+        private final int minIdle;
+        private final long created;
+        private final long reused;
+        private final long waits;
+        private final long waitNanos;
+
+        HostStats(String host, int total, int idle, int inUse, int connecting, int minIdle,
+                  long created, long reused, long waits, long waitNanos) {
+            this.host = host;
+            this.total = total;
+            this.idle = idle;
+            this.inUse = inUse;
+            this.connecting = connecting;
+            this.minIdle = minIdle;
+            this.created = created;
+            this.reused = reused;
+            this.waits = waits;
+            this.waitNanos = waitNanos;
+        }
+
+        /**
+         * @return 主机，格式为host:port
+         */
+        public String host() {
+            return host;
+        }
+
+        public int total() {
+            return total;
+        }
+
+        public int idle() {
+            return idle;
+        }
+
+        public int inUse() {
+            return inUse;
+        }
+
+        /**
+         * @return 正在建立(TCP+TLS握手)的连接数
+         */
+        public int connecting() {
+            return connecting;
+        }
+
+        public int minIdle() {
+            return minIdle;
+        }
+
+        /**
+         * @return 累计新建的连接数
+         */
+        public long created() {
+            return created;
+        }
+
+        /**
+         * @return 累计从池中复用的次数
+         */
+        public long reused() {
+            return reused;
+        }
+
+        /**
+         * @return 因达到单主机最大连接数而等待的次数
+         */
+        public long waits() {
+            return waits;
+        }
+
+        /**
+         * @return 累计等待时间(纳秒)
+         */
+        public long waitNanos() {
+            return waitNanos;
+        }
+
+        @Override
+        public String toString() {
+            return host + " total=" + total + " idle=" + idle + " inUse=" + inUse
+                    + " connecting=" + connecting + " created=" + created + " reused=" + reused
+                    + " waits=" + waits + " waitNanos=" + waitNanos;
+        }
+    }
+
 }
@@ -37,7 +37,9 @@ import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 该类协调三个实体之间的关系
@@ -224,11 +226,19 @@ public final class StreamAllocation {
                     selectedRoute = routeSelection.next();
                 }
 
-                // 创建一个连接并立即将其分配给这个分配。这使得异步cancel()可以中断我们将要进行的握手
-                route = selectedRoute;
-                refusedStreamCount = 0;
-                result = new RealConnection(connectionPool, selectedRoute);
-                acquire(result, false);
+                // 达到单主机最大连接数时等待，期间可能复用到其他请求释放的连接
+                reserveConnection(selectedRoute, connectTimeout);
+                if (connection != null) {
+                    foundPooledConnection = true;
+                    result = connection;
+                    this.route = connection.route();
+                } else {
+                    // 创建一个连接并立即将其分配给这个分配。这使得异步cancel()可以中断我们将要进行的握手
+                    route = selectedRoute;
+                    refusedStreamCount = 0;
+                    result = new RealConnection(connectionPool, selectedRoute);
+                    acquire(result, false);
+                }
             }
         }
 
@@ -239,8 +249,18 @@ public final class StreamAllocation {
         }
 
         // TCP + TLS握手，这是一个阻塞操作
-        result.connect(connectTimeout, readTimeout, writeTimeout, pingIntervalMillis,
-                connectionRetryEnabled, call, eventListener);
+        boolean connected = false;
+        try {
+            result.connect(connectTimeout, readTimeout, writeTimeout, pingIntervalMillis,
+                    connectionRetryEnabled, call, eventListener);
+            connected = true;
+        } finally {
+            if (!connected) {
+                synchronized (connectionPool) {
+                    connectionPool.unreserve(address);
+                }
+            }
+        }
         routeDatabase().connected(result.route());
 
         Socket socket = null;
@@ -249,6 +269,7 @@ public final class StreamAllocation {
 
             // 连接池信息
             Builder.instance.put(connectionPool, result);
+            connectionPool.unreserve(address);
 
             // 如果并发地创建了到同一地址的另一个多路复用连接，则释放该连接并获取该连接
             if (result.isMultiplexed()) {
@@ -262,6 +283,32 @@ public final class StreamAllocation {
         return result;
     }
 
+    /**
+     * 为新建连接预留单主机连接名额。名额不足时在连接池上等待，每次唤醒后先尝试从池中获取连接，
+     * 获取成功时{@link #connection}不为空且不占用名额
+     *
+     * @param selectedRoute  路由
+     * @param connectTimeout 连接超时时间，即最长等待时间
+     * @throws IOException 等待超时或请求被取消
+     */
+    private void reserveConnection(Route selectedRoute, int connectTimeout) throws IOException {
+        assert (Thread.holdsLock(connectionPool));
+        long timeoutNanos = connectTimeout > 0
+                ? TimeUnit.MILLISECONDS.toNanos(connectTimeout) : Long.MAX_VALUE;
+        long start = System.nanoTime();
+        while (!connectionPool.reserve(address)) {
+            Builder.instance.get(connectionPool, address, this, selectedRoute);
+            if (connection != null) return;
+
+            long remainingNanos = timeoutNanos - (System.nanoTime() - start);
+            if (remainingNanos <= 0) {
+                throw new SocketTimeoutException("timeout waiting for connection to " + address.url().host());
+            }
+            connectionPool.await(address, remainingNanos);
+            if (canceled) throw new IOException("Canceled");
+        }
+    }
+
     /**
      * 释放当前持有的连接并返回一个套接字来关闭，如果持有的连接*限制新流的创建
      * 对于HTTP/2，多个请求共享同一个连接，因此在后续请求期间，我们的连接可能被限制创建新流
@@ -402,6 +449,8 @@ public final class StreamAllocation {
         RealConnection connectionToCancel;
         synchronized (connectionPool) {
             canceled = true;
+            // 唤醒可能正在等待连接名额的线程
+            connectionPool.notifyAll();
             codecToCancel = codec;
             connectionToCancel = connection;
         }
@@ -64,7 +64,7 @@ public final class Cache implements Closeable, Flushable {
     private static final int ENTRY_METADATA = 0;
     private static final int ENTRY_BODY = 1;
     private static final int ENTRY_COUNT = 2;
-    final DiskLruCache cache;
+    final CacheStore cache;
     int writeSuccessCount;
     int writeAbortCount;
     private int networkCount;
@@ -114,7 +114,23 @@ public final class Cache implements Closeable, Flushable {
     }
 
     Cache(File directory, long maxSize, FileSystem fileSystem) {
-        this.cache = DiskLruCache.create(fileSystem, directory, VERSION, ENTRY_COUNT, maxSize);
+        this(DiskLruCache.create(fileSystem, directory, VERSION, ENTRY_COUNT, maxSize));
+    }
+
+    private Cache(CacheStore cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * 在{@code directory}中创建最多{@code maxSize}字节的缓存，使用{@link SegmentCache}存储。
+     * 适用于条目数量很大的缓存：打开时只需解析紧凑的二进制索引，查找不涉及文件打开
+     *
+     * @param directory 目录
+     * @param maxSize   缓存的最大大小(以字节为单位)
+     * @return 缓存
+     */
+    public static Cache segmented(File directory, long maxSize) {
+        return new Cache(SegmentCache.create(directory, VERSION, ENTRY_COUNT, maxSize));
     }
 
     public static String key(UnoUrl url) {
@@ -136,7 +152,7 @@ public final class Cache implements Closeable, Flushable {
 
     Response get(Request request) {
         String key = key(request.url());
-        DiskLruCache.Snapshot snapshot;
+        CacheStore.Snapshot snapshot;
         Entry entry;
         try {
             snapshot = cache.get(key);
@@ -187,7 +203,7 @@ public final class Cache implements Closeable, Flushable {
         }
 
         Entry entry = new Entry(response);
-        DiskLruCache.Editor editor = null;
+        CacheStore.Editor editor = null;
         try {
             editor = cache.edit(key(response.request().url()));
             if (editor == null) {
@@ -207,8 +223,8 @@ public final class Cache implements Closeable, Flushable {
 
     void update(Response cached, Response network) {
         Entry entry = new Entry(network);
-        DiskLruCache.Snapshot snapshot = ((CacheResponseBody) cached.body()).snapshot;
-        DiskLruCache.Editor editor = null;
+        CacheStore.Snapshot snapshot = ((CacheResponseBody) cached.body()).snapshot;
+        CacheStore.Editor editor = null;
         try {
             // 如果快照不是当前的，则返回null
             editor = snapshot.edit();
@@ -221,7 +237,7 @@ public final class Cache implements Closeable, Flushable {
         }
     }
 
-    private void abortQuietly(DiskLruCache.Editor editor) {
+    private void abortQuietly(CacheStore.Editor editor) {
         // 放弃，因为缓存无法写入
         try {
             if (editor != null) {
@@ -269,7 +285,7 @@ public final class Cache implements Closeable, Flushable {
      */
     public Iterator<String> urls() throws IOException {
         return new Iterator<String>() {
-            final Iterator<DiskLruCache.Snapshot> delegate = cache.snapshots();
+            final Iterator<? extends CacheStore.Snapshot> delegate = cache.snapshots();
 
             String nextUrl;
             boolean canRemove;
@@ -281,7 +297,7 @@ public final class Cache implements Closeable, Flushable {
                 canRemove = false;
                 // 删除()在错误的内容
                 while (delegate.hasNext()) {
-                    DiskLruCache.Snapshot snapshot = delegate.next();
+                    CacheStore.Snapshot snapshot = delegate.next();
                     try {
                         BufferSource metadata = IoUtils.buffer(snapshot.getSource(ENTRY_METADATA));
                         nextUrl = metadata.readUtf8LineStrict();
@@ -503,7 +519,7 @@ public final class Cache implements Closeable, Flushable {
             this.receivedResponseMillis = response.receivedResponseAtMillis();
         }
 
-        public void writeTo(DiskLruCache.Editor editor) throws IOException {
+        public void writeTo(CacheStore.Editor editor) throws IOException {
             BufferSink sink = IoUtils.buffer(editor.newSink(ENTRY_METADATA));
 
             sink.writeUtf8(url)
@@ -594,7 +610,7 @@ public final class Cache implements Closeable, Flushable {
                     && HttpHeaders.varyMatches(response, varyHeaders, request);
         }
 
-        public Response response(DiskLruCache.Snapshot snapshot) {
+        public Response response(CacheStore.Snapshot snapshot) {
             String contentType = responseHeaders.get(Header.CONTENT_TYPE);
             String contentLength = responseHeaders.get(Header.CONTENT_LENGTH);
             Request cacheRequest = new Request.Builder()
@@ -617,12 +633,12 @@ public final class Cache implements Closeable, Flushable {
     }
 
     private static class CacheResponseBody extends ResponseBody {
-        final DiskLruCache.Snapshot snapshot;
+        final CacheStore.Snapshot snapshot;
         private final BufferSource bodySource;
         private final String contentType;
         private final String contentLength;
 
-        CacheResponseBody(final DiskLruCache.Snapshot snapshot,
+        CacheResponseBody(final CacheStore.Snapshot snapshot,
                           String contentType, String contentLength) {
             this.snapshot = snapshot;
             this.contentType = contentType;
@@ -659,12 +675,12 @@ public final class Cache implements Closeable, Flushable {
     }
 
     private final class CacheRequestImpl implements CacheRequest {
-        private final DiskLruCache.Editor editor;
+        private final CacheStore.Editor editor;
         boolean done;
         private Sink cacheOut;
         private Sink body;
 
-        CacheRequestImpl(final DiskLruCache.Editor editor) {
+        CacheRequestImpl(final CacheStore.Editor editor) {
             this.editor = editor;
             this.cacheOut = editor.newSink(ENTRY_BODY);
             this.body = new DelegateSink(cacheOut) {
@@ -0,0 +1,146 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.cache;
+
+import org.aoju.bus.core.io.Sink;
+import org.aoju.bus.core.io.Source;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * {@link Cache}的存储引擎。每个条目都有一个字符串键和固定数量的值，
+ * 实现有基于文本日志和单独文件的{@link DiskLruCache}，
+ * 以及基于内存映射日志和追加写段文件的{@link SegmentCache}
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public interface CacheStore extends Closeable, Flushable {
+
+    /**
+     * 初始化缓存，读取存储中的索引。未调用时在第一次访问缓存时惰性初始化
+     *
+     * @throws IOException 异常
+     */
+    void initialize() throws IOException;
+
+    /**
+     * 返回名为{@code key}的条目的快照，条目不存在或当前无法读取时返回null
+     *
+     * @param key 缓存key
+     * @return 快照信息
+     * @throws IOException 异常
+     */
+    Snapshot get(String key) throws IOException;
+
+    /**
+     * 返回名为{@code key}的条目的编辑器，如果另一个编辑正在进行，则返回null
+     *
+     * @param key 缓存key
+     * @return 编辑器
+     * @throws IOException 异常
+     */
+    Editor edit(String key) throws IOException;
+
+    /**
+     * 如果{@code key}存在并且可以删除，则删除它
+     *
+     * @param key 缓存key
+     * @return 如果一个条目被删除，则为真
+     * @throws IOException 异常
+     */
+    boolean remove(String key) throws IOException;
+
+    /**
+     * 返回缓存当前项的迭代器，调用者必须关闭每个返回的快照，迭代器支持{@link Iterator#remove}
+     *
+     * @return 迭代器
+     * @throws IOException 异常
+     */
+    Iterator<? extends Snapshot> snapshots() throws IOException;
+
+    long size() throws IOException;
+
+    long getMaxSize();
+
+    File getDirectory();
+
+    boolean isClosed();
+
+    /**
+     * 关闭缓存并删除其所有存储值
+     *
+     * @throws IOException 异常
+     */
+    void delete() throws IOException;
+
+    /**
+     * 从缓存中删除所有存储值,飞行中的编辑将正常完成，但不会存储它们的值
+     *
+     * @throws IOException 异常
+     */
+    void evictAll() throws IOException;
+
+    /**
+     * 条目在某一时刻的只读视图
+     */
+    interface Snapshot extends Closeable {
+
+        String key();
+
+        /**
+         * 返回该条目的编辑器，如果条目在快照创建后已被修改或正在编辑，则返回null
+         *
+         * @return 编辑器
+         * @throws IOException 异常
+         */
+        Editor edit() throws IOException;
+
+        Source getSource(int index);
+
+        long getLength(int index);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * 条目的编辑器，未写入的值在提交后保持不变
+     */
+    interface Editor {
+
+        Sink newSink(int index);
+
+        void commit() throws IOException;
+
+        void abort() throws IOException;
+    }
+
+}
@@ -49,7 +49,7 @@ import java.util.regex.Pattern;
  * @version 5.6.9
  * @since JDK 1.8+
  */
-public final class DiskLruCache implements Closeable, Flushable {
+public final class DiskLruCache implements CacheStore {
 
     static final String JOURNAL_FILE = "journal";
     static final String JOURNAL_FILE_TEMP = "journal.tmp";
@@ -723,7 +723,7 @@ public final class DiskLruCache implements Closeable, Flushable {
     /**
      * 快照信息
      */
-    public final class Snapshot implements Closeable {
+    public final class Snapshot implements CacheStore.Snapshot {
         private final String key;
         private final long sequenceNumber;
         private final Source[] sources;
@@ -759,7 +759,7 @@ public final class DiskLruCache implements Closeable, Flushable {
         }
     }
 
-    public final class Editor {
+    public final class Editor implements CacheStore.Editor {
         final Entry entry;
         final boolean[] written;
         private boolean done;
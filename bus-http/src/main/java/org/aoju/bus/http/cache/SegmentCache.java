@@ -0,0 +1,1367 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.cache;
+
+import org.aoju.bus.core.io.*;
+import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.utils.IoUtils;
+import org.aoju.bus.http.Builder;
+import org.aoju.bus.logger.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射日志和追加写段文件的缓存存储，适用于条目数量很大的缓存.
+ * <ul>
+ * <li>journal: 内存映射的二进制日志，每条记录包含键以及每个值所在的段、偏移和长度，
+ * 打开缓存时顺序解析一次即可重建内存索引，之后的查找不需要任何文件操作</li>
+ * <li>segment.N: 追加写的段文件，保存所有条目的值，写满后滚动到新的段。
+ * 段文件在打开后一直保持打开状态，读取值只需一次定位读</li>
+ * </ul>
+ * 覆盖或删除的值成为段中的垃圾，垃圾超过一半的段由后台线程压缩:存活的值被复制到活动段后删除该段;
+ * 冗余记录过多时重写日志。与{@link DiskLruCache}不同，读取不写日志，重启后的LRU顺序以最后写入顺序为准
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public final class SegmentCache implements CacheStore {
+
+    static final String JOURNAL_FILE = "journal";
+    static final String JOURNAL_FILE_TEMP = "journal.tmp";
+    static final String SEGMENT_PREFIX = "segment.";
+    static final String TEMP_SUFFIX = ".tmp";
+    static final long ANY_SEQUENCE_NUMBER = -1;
+    static final Pattern LEGAL_KEY_PATTERN = Pattern.compile("[a-z0-9_-]{1,120}");
+    /**
+     * 日志文件头: magic、appVersion、valueCount和保留字段
+     */
+    private static final int MAGIC = 0x48534331;
+    private static final int HEADER_SIZE = 16;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_JOURNAL_SIZE = 64 * 1024;
+    /**
+     * 编辑中的值不超过该长度时保存在内存中，否则写入临时文件
+     */
+    private static final int SPILL_SIZE = 64 * 1024;
+
+    /**
+     * 缓存存储其数据的目录
+     */
+    final File directory;
+    final int valueCount;
+    final LinkedHashMap<String, Entry> lruEntries = new LinkedHashMap<>(0, 0.75f, true);
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    private final File journalFile;
+    private final File journalFileTmp;
+    private final int appVersion;
+    private final long segmentSize;
+    private final Executor executor;
+    private final CRC32 crc = new CRC32();
+    private FileChannel journalChannel;
+    private MappedByteBuffer journal;
+    /**
+     * 当前追加写入的段
+     */
+    private Segment active;
+    private int nextSegmentId;
+    private int nextTempId;
+    int redundantOpCount;
+    boolean initialized;
+    /**
+     * 如果缓存已关闭，则为true
+     */
+    boolean closed;
+    boolean mostRecentTrimFailed;
+    boolean mostRecentRebuildFailed;
+    /**
+     * 存用于存储其数据的最大字节数
+     */
+    private long maxSize;
+    /**
+     * 当前存活值的字节数
+     */
+    private long size;
+    /**
+     * 所有段中不再被引用的字节数
+     */
+    private long garbage;
+    private long nextSequenceNumber;
+    private final Runnable cleanupRunnable = new Runnable() {
+        public void run() {
+            synchronized (SegmentCache.this) {
+                if (!initialized | closed) {
+                    return;
+                }
+
+                try {
+                    trimToSize();
+                } catch (IOException ignored) {
+                    mostRecentTrimFailed = true;
+                }
+            }
+
+            // 压缩自行管理锁，复制数据时不持有缓存监视器
+            try {
+                compactSegments();
+            } catch (IOException e) {
+                Logger.warn("SegmentCache " + directory + " compaction failed: " + e.getMessage());
+            }
+
+            synchronized (SegmentCache.this) {
+                if (closed) {
+                    return;
+                }
+
+                try {
+                    if (journalRebuildRequired()) {
+                        rebuildJournal();
+                    }
+                } catch (IOException e) {
+                    mostRecentRebuildFailed = true;
+                }
+            }
+        }
+    };
+
+    SegmentCache(File directory, int appVersion, int valueCount, long maxSize, Executor executor) {
+        this.directory = directory;
+        this.appVersion = appVersion;
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
+        this.valueCount = valueCount;
+        this.maxSize = maxSize;
+        this.segmentSize = Math.max(1024 * 1024, Math.min(64 * 1024 * 1024, maxSize / 16));
+        this.executor = executor;
+    }
+
+    /**
+     * 创建一个驻留在{@code directory}中的缓存。此缓存在第一次访问时惰性初始化，如果它不存在，将创建它.
+     *
+     * @param directory  一个可写目录
+     * @param appVersion 版本信息
+     * @param valueCount 每个缓存条目的值数目.
+     * @param maxSize    此缓存应用于存储的最大字节数
+     * @return the segment cache
+     */
+    public static SegmentCache create(File directory, int appVersion, int valueCount, long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (valueCount <= 0) {
+            throw new IllegalArgumentException("valueCount <= 0");
+        }
+
+        Executor executor = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), Builder.threadFactory("Httpd SegmentCache", true));
+
+        return new SegmentCache(directory, appVersion, valueCount, maxSize, executor);
+    }
+
+    @Override
+    public synchronized void initialize() throws IOException {
+        if (initialized) {
+            return;
+        }
+
+        if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new IOException("failed to create directory " + directory);
+        }
+
+        if (journalFile.exists()) {
+            try {
+                readJournal();
+                processJournal();
+                initialized = true;
+                return;
+            } catch (IOException journalIsCorrupt) {
+                Logger.warn("SegmentCache " + directory + " is corrupt: "
+                        + journalIsCorrupt.getMessage() + ", removing", journalIsCorrupt);
+            }
+
+            // 缓存已损坏，请尝试删除目录中的内容
+            for (Segment segment : segments.values()) {
+                IoUtils.close(segment.channel);
+            }
+            try {
+                delete();
+            } finally {
+                closed = false;
+            }
+        }
+
+        lruEntries.clear();
+        segments.clear();
+        size = 0;
+        garbage = 0;
+        active = null;
+        nextSegmentId = 0;
+        redundantOpCount = 0;
+        rebuildJournal();
+        initialized = true;
+    }
+
+    /**
+     * 映射并解析日志。解析在第一条不完整或校验失败的记录处停止，之后的内容被清零，
+     * 这样崩溃时写了一半的记录会被丢弃
+     *
+     * @throws IOException 日志头不匹配
+     */
+    private void readJournal() throws IOException {
+        journalChannel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = journalChannel.size();
+        if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+            throw new IOException("unexpected journal length: " + length);
+        }
+        journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_JOURNAL_SIZE, length));
+
+        int magic = journal.getInt();
+        int version = journal.getInt();
+        int count = journal.getInt();
+        journal.getInt();
+        if (magic != MAGIC || version != appVersion || count != valueCount) {
+            throw new IOException("unexpected journal header: [" + magic + ", " + version + ", " + count + "]");
+        }
+
+        byte[] key = new byte[255];
+        int end = journal.position();
+        while (journal.remaining() > 2) {
+            int start = journal.position();
+            byte type = journal.get();
+            if (type != PUT && type != REMOVE) break;
+            int keyLength = journal.get() & 0xff;
+            int bodyLength = keyLength + (type == PUT ? valueCount * 20 : 0);
+            if (keyLength == 0 || journal.remaining() < bodyLength + 4) break;
+            journal.get(key, 0, keyLength);
+            String name = new String(key, 0, keyLength, StandardCharsets.US_ASCII);
+
+            int[] ids = new int[valueCount];
+            long[] offsets = new long[valueCount];
+            long[] lengths = new long[valueCount];
+            if (type == PUT) {
+                for (int i = 0; i < valueCount; i++) {
+                    ids[i] = journal.getInt();
+                    offsets[i] = journal.getLong();
+                    lengths[i] = journal.getLong();
+                }
+            }
+            int checksum = journal.getInt();
+            if (checksum != checksum(journal, start, journal.position() - 4)) break;
+
+            if (type == PUT) {
+                Entry entry = lruEntries.get(name);
+                if (entry == null) {
+                    entry = new Entry(name);
+                    lruEntries.put(name, entry);
+                } else {
+                    redundantOpCount++;
+                }
+                entry.readable = true;
+                entry.sequenceNumber = nextSequenceNumber++;
+                System.arraycopy(ids, 0, entry.segments, 0, valueCount);
+                System.arraycopy(offsets, 0, entry.offsets, 0, valueCount);
+                System.arraycopy(lengths, 0, entry.lengths, 0, valueCount);
+            } else if (lruEntries.remove(name) != null) {
+                redundantOpCount += 2;
+            }
+            end = journal.position();
+        }
+
+        for (int i = end; i < journal.limit(); i++) {
+            journal.put(i, (byte) 0);
+        }
+        journal.position(end);
+    }
+
+    /**
+     * 打开条目引用的段并统计存活字节，删除未被引用的段和临时文件
+     *
+     * @throws IOException 异常
+     */
+    private void processJournal() throws IOException {
+        for (Iterator<Entry> i = lruEntries.values().iterator(); i.hasNext(); ) {
+            Entry entry = i.next();
+            boolean valid = true;
+            for (int t = 0; t < valueCount && valid; t++) {
+                Segment segment = segments.get(entry.segments[t]);
+                if (segment == null) {
+                    File file = new File(directory, SEGMENT_PREFIX + entry.segments[t]);
+                    if (!file.exists()) {
+                        valid = false;
+                        break;
+                    }
+                    segment = openSegment(entry.segments[t]);
+                }
+                valid = entry.offsets[t] + entry.lengths[t] <= segment.size;
+            }
+            if (!valid) {
+                i.remove();
+                redundantOpCount++;
+                continue;
+            }
+            for (int t = 0; t < valueCount; t++) {
+                segments.get(entry.segments[t]).live += entry.lengths[t];
+                size += entry.lengths[t];
+            }
+            link(entry);
+        }
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file.toPath());
+                } else if (name.startsWith(SEGMENT_PREFIX)) {
+                    try {
+                        int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+                        nextSegmentId = Math.max(nextSegmentId, id + 1);
+                        if (!segments.containsKey(id)) Files.deleteIfExists(file.toPath());
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            garbage += segment.size - segment.live;
+            if (segment.size < segmentSize && (active == null || segment.id > active.id)) {
+                active = segment;
+            }
+        }
+    }
+
+    /**
+     * 用当前存活的条目重写日志，替换现有日志
+     *
+     * @throws IOException 异常
+     */
+    synchronized void rebuildJournal() throws IOException {
+        int recordSize = 2 + 120 + valueCount * 20 + 4;
+        long capacity = Math.max(MIN_JOURNAL_SIZE, HEADER_SIZE + (long) lruEntries.size() * recordSize * 2);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("journal too large: " + lruEntries.size() + " entries");
+        }
+
+        int end;
+        try (FileChannel channel = FileChannel.open(journalFileTmp.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(MAGIC).putInt(appVersion).putInt(valueCount).putInt(0);
+            for (Entry entry : lruEntries.values()) {
+                if (entry.readable) {
+                    writeRecord(buffer, PUT, entry);
+                }
+            }
+            end = buffer.position();
+            buffer.force();
+        }
+
+        if (journalChannel != null) {
+            journalChannel.close();
+        }
+        Files.move(journalFileTmp.toPath(), journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        journalChannel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        journal.position(end);
+        redundantOpCount = 0;
+        mostRecentRebuildFailed = false;
+    }
+
+    @Override
+    public synchronized Snapshot get(String key) throws IOException {
+        initialize();
+
+        checkNotClosed();
+        validateKey(key);
+        Entry entry = lruEntries.get(key);
+        if (entry == null || !entry.readable) return null;
+        return entry.snapshot();
+    }
+
+    @Override
+    public Editor edit(String key) throws IOException {
+        return edit(key, ANY_SEQUENCE_NUMBER);
+    }
+
+    synchronized Editor edit(String key, long expectedSequenceNumber) throws IOException {
+        initialize();
+
+        checkNotClosed();
+        validateKey(key);
+        Entry entry = lruEntries.get(key);
+        if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER && (entry == null
+                || entry.sequenceNumber != expectedSequenceNumber)) {
+            return null;
+        }
+        if (entry != null && entry.currentEditor != null) {
+            return null;
+        }
+        if (mostRecentTrimFailed || mostRecentRebuildFailed) {
+            executor.execute(cleanupRunnable);
+            return null;
+        }
+
+        if (entry == null) {
+            entry = new Entry(key);
+            lruEntries.put(key, entry);
+        }
+        Editor editor = new Editor(entry);
+        entry.currentEditor = editor;
+        return editor;
+    }
+
+    @Override
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 更改缓存可以存储的最大字节数，并在必要时对作业进行排队，以修剪现有存储
+     *
+     * @param maxSize 最大值
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        if (initialized) {
+            executor.execute(cleanupRunnable);
+        }
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        initialize();
+        return size;
+    }
+
+    /**
+     * 返回段文件中不再被引用、等待压缩回收的字节数
+     *
+     * @return 垃圾字节数
+     * @throws IOException 异常
+     */
+    public synchronized long garbageSize() throws IOException {
+        initialize();
+        return garbage;
+    }
+
+    /**
+     * 完成编辑。值在持有锁时分配段空间，在锁外写入段文件并刷盘，写完后再发布到索引并追加日志记录，
+     * 因此写入大的响应体不会阻塞其他条目的读取，日志记录也不会先于它引用的数据落盘
+     *
+     * @param editor  编辑器
+     * @param success 是否提交
+     * @throws IOException 异常
+     */
+    void completeEdit(Editor editor, boolean success) throws IOException {
+        Entry entry = editor.entry;
+        Segment[] targets = new Segment[valueCount];
+        long[] offsets = new long[valueCount];
+        long[] lengths = new long[valueCount];
+        synchronized (this) {
+            if (entry.currentEditor != editor) {
+                // 提交前条目已被删除
+                editor.discard();
+                return;
+            }
+
+            // 如果这个编辑是第一次创建条目，那么每个索引必须有一个值
+            if (success && !entry.readable) {
+                for (int i = 0; i < valueCount; i++) {
+                    if (editor.values[i] == null) {
+                        discardEdit(editor);
+                        throw new IllegalStateException("Newly created entry didn't create value for index " + i);
+                    }
+                }
+            }
+            if (!success) {
+                discardEdit(editor);
+                return;
+            }
+
+            try {
+                for (int i = 0; i < valueCount; i++) {
+                    if (editor.values[i] == null) continue;
+                    lengths[i] = editor.values[i].finish();
+                    targets[i] = allocate(lengths[i]);
+                    offsets[i] = targets[i].size;
+                    targets[i].size += lengths[i];
+                    targets[i].writers++;
+                    garbage += lengths[i];
+                }
+            } catch (IOException e) {
+                release(targets);
+                discardEdit(editor);
+                throw e;
+            }
+            editor.committing = true;
+        }
+
+        IOException failure = null;
+        try {
+            for (int i = 0; i < valueCount; i++) {
+                if (targets[i] != null) {
+                    editor.values[i].writeTo(targets[i].channel, offsets[i]);
+                }
+            }
+            force(targets);
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        synchronized (this) {
+            release(targets);
+            editor.discard();
+            if (failure != null || closed || entry.currentEditor != editor) {
+                // 写入失败，或写入期间条目被删除、缓存被关闭，已分配的空间成为垃圾
+                if (entry.currentEditor == editor) {
+                    entry.currentEditor = null;
+                    if (!entry.readable) lruEntries.remove(entry.key);
+                }
+                if (failure != null) throw failure;
+                return;
+            }
+
+            if (entry.readable) {
+                unlink(entry);
+            }
+            for (int i = 0; i < valueCount; i++) {
+                if (targets[i] == null) continue;
+                if (entry.readable) {
+                    free(entry, i);
+                }
+                entry.segments[i] = targets[i].id;
+                entry.offsets[i] = offsets[i];
+                entry.lengths[i] = lengths[i];
+                targets[i].live += lengths[i];
+                garbage -= lengths[i];
+                size += lengths[i];
+            }
+            if (entry.readable) {
+                redundantOpCount++;
+            }
+            link(entry);
+            entry.readable = true;
+            entry.currentEditor = null;
+            entry.sequenceNumber = nextSequenceNumber++;
+            appendRecord(PUT, entry);
+
+            if (size > maxSize || garbage >= segmentSize || journalRebuildRequired()) {
+                executor.execute(cleanupRunnable);
+            }
+        }
+    }
+
+    private void discardEdit(Editor editor) {
+        Entry entry = editor.entry;
+        editor.discard();
+        entry.currentEditor = null;
+        if (!entry.readable) {
+            lruEntries.remove(entry.key);
+        }
+    }
+
+    /**
+     * 只有当冗余记录数至少2000且不少于存活条目数时，才重写日志
+     *
+     * @return the true/false
+     */
+    boolean journalRebuildRequired() {
+        final int redundantOpCompactThreshold = 2000;
+        return redundantOpCount >= redundantOpCompactThreshold
+                && redundantOpCount >= lruEntries.size();
+    }
+
+    @Override
+    public synchronized boolean remove(String key) throws IOException {
+        initialize();
+
+        checkNotClosed();
+        validateKey(key);
+        Entry entry = lruEntries.get(key);
+        if (entry == null) return false;
+        boolean removed = removeEntry(entry);
+        if (removed && size <= maxSize) mostRecentTrimFailed = false;
+        return removed;
+    }
+
+    boolean removeEntry(Entry entry) throws IOException {
+        if (entry.currentEditor != null) {
+            entry.currentEditor.detach();
+        }
+
+        lruEntries.remove(entry.key);
+        if (entry.readable) {
+            unlink(entry);
+            for (int i = 0; i < valueCount; i++) {
+                free(entry, i);
+            }
+            entry.readable = false;
+            redundantOpCount += 2;
+            appendRecord(REMOVE, entry);
+        }
+
+        if (journalRebuildRequired() || garbage >= segmentSize) {
+            executor.execute(cleanupRunnable);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void checkNotClosed() {
+        if (isClosed()) {
+            throw new IllegalStateException("cache is closed");
+        }
+    }
+
+    /**
+     * 日志记录直接写入映射内存，由操作系统回写，这里只需修剪缓存
+     *
+     * @throws IOException 异常
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!initialized) return;
+
+        checkNotClosed();
+        trimToSize();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!initialized || closed) {
+            closed = true;
+            return;
+        }
+        for (Entry entry : lruEntries.values().toArray(new Entry[lruEntries.size()])) {
+            if (entry.currentEditor != null) {
+                entry.currentEditor.detach();
+            }
+        }
+        trimToSize();
+        journal.force();
+        journal = null;
+        journalChannel.close();
+        journalChannel = null;
+        closed = true;
+        for (Segment segment : segments.values()) {
+            closeIfUnused(segment);
+        }
+    }
+
+    void trimToSize() throws IOException {
+        while (size > maxSize) {
+            Entry toEvict = lruEntries.values().iterator().next();
+            removeEntry(toEvict);
+        }
+        mostRecentTrimFailed = false;
+    }
+
+    /**
+     * 压缩垃圾不少于一半的段:把其中存活的值复制到活动段，更新日志后删除该段.
+     * 每次处理一个段，与{@link #completeEdit}相同，在持有锁时通过段的存活条目索引确定要移动的值并分配空间，
+     * 在锁外复制并刷盘，最后持锁把仍然指向原位置的值发布到新位置
+     *
+     * @throws IOException 异常
+     */
+    void compactSegments() throws IOException {
+        Set<Segment> skipped = new HashSet<>();
+        for (; ; ) {
+            Segment victim = null;
+            List<Move> moves = new ArrayList<>();
+            Segment[] targets;
+            synchronized (this) {
+                if (closed) return;
+                // 垃圾集中在活动段时先将其封存，使其可以被压缩
+                if (active != null && active.writers == 0 && active.live * 2 <= active.size && garbage >= segmentSize) {
+                    active = null;
+                }
+                for (Segment segment : segments.values()) {
+                    if (segment == active || segment.writers > 0 || segment.live * 2 > segment.size
+                            || skipped.contains(segment)) continue;
+                    if (segment.live > 0 && garbage < segmentSize) continue;
+                    victim = segment;
+                    break;
+                }
+                if (victim == null) return;
+                skipped.add(victim);
+
+                try {
+                    for (Entry entry : victim.entries) {
+                        for (int i = 0; i < valueCount; i++) {
+                            if (entry.segments[i] != victim.id) continue;
+                            Segment target = allocate(entry.lengths[i]);
+                            Move move = new Move(entry, i, entry.offsets[i], entry.lengths[i], target, target.size);
+                            target.size += move.length;
+                            target.writers++;
+                            garbage += move.length;
+                            moves.add(move);
+                        }
+                    }
+                } catch (IOException e) {
+                    for (Move move : moves) {
+                        move.target.writers--;
+                        closeIfUnused(move.target);
+                    }
+                    throw e;
+                }
+                victim.readers++;
+                targets = new Segment[moves.size()];
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i] = moves.get(i).target;
+                }
+            }
+
+            IOException failure = null;
+            try {
+                for (Move move : moves) {
+                    move.target.channel.position(move.targetOffset);
+                    for (long pos = 0; pos < move.length; ) {
+                        long count = victim.channel.transferTo(move.offset + pos, move.length - pos, move.target.channel);
+                        if (count <= 0) throw new EOFException("segment " + victim.id + " truncated");
+                        pos += count;
+                    }
+                }
+                force(targets);
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            synchronized (this) {
+                release(targets);
+                victim.readers--;
+                if (failure != null || closed) {
+                    // 已分配的空间成为垃圾
+                    closeIfUnused(victim);
+                    if (failure != null) throw failure;
+                    return;
+                }
+
+                Set<Entry> moved = new LinkedHashSet<>();
+                for (Move move : moves) {
+                    Entry entry = move.entry;
+                    // 复制期间条目被删除或被新的编辑覆盖时，复制的数据成为垃圾
+                    if (!entry.readable || lruEntries.get(entry.key) != entry
+                            || entry.segments[move.index] != victim.id || entry.offsets[move.index] != move.offset) {
+                        continue;
+                    }
+                    unlink(entry);
+                    entry.segments[move.index] = move.target.id;
+                    entry.offsets[move.index] = move.targetOffset;
+                    link(entry);
+                    move.target.live += move.length;
+                    victim.live -= move.length;
+                    moved.add(entry);
+                }
+                // 一个条目的所有值都更新后再追加日志记录
+                for (Entry entry : moved) {
+                    redundantOpCount++;
+                    appendRecord(PUT, entry);
+                }
+
+                if (victim.live == 0) {
+                    segments.remove(victim.id);
+                    victim.deleted = true;
+                    garbage -= victim.size;
+                }
+                closeIfUnused(victim);
+            }
+        }
+    }
+
+    /**
+     * 关闭缓存并删除其所有存储值。这将删除缓存目录中的所有文件，包括没有由缓存创建的文件
+     *
+     * @throws IOException 异常
+     */
+    @Override
+    public void delete() throws IOException {
+        close();
+        FileSystem.SYSTEM.deleteContents(directory);
+    }
+
+    @Override
+    public synchronized void evictAll() throws IOException {
+        initialize();
+        // 为了安全迭代而复制
+        for (Entry entry : lruEntries.values().toArray(new Entry[lruEntries.size()])) {
+            removeEntry(entry);
+        }
+        mostRecentTrimFailed = false;
+    }
+
+    private void validateKey(String key) {
+        if (!LEGAL_KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException(
+                    "keys must match regex [a-z0-9_-]{1,120}: \"" + key + Symbol.DOUBLE_QUOTES);
+        }
+    }
+
+    @Override
+    public synchronized Iterator<Snapshot> snapshots() throws IOException {
+        initialize();
+        return new Iterator<Snapshot>() {
+            /**
+             * 迭代条目的副本以防止并发修改错误
+             */
+            final Iterator<Entry> delegate = new ArrayList<>(lruEntries.values()).iterator();
+
+            Snapshot nextSnapshot;
+
+            Snapshot removeSnapshot;
+
+            @Override
+            public boolean hasNext() {
+                if (nextSnapshot != null) return true;
+
+                synchronized (SegmentCache.this) {
+                    // 如果缓存关闭，则截断迭代器。
+                    if (closed) return false;
+
+                    while (delegate.hasNext()) {
+                        Entry entry = delegate.next();
+                        if (!entry.readable) continue;
+                        nextSnapshot = entry.snapshot();
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            @Override
+            public Snapshot next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                removeSnapshot = nextSnapshot;
+                nextSnapshot = null;
+                return removeSnapshot;
+            }
+
+            @Override
+            public void remove() {
+                if (removeSnapshot == null) throw new IllegalStateException("remove() before next()");
+                try {
+                    SegmentCache.this.remove(removeSnapshot.key);
+                } catch (IOException ignored) {
+                    Logger.error(ignored.getMessage());
+                } finally {
+                    removeSnapshot = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * 为长度为{@code length}的值选择写入的段，活动段写满时滚动到新的段
+     *
+     * @param length 值的长度
+     * @return 段
+     * @throws IOException 异常
+     */
+    private Segment allocate(long length) throws IOException {
+        if (active == null || (active.size > 0 && active.size + length > segmentSize)) {
+            active = openSegment(nextSegmentId++);
+        }
+        return active;
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        File file = new File(directory, SEGMENT_PREFIX + id);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        Segment segment = new Segment(id, file, channel);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * 释放条目第{@code index}个值占用的段空间
+     */
+    private void free(Entry entry, int index) {
+        Segment segment = segments.get(entry.segments[index]);
+        long length = entry.lengths[index];
+        if (segment != null) {
+            segment.live -= length;
+        }
+        garbage += length;
+        size -= length;
+    }
+
+    /**
+     * 把条目登记到其值所在段的存活条目索引中
+     */
+    private void link(Entry entry) {
+        for (int i = 0; i < valueCount; i++) {
+            segments.get(entry.segments[i]).entries.add(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        for (int i = 0; i < valueCount; i++) {
+            Segment segment = segments.get(entry.segments[i]);
+            if (segment != null) {
+                segment.entries.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * 把写入的数据刷到磁盘，保证日志记录不会引用尚未落盘的数据
+     */
+    private static void force(Segment[] targets) throws IOException {
+        Set<Segment> forced = new HashSet<>();
+        for (Segment segment : targets) {
+            if (segment != null && forced.add(segment)) {
+                segment.channel.force(false);
+            }
+        }
+    }
+
+    private void release(Segment[] targets) {
+        for (Segment segment : targets) {
+            if (segment != null) {
+                segment.writers--;
+                closeIfUnused(segment);
+            }
+        }
+    }
+
+    /**
+     * 缓存关闭或段被删除后，在最后一个读写者离开时关闭段文件
+     */
+    private void closeIfUnused(Segment segment) {
+        if ((segment.deleted || closed) && segment.readers == 0 && segment.writers == 0) {
+            IoUtils.close(segment.channel);
+            if (segment.deleted) {
+                try {
+                    Files.deleteIfExists(segment.file.toPath());
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void appendRecord(byte type, Entry entry) throws IOException {
+        int length = 2 + entry.key.length() + (type == PUT ? valueCount * 20 : 0) + 4;
+        if (journal.remaining() < length + 1) {
+            int position = journal.position();
+            long capacity = Math.max((long) journal.capacity() * 2, position + length + 1);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("journal too large");
+            }
+            journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            journal.position(position);
+        }
+        writeRecord(journal, type, entry);
+    }
+
+    private void writeRecord(java.nio.ByteBuffer buffer, byte type, Entry entry) {
+        int start = buffer.position();
+        buffer.put(type).put((byte) entry.key.length()).put(entry.key.getBytes(StandardCharsets.US_ASCII));
+        if (type == PUT) {
+            for (int i = 0; i < valueCount; i++) {
+                buffer.putInt(entry.segments[i]).putLong(entry.offsets[i]).putLong(entry.lengths[i]);
+            }
+        }
+        buffer.putInt(checksum(buffer, start, buffer.position()));
+    }
+
+    private int checksum(java.nio.ByteBuffer buffer, int start, int end) {
+        java.nio.ByteBuffer record = buffer.duplicate();
+        record.limit(end).position(start);
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 快照信息
+     */
+    public final class Snapshot implements CacheStore.Snapshot {
+        private final String key;
+        private final long sequenceNumber;
+        private final Segment[] segments;
+        private final Source[] sources;
+        private final long[] lengths;
+        private boolean closed;
+
+        Snapshot(String key, long sequenceNumber, Segment[] segments, Source[] sources, long[] lengths) {
+            this.key = key;
+            this.sequenceNumber = sequenceNumber;
+            this.segments = segments;
+            this.sources = sources;
+            this.lengths = lengths;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public Editor edit() throws IOException {
+            return SegmentCache.this.edit(key, sequenceNumber);
+        }
+
+        @Override
+        public Source getSource(int index) {
+            return sources[index];
+        }
+
+        @Override
+        public long getLength(int index) {
+            return lengths[index];
+        }
+
+        @Override
+        public void close() {
+            synchronized (SegmentCache.this) {
+                if (closed) return;
+                closed = true;
+                for (Segment segment : segments) {
+                    segment.readers--;
+                    closeIfUnused(segment);
+                }
+            }
+        }
+    }
+
+    public final class Editor implements CacheStore.Editor {
+        final Entry entry;
+        final ValueSink[] values;
+        boolean committing;
+        private boolean done;
+
+        Editor(Entry entry) {
+            this.entry = entry;
+            this.values = new ValueSink[valueCount];
+        }
+
+        /**
+         * 使编辑器失效。正在提交的编辑器由提交线程清理临时数据
+         */
+        void detach() {
+            if (entry.currentEditor == this) {
+                if (!committing) {
+                    discard();
+                }
+                entry.currentEditor = null;
+            }
+        }
+
+        void discard() {
+            for (ValueSink value : values) {
+                if (value != null) {
+                    value.discard();
+                }
+            }
+        }
+
+        @Override
+        public Sink newSink(int index) {
+            synchronized (SegmentCache.this) {
+                if (done) {
+                    throw new IllegalStateException();
+                }
+                if (entry.currentEditor != this) {
+                    return IoUtils.blackhole();
+                }
+                if (values[index] != null) {
+                    values[index].discard();
+                }
+                values[index] = new ValueSink(new File(directory, (nextTempId++) + TEMP_SUFFIX));
+                return values[index];
+            }
+        }
+
+        @Override
+        public void commit() throws IOException {
+            synchronized (SegmentCache.this) {
+                if (done) {
+                    throw new IllegalStateException();
+                }
+                done = true;
+                if (entry.currentEditor != this) {
+                    return;
+                }
+            }
+            completeEdit(this, true);
+        }
+
+        /**
+         * 中止这个编辑。这释放了编辑锁，因此可以在同一个键上启动另一个编辑
+         *
+         * @throws IOException 异常
+         */
+        @Override
+        public void abort() throws IOException {
+            synchronized (SegmentCache.this) {
+                if (done) {
+                    throw new IllegalStateException();
+                }
+                done = true;
+                if (entry.currentEditor == this) {
+                    completeEdit(this, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * 编辑中的值，较小时保存在内存中，超过{@link #SPILL_SIZE}后写入临时文件
+     */
+    static final class ValueSink implements Sink {
+        private final File file;
+        private final Buffer buffer = new Buffer();
+        private Sink fileSink;
+        private long length;
+        private boolean closed;
+
+        ValueSink(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public synchronized void write(Buffer source, long byteCount) throws IOException {
+            if (closed) {
+                // 编辑器已失效，丢弃数据
+                source.skip(byteCount);
+                return;
+            }
+            if (fileSink == null && buffer.size() + byteCount > SPILL_SIZE) {
+                fileSink = FileSystem.SYSTEM.sink(file);
+                fileSink.write(buffer, buffer.size());
+            }
+            if (fileSink != null) {
+                fileSink.write(source, byteCount);
+            } else {
+                buffer.write(source, byteCount);
+            }
+            length += byteCount;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (fileSink != null) fileSink.flush();
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (fileSink != null) fileSink.close();
+        }
+
+        /**
+         * 结束写入并返回值的长度
+         */
+        long finish() throws IOException {
+            close();
+            return length;
+        }
+
+        /**
+         * 把值写入段文件的{@code offset}处，使用定位写，不改变段文件的位置
+         */
+        void writeTo(FileChannel channel, long offset) throws IOException {
+            if (fileSink == null) {
+                java.nio.ByteBuffer bytes = java.nio.ByteBuffer.wrap(buffer.readByteArray());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, offset + bytes.position());
+                }
+                return;
+            }
+            try (FileInputStream in = new FileInputStream(file)) {
+                FileChannel source = in.getChannel();
+                for (long pos = 0; pos < length; ) {
+                    long count = channel.transferFrom(source, offset + pos, length - pos);
+                    if (count <= 0) throw new EOFException(file + " truncated");
+                    pos += count;
+                }
+            }
+        }
+
+        synchronized void discard() {
+            IoUtils.close(this);
+            buffer.clear();
+            if (fileSink != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 段文件，所有字段由缓存监视器保护
+     */
+    static final class Segment {
+        final int id;
+        final File file;
+        final FileChannel channel;
+        /**
+         * 有值存放在该段中的条目，压缩时只需遍历这些条目
+         */
+        final Set<Entry> entries = new HashSet<>();
+        /**
+         * 已分配的字节数，包含正在写入的值
+         */
+        long size;
+        long live;
+        int readers;
+        int writers;
+        boolean deleted;
+
+        Segment(int id, File file, FileChannel channel) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = channel.size();
+        }
+    }
+
+    /**
+     * 从段文件中读取一个值，每次读取都是一次定位读
+     */
+    static final class SegmentSource implements Source {
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        SegmentSource(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            if (byteCount < 0) throw new IllegalArgumentException("byteCount < 0: " + byteCount);
+            if (remaining == 0 || byteCount == 0) return remaining == 0 ? -1 : 0;
+            long count = channel.transferTo(position, Math.min(byteCount, remaining), sink);
+            if (count <= 0) throw new EOFException("segment truncated");
+            position += count;
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 压缩时待移动的一个值
+     */
+    private static final class Move {
+        final Entry entry;
+        final int index;
+        final long offset;
+        final long length;
+        final Segment target;
+        final long targetOffset;
+
+        Move(Entry entry, int index, long offset, long length, Segment target, long targetOffset) {
+            this.entry = entry;
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+            this.target = target;
+            this.targetOffset = targetOffset;
+        }
+    }
+
+    private final class Entry {
+        final String key;
+        final int[] segments;
+        final long[] offsets;
+        final long[] lengths;
+
+        boolean readable;
+
+        Editor currentEditor;
+
+        long sequenceNumber;
+
+        Entry(String key) {
+            this.key = key;
+            this.segments = new int[valueCount];
+            this.offsets = new long[valueCount];
+            this.lengths = new long[valueCount];
+        }
+
+        Snapshot snapshot() {
+            if (!Thread.holdsLock(SegmentCache.this)) throw new AssertionError();
+
+            Segment[] pinned = new Segment[valueCount];
+            Source[] sources = new Source[valueCount];
+            for (int i = 0; i < valueCount; i++) {
+                pinned[i] = SegmentCache.this.segments.get(segments[i]);
+                pinned[i].readers++;
+                sources[i] = new SegmentSource(pinned[i].channel, offsets[i], lengths[i]);
+            }
+            return new Snapshot(key, sequenceNumber, pinned, sources, lengths.clone());
+        }
+    }
+
+}
@@ -0,0 +1,445 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.metric;
+
+import org.aoju.bus.http.DnsX;
+import org.aoju.bus.logger.Logger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带缓存的DNS实现,包装另一个{@link DnsX}(默认{@link DnsX#SYSTEM})
+ * <ul>
+ * <li>成功结果按ttl缓存,失败结果按negativeTtl缓存</li>
+ * <li>缓存存活超过ttl * refreshRatio后,命中时在后台线程提前刷新</li>
+ * <li>过期后重新解析失败时,在staleTtl内继续返回旧结果</li>
+ * <li>同一主机并发未命中时只解析一次</li>
+ * <li>每次返回的地址列表轮换起始地址,使连接均匀分布</li>
+ * </ul>
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public final class CachingDns implements DnsX {
+
+    /**
+     * 后台刷新线程池
+     */
+    private static final ThreadPoolExecutor REFRESHER;
+
+    static {
+        REFRESHER = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), org.aoju.bus.http.Builder.threadFactory("Httpd CachingDns", true));
+        REFRESHER.allowCoreThreadTimeOut(true);
+    }
+
+    private final DnsX dns;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long staleTtlNanos;
+    private final long refreshNanos;
+    private final int maxEntries;
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong lookupCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong resolveCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong resolveNanos = new AtomicLong();
+    private final AtomicLong maxResolveNanos = new AtomicLong();
+
+    CachingDns(Builder builder) {
+        this.dns = builder.dns;
+        this.ttlNanos = builder.ttlNanos;
+        this.negativeTtlNanos = builder.negativeTtlNanos;
+        this.staleTtlNanos = builder.staleTtlNanos;
+        this.refreshNanos = (long) (builder.ttlNanos * builder.refreshRatio);
+        this.maxEntries = builder.maxEntries;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        if (hostname == null) {
+            throw new UnknownHostException("hostname == null");
+        }
+        lookupCount.incrementAndGet();
+        long now = System.nanoTime();
+        Entry entry = cache.get(hostname);
+        if (entry != null && now - entry.expiresAt < 0) {
+            hitCount.incrementAndGet();
+            if (entry.addresses != null && now - entry.refreshAt >= 0
+                    && entry.refreshing.compareAndSet(false, true)) {
+                refresh(hostname, entry);
+            }
+            return entry.result(hostname);
+        }
+        return resolve(hostname, entry).result(hostname);
+    }
+
+    /**
+     * 清除全部缓存
+     */
+    public void evictAll() {
+        cache.clear();
+    }
+
+    /**
+     * 清除指定主机的缓存
+     *
+     * @param hostname 主机名
+     */
+    public void evict(String hostname) {
+        cache.remove(hostname);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long lookupCount() {
+        return lookupCount.get();
+    }
+
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return 实际调用下层DNS解析的次数,包括后台刷新
+     */
+    public long resolveCount() {
+        return resolveCount.get();
+    }
+
+    public long errorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * @return 解析失败时返回旧结果的次数
+     */
+    public long staleCount() {
+        return staleCount.get();
+    }
+
+    public long refreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return 下层DNS解析的平均耗时(纳秒)
+     */
+    public long averageResolveNanos() {
+        long count = resolveCount.get();
+        return count == 0 ? 0 : resolveNanos.get() / count;
+    }
+
+    /**
+     * @return 下层DNS解析的最大耗时(纳秒)
+     */
+    public long maxResolveNanos() {
+        return maxResolveNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CachingDns{size=" + cache.size()
+                + ", lookups=" + lookupCount.get()
+                + ", hits=" + hitCount.get()
+                + ", resolves=" + resolveCount.get()
+                + ", errors=" + errorCount.get()
+                + ", stale=" + staleCount.get()
+                + ", refreshes=" + refreshCount.get()
+                + ", avgResolveMs=" + TimeUnit.NANOSECONDS.toMillis(averageResolveNanos())
+                + ", maxResolveMs=" + TimeUnit.NANOSECONDS.toMillis(maxResolveNanos.get())
+                + "}";
+    }
+
+    private void refresh(String hostname, Entry entry) {
+        refreshCount.incrementAndGet();
+        try {
+            REFRESHER.execute(() -> {
+                try {
+                    resolve(hostname, entry);
+                } catch (UnknownHostException e) {
+                    Logger.debug("dns refresh failed: {}", hostname);
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+            Logger.warn("dns refresh rejected: {}", hostname);
+        }
+    }
+
+    /**
+     * 解析主机,同一主机并发调用时只有一个线程访问下层DNS,其余线程等待其结果
+     */
+    private Entry resolve(String hostname, Entry previous) throws UnknownHostException {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inflight.putIfAbsent(hostname, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw unknownHost(hostname, e.getCause());
+            }
+        }
+        try {
+            Entry entry = load(hostname, previous);
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(hostname, future);
+        }
+    }
+
+    private Entry load(String hostname, Entry previous) {
+        long start = System.nanoTime();
+        List<InetAddress> addresses = null;
+        UnknownHostException error = null;
+        try {
+            addresses = dns.lookup(hostname);
+            if (addresses == null || addresses.isEmpty()) {
+                error = new UnknownHostException(dns + " returned no addresses for " + hostname);
+            }
+        } catch (UnknownHostException e) {
+            error = e;
+        }
+        long now = System.nanoTime();
+        long elapsed = now - start;
+        resolveCount.incrementAndGet();
+        resolveNanos.addAndGet(elapsed);
+        long max;
+        while (elapsed > (max = maxResolveNanos.get()) && !maxResolveNanos.compareAndSet(max, elapsed)) {
+            // retry
+        }
+
+        Entry entry;
+        if (error == null) {
+            entry = new Entry(Collections.unmodifiableList(new ArrayList<>(addresses)), null,
+                    now + ttlNanos, now + refreshNanos, now + ttlNanos + staleTtlNanos);
+        } else {
+            errorCount.incrementAndGet();
+            if (previous != null && previous.addresses != null && now - previous.staleUntil < 0) {
+                // 解析失败,在stale期内继续使用旧结果,并在negativeTtl后重试
+                staleCount.incrementAndGet();
+                Logger.warn("dns lookup failed, serve stale addresses for {}: {}", hostname, error.getMessage());
+                entry = new Entry(previous.addresses, null,
+                        Math.min(now + negativeTtlNanos, previous.staleUntil), previous.staleUntil, previous.staleUntil);
+            } else {
+                long expiresAt = now + negativeTtlNanos;
+                entry = new Entry(null, error, expiresAt, expiresAt, expiresAt);
+            }
+        }
+        if (cache.put(hostname, entry) == null && cache.size() > maxEntries) {
+            purge(now);
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存数量超出上限时,移除已超出stale期的条目(staleUntil不早于expiresAt);仍超出时移除任意条目
+     */
+    private void purge(long now) {
+        for (Iterator<Entry> it = cache.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (now - entry.staleUntil >= 0) {
+                it.remove();
+            }
+        }
+        for (Iterator<String> it = cache.keySet().iterator(); cache.size() > maxEntries && it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static UnknownHostException unknownHost(String hostname, Throwable cause) {
+        if (cause instanceof UnknownHostException) {
+            UnknownHostException e = new UnknownHostException(cause.getMessage());
+            e.initCause(cause);
+            return e;
+        }
+        UnknownHostException e = new UnknownHostException("dns lookup failed for " + hostname);
+        e.initCause(cause);
+        return e;
+    }
+
+    static final class Entry {
+
+        final List<InetAddress> addresses;
+        final UnknownHostException error;
+        final long expiresAt;
+        final long refreshAt;
+        final long staleUntil;
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<InetAddress> addresses, UnknownHostException error,
+              long expiresAt, long refreshAt, long staleUntil) {
+            this.addresses = addresses;
+            this.error = error;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+            this.staleUntil = staleUntil;
+        }
+
+        /**
+         * 返回轮换起始位置后的地址列表,失败结果则抛出异常
+         */
+        List<InetAddress> result(String hostname) throws UnknownHostException {
+            if (addresses == null) {
+                throw unknownHost(hostname, error);
+            }
+            int size = addresses.size();
+            if (size == 1) {
+                return addresses;
+            }
+            int start = (cursor.getAndIncrement() & Integer.MAX_VALUE) % size;
+            List<InetAddress> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(addresses.get((start + i) % size));
+            }
+            return result;
+        }
+    }
+
+    public static final class Builder {
+
+        DnsX dns = DnsX.SYSTEM;
+        long ttlNanos = TimeUnit.SECONDS.toNanos(60);
+        long negativeTtlNanos = TimeUnit.SECONDS.toNanos(10);
+        long staleTtlNanos = TimeUnit.MINUTES.toNanos(5);
+        double refreshRatio = 0.8;
+        int maxEntries = 4096;
+
+        public Builder() {
+        }
+
+        public CachingDns build() {
+            return new CachingDns(this);
+        }
+
+        /**
+         * @param dns 实际执行解析的DNS
+         * @return the builder
+         */
+        public Builder dns(DnsX dns) {
+            if (dns == null) {
+                throw new NullPointerException("dns == null");
+            }
+            this.dns = dns;
+            return this;
+        }
+
+        /**
+         * @param ttl  成功结果的缓存时长
+         * @param unit 时间单位
+         * @return the builder
+         */
+        public Builder ttl(long ttl, TimeUnit unit) {
+            if (ttl <= 0) {
+                throw new IllegalArgumentException("ttl <= 0");
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * @param negativeTtl 失败结果的缓存时长
+         * @param unit        时间单位
+         * @return the builder
+         */
+        public Builder negativeTtl(long negativeTtl, TimeUnit unit) {
+            if (negativeTtl < 0) {
+                throw new IllegalArgumentException("negativeTtl < 0");
+            }
+            this.negativeTtlNanos = unit.toNanos(negativeTtl);
+            return this;
+        }
+
+        /**
+         * @param staleTtl 过期后解析失败时,旧结果可继续使用的时长
+         * @param unit     时间单位
+         * @return the builder
+         */
+        public Builder staleTtl(long staleTtl, TimeUnit unit) {
+            if (staleTtl < 0) {
+                throw new IllegalArgumentException("staleTtl < 0");
+            }
+            this.staleTtlNanos = unit.toNanos(staleTtl);
+            return this;
+        }
+
+        /**
+         * @param refreshRatio 缓存存活达到ttl的该比例后触发后台刷新,取值(0, 1],1表示不提前刷新
+         * @return the builder
+         */
+        public Builder refreshRatio(double refreshRatio) {
+            if (refreshRatio <= 0 || refreshRatio > 1) {
+                throw new IllegalArgumentException("refreshRatio must in (0, 1]");
+            }
+            this.refreshRatio = refreshRatio;
+            return this;
+        }
+
+        /**
+         * @param maxEntries 最多缓存的主机数量
+         * @return the builder
+         */
+        public Builder maxEntries(int maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("maxEntries <= 0");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+    }
+
+}
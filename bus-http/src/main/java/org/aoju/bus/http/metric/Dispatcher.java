@@ -31,6 +31,8 @@ import org.aoju.bus.http.RealCall.AsyncCall;
 
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +41,10 @@ import java.util.concurrent.TimeUnit;
  * 关于何时执行异步请求的策略
  * 每个dispatcher使用一个{@link ExecutorService}在内部运行调用。
  * 如果您提供自己的执行程序，它应该能够并发地运行{@linkplain #getMaxRequests 配置的最大调用数}
+ * <p>
+ * 等待执行的调用按主机分别排队，可执行的主机以轮询方式调度，
+ * 每次提升调用均为O(1)，单个繁忙主机不会阻塞其他主机的请求
+ * </p>
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -47,19 +53,38 @@ import java.util.concurrent.TimeUnit;
 public final class Dispatcher {
 
     /**
-     * 准备异步调用的顺序，他们将被运行
+     * 最多保留统计信息的主机数量
      */
-    private final Deque<AsyncCall> readyAsyncCalls = new ArrayDeque<>();
+    private static final int MAX_HOST_METRICS = 256;
+
+    /**
+     * 按主机分组的待执行异步调用
+     */
+    private final Map<String, HostQueue> readyHosts = new HashMap<>();
+    /**
+     * 存在待执行调用且未达到主机并发上限的主机，按轮询顺序排列
+     */
+    private final Deque<HostQueue> eligibleHosts = new ArrayDeque<>();
     /**
      * 运行异步调用。包括尚未结束的已取消调用
      */
-    private final Deque<AsyncCall> runningAsyncCalls = new ArrayDeque<>();
+    private final Map<AsyncCall, Running> runningAsyncCalls = new IdentityHashMap<>();
     /**
      * 运行同步调用。包括尚未结束的已取消调用
      */
     private final Deque<RealCall> runningSyncCalls = new ArrayDeque<>();
+    /**
+     * 主机维度的排队及执行耗时统计
+     */
+    private final Map<String, HostMetrics> hostMetrics = new LinkedHashMap<String, HostMetrics>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HostMetrics> eldest) {
+            return size() > MAX_HOST_METRICS;
+        }
+    };
     private int maxRequests = 64;
     private int maxRequestsPerHost = 5;
+    private int readyCallsCount;
     private Runnable idleCallback;
     /**
      * 执行调用
@@ -73,6 +98,35 @@ public final class Dispatcher {
     public Dispatcher() {
     }
 
+    /**
+     * 使用固定数量线程执行调用的dispatcher，线程数与最大并发请求数一致
+     *
+     * @param maxRequests 最大并发请求数
+     * @return dispatcher
+     */
+    public static Dispatcher bounded(int maxRequests) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxRequests, maxRequests, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), Builder.threadFactory("Httpd Dispatcher", false));
+        executor.allowCoreThreadTimeOut(true);
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(maxRequests);
+        return dispatcher;
+    }
+
+    /**
+     * 每个调用使用一个虚拟线程执行的dispatcher，运行环境不支持虚拟线程时使用默认线程池
+     *
+     * @return dispatcher
+     */
+    public static Dispatcher virtual() {
+        try {
+            return new Dispatcher((ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return new Dispatcher();
+        }
+    }
+
     public synchronized ExecutorService executorService() {
         if (executorService == null) {
             executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
@@ -118,6 +172,10 @@ public final class Dispatcher {
         }
         synchronized (this) {
             this.maxRequestsPerHost = maxRequestsPerHost;
+            // 上限提高后原先已满的主机可能重新可调度
+            for (HostQueue queue : new ArrayList<>(readyHosts.values())) {
+                schedule(queue);
+            }
         }
         promoteAndExecute();
     }
@@ -134,7 +192,14 @@ public final class Dispatcher {
 
     public void enqueue(AsyncCall call) {
         synchronized (this) {
-            readyAsyncCalls.add(call);
+            HostQueue queue = readyHosts.get(call.host());
+            if (queue == null) {
+                queue = new HostQueue(call.host());
+                readyHosts.put(queue.host, queue);
+            }
+            queue.ready.add(new Ready(call, System.nanoTime()));
+            readyCallsCount++;
+            schedule(queue);
         }
         promoteAndExecute();
     }
@@ -145,11 +210,13 @@ public final class Dispatcher {
      * 执行的{@linkplain NewCall#enqueue}。
      */
     public synchronized void cancelAll() {
-        for (AsyncCall call : readyAsyncCalls) {
-            call.get().cancel();
+        for (HostQueue queue : readyHosts.values()) {
+            for (Ready ready : queue.ready) {
+                ready.call.get().cancel();
+            }
         }
 
-        for (AsyncCall call : runningAsyncCalls) {
+        for (AsyncCall call : runningAsyncCalls.keySet()) {
             call.get().cancel();
         }
 
@@ -159,8 +226,8 @@ public final class Dispatcher {
     }
 
     /**
-     * 将符合条件的调用从{@link #readyAsyncCalls}提升到{@link #runningAsyncCalls}，
-     * 并在executor服务上运行它们。必须不与同步调用，因为执行调用可以调用到用户代码
+     * 从可调度主机中轮询提升调用至运行状态，并在executor服务上运行它们。
+     * 必须不与同步调用，因为执行调用可以调用到用户代码
      *
      * @return 如果调度程序当前正在运行调用，则为true
      */
@@ -170,15 +237,29 @@ public final class Dispatcher {
         List<AsyncCall> executableCalls = new ArrayList<>();
         boolean isRunning;
         synchronized (this) {
-            for (Iterator<AsyncCall> i = readyAsyncCalls.iterator(); i.hasNext(); ) {
-                AsyncCall asyncCall = i.next();
-
-                if (runningAsyncCalls.size() >= maxRequests) break; // Max capacity.
-                if (runningCallsForHost(asyncCall) >= maxRequestsPerHost) continue; // Host max capacity.
-
-                i.remove();
+            long now = System.nanoTime();
+            HostQueue queue;
+            while (runningAsyncCalls.size() < maxRequests && (queue = eligibleHosts.poll()) != null) {
+                queue.scheduled = false;
+                // 主机并发上限调低后可能已满，待其调用结束时再调度
+                if (queue.running >= maxRequestsPerHost) {
+                    continue;
+                }
+                Ready ready = queue.ready.poll();
+                if (ready == null) {
+                    continue;
+                }
+                readyCallsCount--;
+                AsyncCall asyncCall = ready.call;
+                boolean counted = !asyncCall.get().forWebSocket;
+                if (counted) {
+                    queue.running++;
+                }
+                metrics(queue.host).queued(now - ready.enqueuedAt);
+                runningAsyncCalls.put(asyncCall, new Running(queue, now, counted));
                 executableCalls.add(asyncCall);
-                runningAsyncCalls.add(asyncCall);
+                // 仍可调度时放回队尾，实现主机间的轮询
+                schedule(queue);
             }
             isRunning = runningCallsCount() > 0;
         }
@@ -192,16 +273,30 @@ public final class Dispatcher {
     }
 
     /**
-     * @param call 回调信息
-     * @return 与{@code call}共享主机的运行调用的数量
+     * 主机存在待执行调用且未达到并发上限时加入轮询队列，无待执行及运行中的调用时移除该主机
+     *
+     * @param queue 主机队列
      */
-    private int runningCallsForHost(AsyncCall call) {
-        int result = 0;
-        for (AsyncCall c : runningAsyncCalls) {
-            if (c.get().forWebSocket) continue;
-            if (c.host().equals(call.host())) result++;
+    private void schedule(HostQueue queue) {
+        if (queue.ready.isEmpty()) {
+            if (queue.running == 0) {
+                readyHosts.remove(queue.host);
+            }
+            return;
+        }
+        if (!queue.scheduled && queue.running < maxRequestsPerHost) {
+            queue.scheduled = true;
+            eligibleHosts.add(queue);
+        }
+    }
+
+    private HostMetrics metrics(String host) {
+        HostMetrics metrics = hostMetrics.get(host);
+        if (metrics == null) {
+            metrics = new HostMetrics(host);
+            hostMetrics.put(host, metrics);
         }
-        return result;
+        return metrics;
     }
 
     public synchronized void executed(RealCall call) {
@@ -209,17 +304,32 @@ public final class Dispatcher {
     }
 
     public void finished(AsyncCall call) {
-        finished(runningAsyncCalls, call);
-    }
+        Runnable idleCallback;
+        synchronized (this) {
+            Running running = runningAsyncCalls.remove(call);
+            if (running == null) throw new AssertionError("Call wasn't in-flight!");
+            HostQueue queue = running.queue;
+            if (running.counted) {
+                queue.running--;
+            }
+            metrics(queue.host).executed(System.nanoTime() - running.startedAt);
+            if (readyHosts.get(queue.host) == queue) {
+                schedule(queue);
+            }
+            idleCallback = this.idleCallback;
+        }
 
-    public void finished(RealCall call) {
-        finished(runningSyncCalls, call);
+        boolean isRunning = promoteAndExecute();
+
+        if (!isRunning && idleCallback != null) {
+            idleCallback.run();
+        }
     }
 
-    private <T> void finished(Deque<T> calls, T call) {
+    public void finished(RealCall call) {
         Runnable idleCallback;
         synchronized (this) {
-            if (!calls.remove(call)) throw new AssertionError("Call wasn't in-flight!");
+            if (!runningSyncCalls.remove(call)) throw new AssertionError("Call wasn't in-flight!");
             idleCallback = this.idleCallback;
         }
 
@@ -232,8 +342,10 @@ public final class Dispatcher {
 
     public synchronized List<NewCall> queuedCalls() {
         List<NewCall> result = new ArrayList<>();
-        for (AsyncCall asyncCall : readyAsyncCalls) {
-            result.add(asyncCall.get());
+        for (HostQueue queue : readyHosts.values()) {
+            for (Ready ready : queue.ready) {
+                result.add(ready.call.get());
+            }
         }
         return Collections.unmodifiableList(result);
     }
@@ -241,18 +353,161 @@ public final class Dispatcher {
     public synchronized List<NewCall> runningCalls() {
         List<NewCall> result = new ArrayList<>();
         result.addAll(runningSyncCalls);
-        for (AsyncCall asyncCall : runningAsyncCalls) {
+        for (AsyncCall asyncCall : runningAsyncCalls.keySet()) {
             result.add(asyncCall.get());
         }
         return Collections.unmodifiableList(result);
     }
 
     public synchronized int queuedCallsCount() {
-        return readyAsyncCalls.size();
+        return readyCallsCount;
     }
 
     public synchronized int runningCallsCount() {
         return runningAsyncCalls.size() + runningSyncCalls.size();
     }
 
+    /**
+     * @return 最近访问的主机的异步调用统计快照
+     */
+    public synchronized List<HostMetrics> hostMetrics() {
+        List<HostMetrics> result = new ArrayList<>(hostMetrics.size());
+        for (HostMetrics metrics : hostMetrics.values()) {
+            result.add(metrics.copy());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 主机维度的异步调用统计
+     */
+    public static final class HostMetrics {
+
+        private final String host;
+        private long queuedCount;
+        private long queueNanos;
+        private long maxQueueNanos;
+        private long executedCount;
+        private long executeNanos;
+        private long maxExecuteNanos;
+
+        HostMetrics(String host) {
+            this.host = host;
+        }
+
+        void queued(long nanos) {
+            queuedCount++;
+            queueNanos += nanos;
+            maxQueueNanos = Math.max(maxQueueNanos, nanos);
+        }
+
+        void executed(long nanos) {
+            executedCount++;
+            executeNanos += nanos;
+            maxExecuteNanos = Math.max(maxExecuteNanos, nanos);
+        }
+
+        HostMetrics copy() {
+            HostMetrics copy = new HostMetrics(host);
+            copy.queuedCount = queuedCount;
+            copy.queueNanos = queueNanos;
+            copy.maxQueueNanos = maxQueueNanos;
+            copy.executedCount = executedCount;
+            copy.executeNanos = executeNanos;
+            copy.maxExecuteNanos = maxExecuteNanos;
+            return copy;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        /**
+         * @return 已开始执行的调用数
+         */
+        public long queuedCount() {
+            return queuedCount;
+        }
+
+        /**
+         * @return 在dispatcher中的平均排队耗时(纳秒)
+         */
+        public long averageQueueNanos() {
+            return queuedCount == 0 ? 0 : queueNanos / queuedCount;
+        }
+
+        public long maxQueueNanos() {
+            return maxQueueNanos;
+        }
+
+        /**
+         * @return 已执行完毕的调用数
+         */
+        public long executedCount() {
+            return executedCount;
+        }
+
+        /**
+         * @return 平均执行耗时(纳秒)，包含executor内部的等待时间
+         */
+        public long averageExecuteNanos() {
+            return executedCount == 0 ? 0 : executeNanos / executedCount;
+        }
+
+        public long maxExecuteNanos() {
+            return maxExecuteNanos;
+        }
+
+        @Override
+        public String toString() {
+            return host + "{queued=" + queuedCount
+                    + ", avgQueueMs=" + TimeUnit.NANOSECONDS.toMillis(averageQueueNanos())
+                    + ", executed=" + executedCount
+                    + ", avgExecuteMs=" + TimeUnit.NANOSECONDS.toMillis(averageExecuteNanos())
+                    + "}";
+        }
+    }
+
+    /**
+     * 单个主机的待执行调用
+     */
+    private static final class HostQueue {
+        final String host;
+        final Deque<Ready> ready = new ArrayDeque<>();
+        /**
+         * 该主机正在运行的非WebSocket调用数
+         */
+        int running;
+        /**
+         * 是否已在轮询队列中
+         */
+        boolean scheduled;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+    }
+
+    private static final class Ready {
+        final AsyncCall call;
+        final long enqueuedAt;
+
+        Ready(AsyncCall call, long enqueuedAt) {
+            this.call = call;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Running {
+        final HostQueue queue;
+        final long startedAt;
+        final boolean counted;
+
+        Running(HostQueue queue, long startedAt, boolean counted) {
+            this.queue = queue;
+            this.startedAt = startedAt;
+            this.counted = counted;
+        }
+    }
+
 }
@@ -25,7 +25,10 @@
 package org.aoju.bus.http.metric.http;
 
 import org.aoju.bus.Version;
-import org.aoju.bus.core.io.GzipSource;
+import org.aoju.bus.core.io.BufferSink;
+import org.aoju.bus.core.io.BufferSource;
+import org.aoju.bus.core.io.DelegateSink;
+import org.aoju.bus.core.io.Source;
 import org.aoju.bus.core.lang.Header;
 import org.aoju.bus.core.lang.MediaType;
 import org.aoju.bus.core.lang.Symbol;
@@ -37,6 +40,8 @@ import org.aoju.bus.http.metric.CookieJar;
 import org.aoju.bus.http.metric.Interceptor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -50,9 +55,37 @@ import java.util.List;
 public final class BridgeInterceptor implements Interceptor {
 
     private final CookieJar cookieJar;
+    /**
+     * 可透明解码的内容编码，按优先顺序排列
+     */
+    private final List<ContentCoding> contentCodings;
+    /**
+     * 请求体压缩使用的编码，为空时不压缩
+     */
+    private final ContentCoding requestCoding;
+    /**
+     * 请求体长度达到该值时才压缩
+     */
+    private final long requestCodingThreshold;
+    private final String acceptEncoding;
 
     public BridgeInterceptor(CookieJar cookieJar) {
+        this(cookieJar, Collections.singletonList(ContentCoding.GZIP), null, Long.MAX_VALUE);
+    }
+
+    public BridgeInterceptor(CookieJar cookieJar, List<ContentCoding> contentCodings,
+                             ContentCoding requestCoding, long requestCodingThreshold) {
         this.cookieJar = cookieJar;
+        this.contentCodings = contentCodings;
+        this.requestCoding = requestCoding;
+        this.requestCodingThreshold = requestCodingThreshold;
+
+        StringBuilder accept = new StringBuilder();
+        for (ContentCoding coding : contentCodings) {
+            if (accept.length() > 0) accept.append(", ");
+            accept.append(coding.name());
+        }
+        this.acceptEncoding = accept.toString();
     }
 
     @Override
@@ -61,6 +94,13 @@ public final class BridgeInterceptor implements Interceptor {
         Request.Builder requestBuilder = userRequest.newBuilder();
 
         RequestBody body = userRequest.body();
+        if (body != null && requestCoding != null
+                && userRequest.header(Header.CONTENT_ENCODING) == null
+                && body.contentLength() >= requestCodingThreshold) {
+            body = encode(body, requestCoding);
+            requestBuilder.header(Header.CONTENT_ENCODING, requestCoding.name());
+            requestBuilder.method(userRequest.method(), body);
+        }
         if (body != null) {
             MediaType contentType = body.contentType();
             if (contentType != null) {
@@ -85,12 +125,12 @@ public final class BridgeInterceptor implements Interceptor {
             requestBuilder.header(Header.CONNECTION, Header.KEEP_ALIVE);
         }
 
-        // If we add an "Accept-Encoding: gzip" header field we're responsible for also decompressing
-        // the transfer stream.
-        boolean transparentGzip = false;
-        if (userRequest.header(Header.ACCEPT_ENCODING) == null && userRequest.header("Range") == null) {
-            transparentGzip = true;
-            requestBuilder.header(Header.ACCEPT_ENCODING, "gzip");
+        // 如果添加了"Accept-Encoding"头，我们也负责解码响应流
+        boolean transparentDecoding = false;
+        if (userRequest.header(Header.ACCEPT_ENCODING) == null && userRequest.header("Range") == null
+                && !contentCodings.isEmpty()) {
+            transparentDecoding = true;
+            requestBuilder.header(Header.ACCEPT_ENCODING, acceptEncoding);
         }
 
         List<Cookie> cookies = cookieJar.loadForRequest(userRequest.url());
@@ -109,10 +149,16 @@ public final class BridgeInterceptor implements Interceptor {
         Response.Builder responseBuilder = networkResponse.newBuilder()
                 .request(userRequest);
 
-        if (transparentGzip
-                && "gzip".equalsIgnoreCase(networkResponse.header(Header.CONTENT_ENCODING))
-                && HttpHeaders.hasBody(networkResponse)) {
-            GzipSource responseBody = new GzipSource(networkResponse.body().source());
+        List<ContentCoding> codings = transparentDecoding
+                ? codings(networkResponse.header(Header.CONTENT_ENCODING)) : null;
+        if (codings != null && HttpHeaders.hasBody(networkResponse)) {
+            // 多个编码按应用顺序列出，解码时逆序进行
+            Source responseBody = networkResponse.body().source();
+            for (int i = codings.size() - 1; i >= 0; i--) {
+                BufferSource encoded = responseBody instanceof BufferSource
+                        ? (BufferSource) responseBody : IoUtils.buffer(responseBody);
+                responseBody = codings.get(i).decode(encoded);
+            }
             Headers strippedHeaders = networkResponse.headers().newBuilder()
                     .removeAll(Header.CONTENT_ENCODING)
                     .removeAll(Header.CONTENT_LENGTH)
@@ -125,6 +171,65 @@ public final class BridgeInterceptor implements Interceptor {
         return responseBuilder.build();
     }
 
+    /**
+     * 解析响应的Content-Encoding，任一编码未注册时返回null，此时保持响应原样
+     *
+     * @param contentEncoding 响应头
+     * @return 按应用顺序排列的编码
+     */
+    private List<ContentCoding> codings(String contentEncoding) {
+        if (contentEncoding == null) return null;
+        List<ContentCoding> result = new ArrayList<>(1);
+        for (String name : contentEncoding.split(Symbol.COMMA)) {
+            name = name.trim();
+            if (name.isEmpty() || "identity".equalsIgnoreCase(name)) continue;
+            ContentCoding coding = null;
+            for (ContentCoding candidate : contentCodings) {
+                if (candidate.name().equalsIgnoreCase(name)) {
+                    coding = candidate;
+                    break;
+                }
+            }
+            if (coding == null) return null;
+            result.add(coding);
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * 包装请求体，写出时按{@code coding}编码。编码后长度未知，以chunked方式发送
+     *
+     * @param body   原始请求体
+     * @param coding 编码
+     * @return 编码后的请求体
+     */
+    private static RequestBody encode(RequestBody body, ContentCoding coding) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(BufferSink sink) throws IOException {
+                // 编码输出关闭时只写出尾部，底层输出由调用方关闭
+                BufferSink encoded = IoUtils.buffer(coding.encode(new DelegateSink(sink) {
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                }));
+                body.writeTo(encoded);
+                encoded.close();
+            }
+        };
+    }
+
     private String cookieHeader(List<Cookie> cookies) {
         StringBuilder cookieHeader = new StringBuilder();
         for (int i = 0, size = cookies.size(); i < size; i++) {
@@ -0,0 +1,125 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.http.metric.http;
+
+import org.aoju.bus.core.io.*;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 内容编码(Content-Encoding)的流式编解码器，按名称注册到
+ * {@link org.aoju.bus.http.Httpd.Builder#addContentCoding(ContentCoding)}.
+ * 已注册的编码会出现在请求的{@code Accept-Encoding}中，并由{@link BridgeInterceptor}透明解码
+ * <p>
+ * 内置{@link #GZIP}(默认注册)和{@link #DEFLATE}；br、zstd等编码可借助第三方流实现注册，例如:
+ * <pre>{@code
+ * ContentCoding brotli = new ContentCoding() {
+ *     public String name() {
+ *         return "br";
+ *     }
+ *
+ *     public Source decode(BufferSource source) throws IOException {
+ *         return IoUtils.source(new BrotliInputStream(source.inputStream()));
+ *     }
+ *
+ *     public Sink encode(Sink sink) {
+ *         return IoUtils.sink(new BrotliOutputStream(IoUtils.buffer(sink).outputStream()));
+ *     }
+ * };
+ * }</pre>
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public interface ContentCoding {
+
+    ContentCoding GZIP = new ContentCoding() {
+        @Override
+        public String name() {
+            return "gzip";
+        }
+
+        @Override
+        public Source decode(BufferSource source) {
+            return new GzipSource(source);
+        }
+
+        @Override
+        public Sink encode(Sink sink) {
+            return new GzipSink(sink);
+        }
+    };
+
+    ContentCoding DEFLATE = new ContentCoding() {
+        @Override
+        public String name() {
+            return "deflate";
+        }
+
+        /**
+         * 规范要求deflate为zlib格式，但部分服务器发送不带zlib头的原始deflate数据，这里按首部自动识别
+         */
+        @Override
+        public Source decode(BufferSource source) throws IOException {
+            if (!source.request(2)) return source;
+            int cmf = source.getBuffer().getByte(0) & 0xff;
+            int flg = source.getBuffer().getByte(1) & 0xff;
+            boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+            return new InflaterSource(source, new Inflater(!zlib));
+        }
+
+        @Override
+        public Sink encode(Sink sink) {
+            return new DeflaterSink(sink, new Deflater());
+        }
+    };
+
+    /**
+     * @return 编码名称，如gzip、br、zstd，大小写不敏感
+     */
+    String name();
+
+    /**
+     * 返回解码后的数据源，关闭返回的数据源时应同时关闭{@code source}
+     *
+     * @param source 编码后的数据
+     * @return 解码后的数据源
+     * @throws IOException 异常
+     */
+    Source decode(BufferSource source) throws IOException;
+
+    /**
+     * 返回写入时进行编码的输出，关闭时写出编码尾部并关闭{@code sink}，用于请求体压缩
+     *
+     * @param sink 编码后数据的输出
+     * @return 编码输出
+     * @throws IOException 异常
+     */
+    Sink encode(Sink sink) throws IOException;
+
+}
@@ -62,4 +62,17 @@ public interface Limiter<T extends Annotation> {
      */
     void release(Object key, Map<String, Object> args);
 
+    /**
+     * 释放限制并反馈本次调用的结果,供按调用耗时自适应的限制器使用
+     * 默认忽略调用结果使用{@link #release(Object, Map)}
+     *
+     * @param key       键
+     * @param args      参数
+     * @param elapsed   调用耗时,单位纳秒,小于0表示目标方法未被调用
+     * @param throwable 目标方法抛出的异常,正常返回为null
+     */
+    default void release(Object key, Map<String, Object> args, long elapsed, Throwable throwable) {
+        release(key, args);
+    }
+
 }
@@ -50,4 +50,18 @@ public @interface Lock {
 
     String[] argumentInjectors() default {};
 
+    /**
+     * 获取失败时的最长等待时间,单位毫秒,0表示不等待
+     *
+     * @return the long
+     */
+    long timeout() default 0;
+
+    /**
+     * 是否按等待顺序公平获取,仅在资源首次创建时生效
+     *
+     * @return the boolean
+     */
+    boolean fair() default false;
+
 }
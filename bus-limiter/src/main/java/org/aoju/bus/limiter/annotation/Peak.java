@@ -56,4 +56,49 @@ public @interface Peak {
      */
     int max() default 10;
 
+    /**
+     * 获取失败时的最长等待时间,单位毫秒,0表示不等待
+     *
+     * @return the long
+     */
+    long timeout() default 0;
+
+    /**
+     * 是否按等待顺序公平获取,仅在资源首次创建时生效
+     *
+     * @return the boolean
+     */
+    boolean fair() default false;
+
+    /**
+     * 并发限制模式,默认固定上限
+     * 自适应模式下按调用耗时动态调整并发上限,max为上限且不等待(忽略timeout)
+     * 仅本地限制器支持自适应模式,其他限制器忽略此项
+     *
+     * @return the Mode
+     */
+    Mode mode() default Mode.STATIC;
+
+    /**
+     * 并发限制模式
+     */
+    enum Mode {
+        /**
+         * 固定上限：最多max个并发
+         */
+        STATIC,
+        /**
+         * 加性增乘性减：调用失败时上限按比例缩小,并发接近上限且成功时加1
+         */
+        AIMD,
+        /**
+         * Vegas：以最小耗时估算排队数,排队少时增加上限,排队多或失败时减少
+         */
+        VEGAS,
+        /**
+         * 梯度：按长期平均耗时与近期耗时之比缩放上限,并预留少量排队余量
+         */
+        GRADIENT
+    }
+
 }
@@ -66,4 +66,30 @@ public @interface RateLimiter {
      */
     long capacity() default 10;
 
+    /**
+     * 限流算法,默认令牌桶
+     * 仅本地限流器支持全部算法,其他限流器忽略此项
+     *
+     * @return the Algorithm
+     */
+    Algorithm algorithm() default Algorithm.TOKEN_BUCKET;
+
+    /**
+     * 限流算法
+     */
+    enum Algorithm {
+        /**
+         * 令牌桶：按rate匀速补充令牌,最多累积capacity个,允许突发
+         */
+        TOKEN_BUCKET,
+        /**
+         * 滑动窗口日志：记录最近capacity次请求的时间,任意capacity/rate秒内最多capacity次,精确但占用内存与capacity成正比
+         */
+        SLIDING_WINDOW_LOG,
+        /**
+         * 滑动窗口计数：按上一窗口计数的剩余比例加当前窗口计数估算,内存固定,允许少量误差
+         */
+        SLIDING_WINDOW_COUNTER
+    }
+
 }
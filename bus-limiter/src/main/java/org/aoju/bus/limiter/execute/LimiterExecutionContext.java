@@ -35,6 +35,7 @@ import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.expression.AnnotatedElementKey;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
@@ -52,6 +53,11 @@ public class LimiterExecutionContext {
 
     private static final HashMap<String, Object> emptyMap = new HashMap<>();
 
+    /**
+     * 表达式解析结果在此缓存,所有上下文共用
+     */
+    private static final LimiterOperationExpressionEvaluator EVALUATOR = new LimiterOperationExpressionEvaluator();
+
     private LimitedResourceMetadata metadata;
 
     private Object[] args;
@@ -71,13 +77,28 @@ public class LimiterExecutionContext {
     private Throwable throwable;
 
     public LimiterExecutionContext(LimitedResourceMetadata metadata, Object[] args, Object target, BeanFactory beanFactory) {
+        this(metadata, args, target, beanFactory, null, null);
+    }
+
+    /**
+     * 使用预先计算的key或预先解析的key表达式构造
+     *
+     * @param metadata      元数据
+     * @param args          参数
+     * @param target        目标
+     * @param beanFactory   BeanFactory
+     * @param key           已计算的key,为null时按表达式计算
+     * @param keyExpression 已解析的key表达式,为null时按元数据中的key解析
+     */
+    public LimiterExecutionContext(LimitedResourceMetadata metadata, Object[] args, Object target, BeanFactory beanFactory,
+                                   Object key, Expression keyExpression) {
         this.metadata = metadata;
         this.args = extractArgs(metadata.getTargetMethod(), args);
         this.target = target;
         this.injectArgs = generateInjectArgs();
         this.beanFactory = beanFactory;
-        this.evaluator = new LimiterOperationExpressionEvaluator();
-        this.key = generateKey();
+        this.evaluator = EVALUATOR;
+        this.key = key != null ? key : generateKey(keyExpression);
     }
 
     public static HashMap<String, Object> getEmptyMap() {
@@ -88,21 +109,30 @@ public class LimiterExecutionContext {
         return throwable;
     }
 
-    public boolean limit() {
-        boolean ret;
-        try {
-            ret = this.metadata.getLimiter().limit(this.key, this.metadata.getLimiterParameters());
-        } catch (Throwable throwable) {
-            this.throwable = throwable;
-            ret = this.metadata.getErrorHandler().resolve(throwable, this);
-        }
+    /**
+     * 限制器异常时交由{@link org.aoju.bus.limiter.Handler}处理
+     *
+     * @param throwable 异常
+     * @return true 跳过该限制器, false 视为被限制
+     */
+    public boolean resolveError(Throwable throwable) {
+        this.throwable = throwable;
+        return this.metadata.getErrorHandler().resolve(throwable, this);
+    }
 
-        if (!ret) {
-            this.fallbackResult = this.metadata.getFallback().resolve(this.metadata.getTargetMethod(), this.metadata.getTargetClass(), this.args, this.metadata.getLimitedResource(), this.target);
-        }
-        return ret;
+    /**
+     * 被限制时计算降级结果
+     *
+     * @return 降级结果
+     */
+    public Object resolveFallback() {
+        this.fallbackResult = this.metadata.getFallback().resolve(this.metadata.getTargetMethod(), this.metadata.getTargetClass(), this.args, this.metadata.getLimitedResource(), this.target);
+        return this.fallbackResult;
     }
 
+    /**
+     * 释放限制,目标方法未被调用
+     */
     public void release() {
         this.metadata.getLimiter().release(this.key, this.metadata.getLimiterParameters());
     }
@@ -123,11 +153,12 @@ public class LimiterExecutionContext {
         }
     }
 
-    private Object generateKey() {
-        if (StringUtils.hasText(this.metadata.getLimitedResource().getKey())) {
+    private Object generateKey(Expression keyExpression) {
+        if (keyExpression != null || StringUtils.hasText(this.metadata.getLimitedResource().getKey())) {
             EvaluationContext evaluationContext = evaluator.createEvaluationContext(this.metadata.getLimiter(), this.metadata.getTargetMethod(), this.args,
                     this.target, this.metadata.getTargetClass(), this.metadata.getTargetMethod(), injectArgs, beanFactory);
-            Object evalKey = evaluator.key(this.metadata.getLimitedResource().getKey(), new AnnotatedElementKey(this.metadata.getTargetMethod(), this.metadata.getTargetClass()), evaluationContext);
+            Object evalKey = keyExpression != null ? evaluator.key(keyExpression, evaluationContext) :
+                    evaluator.key(this.metadata.getLimitedResource().getKey(), new AnnotatedElementKey(this.metadata.getTargetMethod(), this.metadata.getTargetClass()), evaluationContext);
             Assert.notNull(evalKey, "key值计算为null!");
             return evalKey;
         }
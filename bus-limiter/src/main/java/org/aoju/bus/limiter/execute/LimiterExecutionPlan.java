@@ -0,0 +1,210 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.execute;
+
+import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.utils.StringUtils;
+import org.aoju.bus.limiter.Limiter;
+import org.aoju.bus.limiter.expression.LimiterOperationExpressionEvaluator;
+import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.expression.Expression;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 方法的限制执行计划
+ * 每个(目标类, 方法)构建一次,持有该方法上所有限制的元数据,以及预先计算的key或预先解析的key表达式；
+ * 未配置key表达式且全部限制通过时,执行过程不创建任何对象,
+ * 仅在限制器异常或被限制时才构造{@link LimiterExecutionContext}用于异常处理和降级
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public final class LimiterExecutionPlan {
+
+    private static final Step[] NO_STEPS = new Step[0];
+
+    private final Class<?> targetClass;
+
+    private final Step[] steps;
+
+    /**
+     * 全部为固定key时的key数组,否则为null
+     */
+    private final Object[] staticKeys;
+
+    private final BeanFactory beanFactory;
+
+    private LimiterExecutionPlan(Class<?> targetClass, Step[] steps, BeanFactory beanFactory) {
+        this.targetClass = targetClass;
+        this.steps = steps;
+        this.beanFactory = beanFactory;
+        Object[] keys = new Object[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i].keyExpression != null) {
+                keys = null;
+                break;
+            }
+            keys[i] = steps[i].key;
+        }
+        this.staticKeys = keys;
+    }
+
+    /**
+     * 构建执行计划
+     *
+     * @param targetClass 目标类
+     * @param method      方法
+     * @param metadata    方法上所有限制的元数据,按执行顺序,无限制时为空
+     * @param evaluator   用于预先解析key表达式
+     * @param beanFactory BeanFactory
+     * @return 执行计划
+     */
+    public static LimiterExecutionPlan build(Class<?> targetClass, Method method, List<LimitedResourceMetadata> metadata,
+                                             LimiterOperationExpressionEvaluator evaluator, BeanFactory beanFactory) {
+        if (metadata == null || metadata.isEmpty()) {
+            return new LimiterExecutionPlan(targetClass, NO_STEPS, beanFactory);
+        }
+        Step[] steps = new Step[metadata.size()];
+        String defaultKey = targetClass.getName() + Symbol.SHAPE + method.getName();
+        AnnotatedElementKey methodKey = new AnnotatedElementKey(method, targetClass);
+        for (int i = 0; i < steps.length; i++) {
+            LimitedResourceMetadata item = metadata.get(i);
+            String key = item.getLimitedResource().getKey();
+            steps[i] = StringUtils.hasText(key)
+                    ? new Step(item, null, evaluator.parseKey(key, methodKey))
+                    : new Step(item, defaultKey, null);
+        }
+        return new LimiterExecutionPlan(targetClass, steps, beanFactory);
+    }
+
+    public boolean isEmpty() {
+        return steps.length == 0;
+    }
+
+    public Class<?> getTargetClass() {
+        return targetClass;
+    }
+
+    /**
+     * 依次获取所有限制,全部通过后调用目标方法并在结束后释放；
+     * 任一限制未通过时释放已获取的限制并返回其降级结果
+     *
+     * @param invocation 反射
+     * @param target     目标
+     * @param args       参数
+     * @return the object
+     * @throws Throwable 异常
+     */
+    public Object execute(MethodInvocation invocation, Object target, Object[] args) throws Throwable {
+        final Step[] steps = this.steps;
+        final Object[] keys = staticKeys != null ? staticKeys : new Object[steps.length];
+        // 限制器异常且被Handler跳过的限制,无需释放
+        boolean[] skipped = null;
+        for (int i = 0; i < steps.length; i++) {
+            final Step step = steps[i];
+            LimiterExecutionContext context = null;
+            if (step.keyExpression != null) {
+                context = step.context(args, target, beanFactory);
+                keys[i] = context.getKey();
+            }
+            final Limiter limiter = step.metadata.getLimiter();
+            boolean ret;
+            try {
+                ret = limiter.limit(keys[i], step.metadata.getLimiterParameters());
+            } catch (Throwable e) {
+                if (context == null) {
+                    context = step.context(args, target, beanFactory);
+                }
+                ret = context.resolveError(e);
+                if (ret) {
+                    if (skipped == null) {
+                        skipped = new boolean[steps.length];
+                    }
+                    skipped[i] = true;
+                }
+            }
+            if (!ret) {
+                release(keys, skipped, i, -1, null);
+                if (context == null) {
+                    context = step.context(args, target, beanFactory);
+                }
+                return context.resolveFallback();
+            }
+        }
+        final long start = System.nanoTime();
+        Throwable throwable = null;
+        try {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            throwable = e;
+            throw e;
+        } finally {
+            release(keys, skipped, steps.length, System.nanoTime() - start, throwable);
+        }
+    }
+
+    private void release(Object[] keys, boolean[] skipped, int count, long elapsed, Throwable throwable) {
+        for (int i = 0; i < count; i++) {
+            if (skipped != null && skipped[i]) {
+                continue;
+            }
+            final LimitedResourceMetadata metadata = steps[i].metadata;
+            if (elapsed < 0) {
+                metadata.getLimiter().release(keys[i], metadata.getLimiterParameters());
+            } else {
+                metadata.getLimiter().release(keys[i], metadata.getLimiterParameters(), elapsed, throwable);
+            }
+        }
+    }
+
+    /**
+     * 单个限制
+     */
+    private static final class Step {
+
+        private final LimitedResourceMetadata metadata;
+
+        private final Object key;
+
+        private final Expression keyExpression;
+
+        Step(LimitedResourceMetadata metadata, Object key, Expression keyExpression) {
+            this.metadata = metadata;
+            this.key = key;
+            this.keyExpression = keyExpression;
+        }
+
+        LimiterExecutionContext context(Object[] args, Object target, BeanFactory beanFactory) {
+            return new LimiterExecutionContext(metadata, args, target, beanFactory, key, keyExpression);
+        }
+    }
+
+}
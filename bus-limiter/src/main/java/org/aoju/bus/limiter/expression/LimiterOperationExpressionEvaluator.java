@@ -75,6 +75,21 @@ public class LimiterOperationExpressionEvaluator {
         return getExpression(methodKey, keyExpression).getValue(evalContext);
     }
 
+    /**
+     * 预先解析key表达式,调用时使用{@link #key(Expression, EvaluationContext)}直接求值
+     *
+     * @param keyExpression key表达式
+     * @param methodKey     方法
+     * @return 解析后的表达式
+     */
+    public Expression parseKey(String keyExpression, AnnotatedElementKey methodKey) {
+        return getExpression(methodKey, keyExpression);
+    }
+
+    public Object key(Expression expression, EvaluationContext evalContext) {
+        return expression.getValue(evalContext);
+    }
+
     protected Expression getExpression(AnnotatedElementKey elementKey, String expression) {
 
         ExpressionKey expressionKey = new ExpressionKey(elementKey, expression);
@@ -25,8 +25,8 @@
 package org.aoju.bus.limiter.intercept;
 
 import org.aoju.bus.core.utils.CollUtils;
-import org.aoju.bus.limiter.execute.LimitContextsValueWrapper;
-import org.aoju.bus.limiter.execute.LimiterExecutionContext;
+import org.aoju.bus.limiter.execute.LimiterExecutionPlan;
+import org.aoju.bus.limiter.expression.LimiterOperationExpressionEvaluator;
 import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
 import org.aoju.bus.limiter.metadata.LimitedResourceMetadataCache;
 import org.aoju.bus.limiter.resource.LimitedResource;
@@ -38,14 +38,19 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.MethodClassKey;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 实际的advisor
  * 使用beanfactory的一些基础设施
+ * 每个(目标类, 方法)首次调用时构建{@link LimiterExecutionPlan}并缓存,之后的调用直接执行计划
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -61,6 +66,15 @@ public abstract class LimiterAspectSupport implements BeanFactoryAware, Initiali
 
     private LimitedResourceMetadataCache limitedResourceMetadataCache;
 
+    private final LimiterOperationExpressionEvaluator evaluator = new LimiterOperationExpressionEvaluator();
+
+    /**
+     * 按方法缓存的执行计划,同一方法被多个目标类使用时其余的放入{@link #classPlans}
+     */
+    private final ConcurrentMap<Method, LimiterExecutionPlan> plans = new ConcurrentHashMap<>(1024);
+
+    private final ConcurrentMap<MethodClassKey, LimiterExecutionPlan> classPlans = new ConcurrentHashMap<>();
+
     /**
      * 执行
      *
@@ -73,76 +87,66 @@ public abstract class LimiterAspectSupport implements BeanFactoryAware, Initiali
      */
     protected Object execute(final MethodInvocation invocation, Object target, Method method, Object[] args) throws Throwable {
 
-        if (this.initialized) {
+        if (this.initialized && getLimitedResourceSource() != null) {
             Class<?> targetClass = AopProxyUtils.ultimateTargetClass(target);
-            LimitedResourceSource limitedResourceSource = getLimitedResourceSource();
-            if (limitedResourceSource != null) {
-                Collection<LimitedResource> limitedResources = limitedResourceSource.getLimitedResource(targetClass, method);
-                if (!CollUtils.isEmpty(limitedResources)) {
-                    Collection<LimiterExecutionContext> contexts = getLimiterOperationContexts(limitedResources, method, args, target, targetClass);
-                    LimitContextsValueWrapper limitContextsValueWrapper = limitContexts(contexts);
-                    if (limitContextsValueWrapper.value()) {
-                        try {
-                            return invocation.proceed();
-                        } catch (Throwable e) {
-                            throw e;
-                        } finally {
-                            releaseContexts(contexts);
-                        }
-                    } else {
-                        return limitContextsValueWrapper.getLimiterFailResolveResult();
-                    }
-
-                }
+            LimiterExecutionPlan plan = getExecutionPlan(targetClass, method);
+            if (!plan.isEmpty()) {
+                return plan.execute(invocation, target, args);
             }
         }
         return invocation.proceed();
     }
 
-    @Override
-    public void afterSingletonsInstantiated() {
-        this.initialized = true;
-    }
-
-    @Override
-    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
-        this.beanFactory = beanFactory;
-        this.limitedResourceMetadataCache = new LimitedResourceMetadataCache(beanFactory);
-    }
-
-    protected LimitContextsValueWrapper limitContexts(Collection<LimiterExecutionContext> contexts) {
-        Collection<LimiterExecutionContext> limited = new ArrayList<>();
-        for (LimiterExecutionContext context : contexts) {
-            if (context.limit() && context.getThrowable() == null) {
-                limited.add(context);
-            } else {
-                releaseContexts(limited);
-                Object result = context.getFallbackResult();
-                return new LimitContextsValueWrapper(false, result);
+    /**
+     * 获取方法的执行计划,不存在时构建
+     *
+     * @param targetClass 目标类
+     * @param method      方法
+     * @return 执行计划
+     */
+    protected LimiterExecutionPlan getExecutionPlan(Class<?> targetClass, Method method) {
+        LimiterExecutionPlan plan = plans.get(method);
+        if (plan != null && plan.getTargetClass() == targetClass) {
+            return plan;
+        }
+        if (plan == null) {
+            plan = buildExecutionPlan(targetClass, method);
+            LimiterExecutionPlan existing = plans.putIfAbsent(method, plan);
+            if (existing == null || existing.getTargetClass() == targetClass) {
+                return existing == null ? plan : existing;
             }
-
         }
-        return new LimitContextsValueWrapper(true, null);
+        return classPlans.computeIfAbsent(new MethodClassKey(method, targetClass), key -> buildExecutionPlan(targetClass, method));
     }
 
-    protected void releaseContexts(Collection<LimiterExecutionContext> contexts) {
-        if (contexts != null && !contexts.isEmpty()) {
-            for (LimiterExecutionContext context : contexts) {
-                context.release();
+    /**
+     * 构建执行计划
+     *
+     * @param targetClass 目标类
+     * @param method      方法
+     * @return 执行计划
+     */
+    protected LimiterExecutionPlan buildExecutionPlan(Class<?> targetClass, Method method) {
+        Collection<LimitedResource> limitedResources = getLimitedResourceSource().getLimitedResource(targetClass, method);
+        List<LimitedResourceMetadata> metadata = new ArrayList<>();
+        if (!CollUtils.isEmpty(limitedResources)) {
+            for (LimitedResource limitedResource : limitedResources) {
+                metadata.add(limitedResourceMetadataCache.getLimitedResourceMetadata(limitedResource, method, targetClass));
             }
         }
+        return LimiterExecutionPlan.build(targetClass, method, metadata, evaluator, beanFactory);
     }
 
-
-    protected Collection<LimiterExecutionContext> getLimiterOperationContexts(Collection<LimitedResource> limitedResources, Method method, Object[] args, Object target, Class<?> targetClass) {
-        Collection<LimiterExecutionContext> retVal = new ArrayList<>();
-        for (LimitedResource limitedResource : limitedResources) {
-            LimitedResourceMetadata metadata = limitedResourceMetadataCache.getLimitedResourceMetadata(limitedResource, method, targetClass);
-            retVal.add(new LimiterExecutionContext(metadata, args, target, this.beanFactory));
-        }
-        return retVal;
+    @Override
+    public void afterSingletonsInstantiated() {
+        this.initialized = true;
     }
 
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+        this.limitedResourceMetadataCache = new LimitedResourceMetadataCache(beanFactory);
+    }
 
     public LimitedResourceSource getLimitedResourceSource() {
         return limitedResourceSource;
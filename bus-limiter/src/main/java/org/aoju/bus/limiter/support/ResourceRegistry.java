@@ -0,0 +1,208 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 按键注册的限流资源（信号量、锁等）
+ * 基于分段的{@link ConcurrentHashMap},已存在的资源获取时不产生新对象；
+ * 资源带引用计数,无人占用且空闲超过指定时间后在后续访问中被回收,
+ * 回收与占用通过CAS互斥,保证正在使用的资源不会被替换
+ *
+ * @param <V> 资源类型
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class ResourceRegistry<V> {
+
+    private final ConcurrentMap<Object, Entry<V>> entries;
+
+    private final long idleNanos;
+
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param idle 空闲回收时间
+     * @param unit 时间单位
+     */
+    public ResourceRegistry(long idle, TimeUnit unit) {
+        this(16, 0.75f, 16, idle, unit);
+    }
+
+    /**
+     * @param initialCapacity  初始容量
+     * @param loadFactor       负载因子
+     * @param concurrencyLevel 并发级别
+     * @param idle             空闲回收时间
+     * @param unit             时间单位
+     */
+    public ResourceRegistry(int initialCapacity, float loadFactor, int concurrencyLevel, long idle, TimeUnit unit) {
+        this.entries = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+        this.idleNanos = unit.toNanos(idle);
+        this.nextSweep = new AtomicLong(System.nanoTime() + sweepInterval());
+    }
+
+    /**
+     * 获取资源并增加引用,不存在时创建,使用完毕后需调用{@link #release(Entry)}
+     *
+     * @param key     键
+     * @param factory 资源创建方法
+     * @return 资源
+     */
+    public Entry<V> retain(Object key, Function<Object, V> factory) {
+        final long now = System.nanoTime();
+        sweep(now);
+        for (; ; ) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                entry = entries.computeIfAbsent(key, k -> new Entry<>(factory.apply(k)));
+            }
+            if (entry.retain()) {
+                return entry;
+            }
+            // 该资源刚被回收,重新获取
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * 获取已存在的资源并增加引用,不存在时返回null;
+     * 与{@link #retain(Object, Function)}配合使用,命中时无需构造创建方法
+     *
+     * @param key 键
+     * @return 资源, 不存在返回null
+     */
+    public Entry<V> retainIfPresent(Object key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry != null && entry.retain()) {
+            sweep(System.nanoTime());
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * 获取资源,不增加引用
+     *
+     * @param key 键
+     * @return 资源, 不存在返回null
+     */
+    public Entry<V> get(Object key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 释放引用
+     *
+     * @param entry 资源
+     */
+    public void release(Entry<V> entry) {
+        entry.release(System.nanoTime());
+    }
+
+    /**
+     * 当前资源数
+     *
+     * @return 资源数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private long sweepInterval() {
+        return Math.max(idleNanos, TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * 回收空闲资源,同一时刻只有一个线程执行
+     *
+     * @param now 当前时间
+     */
+    private void sweep(long now) {
+        final long next = nextSweep.get();
+        if (now - next < 0 || !nextSweep.compareAndSet(next, now + sweepInterval())) {
+            return;
+        }
+        entries.forEach((key, entry) -> {
+            if (entry.reclaim(now, idleNanos)) {
+                entries.remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * 注册的资源
+     *
+     * @param <V> 资源类型
+     */
+    public static final class Entry<V> {
+
+        private final V value;
+
+        /**
+         * 占用数,-1表示已回收
+         */
+        private final AtomicInteger users = new AtomicInteger();
+
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(V value) {
+            this.value = value;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        private boolean retain() {
+            for (; ; ) {
+                final int current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (users.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release(long now) {
+            lastAccess = now;
+            users.decrementAndGet();
+        }
+
+        private boolean reclaim(long now, long idleNanos) {
+            return users.get() == 0 && now - lastAccess > idleNanos && users.compareAndSet(0, -1);
+        }
+    }
+
+}
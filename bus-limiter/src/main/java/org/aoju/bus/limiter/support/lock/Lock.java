@@ -41,9 +41,24 @@ public abstract class Lock implements Limiter<org.aoju.bus.limiter.annotation.Lo
 
     public abstract void unlock(Object key);
 
+    /**
+     * 加锁,默认忽略等待时间及公平性使用{@link #lock(Object)}
+     *
+     * @param key     键
+     * @param timeout 最长等待时间,单位毫秒
+     * @param fair    是否公平
+     * @return true/false
+     */
+    public boolean lock(Object key, long timeout, boolean fair) {
+        return lock(key);
+    }
+
     @Override
     public boolean limit(Object key, Map<String, Object> args) {
-        return lock(key);
+        if (args == null || args.get("timeout") == null || args.get("fair") == null) {
+            return lock(key);
+        }
+        return lock(key, (long) args.get("timeout"), (boolean) args.get("fair"));
     }
 
     @Override
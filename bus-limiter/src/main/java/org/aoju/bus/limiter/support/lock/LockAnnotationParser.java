@@ -43,7 +43,9 @@ public class LockAnnotationParser extends AbstractParser<org.aoju.bus.limiter.su
                 getArgumentInjectors(attributes),
                 getFallback(attributes),
                 getErrorHandler(attributes),
-                getLimiter(attributes)
+                getLimiter(attributes),
+                attributes.getNumber("timeout"),
+                attributes.getBoolean("fair")
         );
     }
 
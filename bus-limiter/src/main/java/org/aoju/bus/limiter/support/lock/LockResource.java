@@ -24,6 +24,7 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.lock;
 
+import org.aoju.bus.limiter.annotation.LimiterParameter;
 import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
 import org.aoju.bus.limiter.resource.AbstractLimitedResource;
 import org.springframework.beans.factory.BeanFactory;
@@ -38,8 +39,20 @@ import java.util.Collection;
  */
 public class LockResource extends AbstractLimitedResource {
 
+    @LimiterParameter
+    private long timeout;
+
+    @LimiterParameter
+    private boolean fair;
+
     public LockResource(String key, Collection<String> argumentInjectors, String fallback, String errorHandler, String limiter) {
+        this(key, argumentInjectors, fallback, errorHandler, limiter, 0, false);
+    }
+
+    public LockResource(String key, Collection<String> argumentInjectors, String fallback, String errorHandler, String limiter, long timeout, boolean fair) {
         super(key, argumentInjectors, fallback, errorHandler, limiter);
+        this.timeout = timeout;
+        this.fair = fair;
     }
 
     @Override
@@ -24,14 +24,14 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.lock.jdk;
 
-import org.aoju.bus.logger.Logger;
+import org.aoju.bus.limiter.support.ResourceRegistry;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * 基于ConcurrentHashMap和ReentrantLock实现的一个简单的锁组件
+ * 基于{@link ResourceRegistry}和ReentrantLock实现的一个简单的锁组件
+ * 锁在持有期间不会被回收,解锁后保留复用,空闲超过回收时间后移除
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -39,55 +39,63 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class JdkLock extends org.aoju.bus.limiter.support.lock.Lock {
 
+    private static final long DEFAULT_IDLE_MINUTES = 10;
+
     private String lockName;
 
-    private ConcurrentHashMap<Object, Lock> locks;
+    private ResourceRegistry<ReentrantLock> locks;
 
     public JdkLock(String lockName, int initialCapacity, float loadFactor, int concurrencyLevel) {
         this.lockName = lockName;
-        locks = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+        this.locks = new ResourceRegistry<>(initialCapacity, loadFactor, concurrencyLevel, DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES);
     }
 
     public JdkLock(String lockName) {
         this.lockName = lockName;
-        locks = new ConcurrentHashMap<>();
+        this.locks = new ResourceRegistry<>(DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES);
     }
 
     @Override
     public boolean lock(Object key) {
-        // 对于一个良好的资源 竞态条件的不应该频繁产生
-        Lock lock = new ReentrantLock();
-        Lock oldLock = locks.putIfAbsent(key, lock);
-        if (oldLock != null) {
-            boolean ret = oldLock.tryLock();
-            if (ret) {
-                Logger.info("acquire lock on  {}  success", key);
-            } else {
-                Logger.info("acquire lock on {} fail", key);
-            }
-            return ret;
+        return lock(key, 0, false);
+    }
+
+    @Override
+    public boolean lock(Object key, long timeout, boolean fair) {
+        ResourceRegistry.Entry<ReentrantLock> entry = locks.retainIfPresent(key);
+        if (entry == null) {
+            entry = locks.retain(key, k -> new ReentrantLock(fair));
+        }
+        boolean ret;
+        if (timeout <= 0) {
+            ret = entry.getValue().tryLock();
         } else {
-            boolean ret = lock.tryLock();
-            if (ret) {
-                Logger.info("acquire lock on  {}  success", key);
-            } else {
-                Logger.info("acquire lock on {} fail", key);
+            try {
+                ret = entry.getValue().tryLock(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ret = false;
             }
-            return ret;
         }
+        if (!ret) {
+            locks.release(entry);
+        }
+        return ret;
     }
 
     @Override
     public void unlock(Object key) {
-        Lock lock = locks.remove(key);
-        if (lock == null) {
+        ResourceRegistry.Entry<ReentrantLock> entry = locks.get(key);
+        if (entry == null) {
             throw new RuntimeException("未找到该锁！");
         }
-        lock.unlock();
+        entry.getValue().unlock();
+        locks.release(entry);
     }
 
     @Override
     public String getLimiterName() {
         return lockName;
     }
+
 }
@@ -40,14 +40,79 @@ public abstract class PeakLimiter implements Limiter<Peak> {
 
     public abstract void release(Object key, int max);
 
+    /**
+     * 获取许可,默认忽略等待时间及公平性使用{@link #acquire(Object, int)}
+     *
+     * @param key     键
+     * @param max     最大并发数
+     * @param timeout 最长等待时间,单位毫秒
+     * @param fair    是否公平
+     * @return true/false
+     */
+    public boolean acquire(Object key, int max, long timeout, boolean fair) {
+        return acquire(key, max);
+    }
+
+    /**
+     * 按指定模式获取许可,默认忽略模式使用{@link #acquire(Object, int, long, boolean)}
+     *
+     * @param key     键
+     * @param max     最大并发数
+     * @param timeout 最长等待时间,单位毫秒
+     * @param fair    是否公平
+     * @param mode    并发限制模式
+     * @return true/false
+     */
+    public boolean acquire(Object key, int max, long timeout, boolean fair, Peak.Mode mode) {
+        return acquire(key, max, timeout, fair);
+    }
+
+    /**
+     * 按指定模式释放许可并反馈调用结果,默认忽略模式使用{@link #release(Object, int)}
+     *
+     * @param key     键
+     * @param max     最大并发数
+     * @param mode    并发限制模式
+     * @param elapsed 调用耗时,单位纳秒,小于0表示目标方法未被调用
+     * @param success 是否调用成功
+     */
+    public void release(Object key, int max, Peak.Mode mode, long elapsed, boolean success) {
+        release(key, max);
+    }
+
     @Override
     public boolean limit(Object key, Map<String, Object> args) {
-        return acquire(key, (int) args.get("max"));
+        Object timeout = args.get("timeout");
+        Object fair = args.get("fair");
+        if (timeout == null || fair == null) {
+            return acquire(key, (int) args.get("max"));
+        }
+        Peak.Mode mode = (Peak.Mode) args.get("mode");
+        if (mode == null || mode == Peak.Mode.STATIC) {
+            return acquire(key, (int) args.get("max"), (long) timeout, (boolean) fair);
+        }
+        return acquire(key, (int) args.get("max"), (long) timeout, (boolean) fair, mode);
     }
 
     @Override
     public void release(Object key, Map<String, Object> args) {
-        release(key, (int) args.get("max"));
+        Peak.Mode mode = (Peak.Mode) args.get("mode");
+        if (mode == null || mode == Peak.Mode.STATIC) {
+            release(key, (int) args.get("max"));
+        } else {
+            // 目标方法未被调用,只归还许可,不作为延迟样本
+            release(key, (int) args.get("max"), mode, -1, true);
+        }
+    }
+
+    @Override
+    public void release(Object key, Map<String, Object> args, long elapsed, Throwable throwable) {
+        Peak.Mode mode = (Peak.Mode) args.get("mode");
+        if (mode == null || mode == Peak.Mode.STATIC) {
+            release(key, (int) args.get("max"));
+        } else {
+            release(key, (int) args.get("max"), mode, elapsed, throwable == null);
+        }
     }
 
 }
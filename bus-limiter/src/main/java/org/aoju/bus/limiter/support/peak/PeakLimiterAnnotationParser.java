@@ -45,7 +45,10 @@ public class PeakLimiterAnnotationParser extends AbstractParser<PeakLimiter, Pea
                 getFallback(attributes),
                 getErrorHandler(attributes),
                 getLimiter(attributes),
-                attributes.getNumber("max")
+                attributes.getNumber("max"),
+                attributes.getNumber("timeout"),
+                attributes.getBoolean("fair"),
+                attributes.getEnum("mode")
         );
     }
 
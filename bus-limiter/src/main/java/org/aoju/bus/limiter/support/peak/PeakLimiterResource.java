@@ -25,6 +25,7 @@
 package org.aoju.bus.limiter.support.peak;
 
 import org.aoju.bus.limiter.annotation.LimiterParameter;
+import org.aoju.bus.limiter.annotation.Peak;
 import org.aoju.bus.limiter.metadata.LimitedResourceMetadata;
 import org.aoju.bus.limiter.resource.AbstractLimitedResource;
 import org.springframework.beans.factory.BeanFactory;
@@ -42,9 +43,25 @@ public class PeakLimiterResource extends AbstractLimitedResource {
     @LimiterParameter
     private int max;
 
+    @LimiterParameter
+    private long timeout;
+
+    @LimiterParameter
+    private boolean fair;
+
+    @LimiterParameter
+    private Peak.Mode mode;
+
     public PeakLimiterResource(String key, Collection<String> argumentInjectors, String fallback, String errorHandler, String limiter, int max) {
+        this(key, argumentInjectors, fallback, errorHandler, limiter, max, 0, false, Peak.Mode.STATIC);
+    }
+
+    public PeakLimiterResource(String key, Collection<String> argumentInjectors, String fallback, String errorHandler, String limiter, int max, long timeout, boolean fair, Peak.Mode mode) {
         super(key, argumentInjectors, fallback, errorHandler, limiter);
         this.max = max;
+        this.timeout = timeout;
+        this.fair = fair;
+        this.mode = mode;
     }
 
     @Override
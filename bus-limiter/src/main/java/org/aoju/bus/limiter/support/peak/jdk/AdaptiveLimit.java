@@ -0,0 +1,130 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.peak.jdk;
+
+import org.aoju.bus.limiter.annotation.Peak;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发上限
+ * 获取许可只比较在途数与当前上限,无锁；每次调用结束后以耗时和结果作为样本调整上限,
+ * 上限始终在[1, max]之间,初始为max与{@link #INITIAL_LIMIT}中的较小值
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public abstract class AdaptiveLimit {
+
+    /**
+     * 初始并发上限
+     */
+    protected static final int INITIAL_LIMIT = 20;
+
+    protected final int max;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile int limit;
+
+    protected AdaptiveLimit(int max) {
+        this.max = Math.max(1, max);
+        this.limit = Math.min(this.max, INITIAL_LIMIT);
+    }
+
+    /**
+     * 按模式创建
+     *
+     * @param mode 并发限制模式
+     * @param max  并发上限的最大值
+     * @return 自适应并发上限
+     */
+    public static AdaptiveLimit create(Peak.Mode mode, int max) {
+        switch (mode) {
+            case AIMD:
+                return new AimdLimit(max);
+            case VEGAS:
+                return new VegasLimit(max);
+            case GRADIENT:
+                return new GradientLimit(max);
+            default:
+                throw new IllegalArgumentException("not an adaptive mode: " + mode);
+        }
+    }
+
+    /**
+     * 在途数未达到上限时占用一个许可
+     *
+     * @return true/false
+     */
+    public boolean tryAcquire() {
+        for (; ; ) {
+            final int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放许可并以本次调用作为样本调整上限
+     *
+     * @param elapsed 调用耗时,单位纳秒,小于0表示未调用,不作为样本
+     * @param success 是否调用成功
+     */
+    public void release(long elapsed, boolean success) {
+        final int current = inflight.getAndDecrement();
+        if (elapsed >= 0) {
+            synchronized (this) {
+                final int next = update(limit, current, elapsed, !success);
+                limit = Math.max(1, Math.min(max, next));
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 计算新的上限,调用时已持有本对象锁
+     *
+     * @param limit    当前上限
+     * @param inflight 本次调用结束前的在途数
+     * @param rtt      调用耗时,单位纳秒
+     * @param dropped  是否调用失败
+     * @return 新的上限
+     */
+    protected abstract int update(int limit, int inflight, long rtt, boolean dropped);
+
+}
@@ -0,0 +1,78 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.peak.jdk;
+
+/**
+ * 梯度
+ * 分别以长、短两个指数移动平均跟踪耗时,按 gradient = longRtt / shortRtt(限制在[0.5, 1])缩放上限,
+ * 并加上sqrt(limit)的排队余量；新上限与旧上限平滑混合,调用失败时视为梯度最小
+ * 近期耗时显著低于长期平均时,长期平均加速回落,避免负载下降后上限恢复过慢
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class GradientLimit extends AdaptiveLimit {
+
+    private static final double LONG_WINDOW = 600;
+
+    private static final double SHORT_WINDOW = 10;
+
+    private static final double SMOOTHING = 0.2;
+
+    private double longRtt;
+
+    private double shortRtt;
+
+    private double estimate;
+
+    public GradientLimit(int max) {
+        super(max);
+        this.estimate = getLimit();
+    }
+
+    @Override
+    protected int update(int limit, int inflight, long rtt, boolean dropped) {
+        if (longRtt == 0) {
+            longRtt = shortRtt = rtt;
+            return limit;
+        }
+        longRtt += (rtt - longRtt) / LONG_WINDOW;
+        shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // 在途数较少时耗时不能反映上限是否合适,保持不变
+        if (!dropped && inflight * 2 < estimate) {
+            return limit;
+        }
+        final double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, longRtt / Math.max(1, shortRtt)));
+        final double target = estimate * gradient + Math.sqrt(estimate);
+        estimate = estimate * (1 - SMOOTHING) + target * SMOOTHING;
+        estimate = Math.max(1, Math.min(max, estimate));
+        return (int) estimate;
+    }
+
+}
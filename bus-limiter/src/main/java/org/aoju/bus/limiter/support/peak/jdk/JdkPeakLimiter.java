@@ -24,50 +24,87 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.peak.jdk;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import org.aoju.bus.limiter.annotation.Peak;
+import org.aoju.bus.limiter.support.ResourceRegistry;
 import org.aoju.bus.limiter.support.peak.PeakLimiter;
 
 import java.util.Objects;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 基于{@link Semaphore}实现的本地并发限制
+ * 信号量按键注册在{@link ResourceRegistry}中,获取与释放期间持有引用,空闲后自动回收；
+ * 同一键上最大并发数或模式不同时,按三者的组合另行注册；
+ * 自适应模式使用{@link AdaptiveLimit},按每次调用的耗时与结果调整上限
+ *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
  */
 public class JdkPeakLimiter extends PeakLimiter {
 
+    private static final long DEFAULT_IDLE_MINUTES = 10;
+
     private String limiterName;
 
-    private LoadingCache<CacheKey, Semaphore> cache;
+    private ResourceRegistry<Permits> registry;
 
     public JdkPeakLimiter(String limiterName) {
+        this(limiterName, DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param limiterName 名称
+     * @param idle        空闲回收时间
+     * @param unit        时间单位
+     */
+    public JdkPeakLimiter(String limiterName, long idle, TimeUnit unit) {
         this.limiterName = limiterName;
-        this.cache = CacheBuilder.newBuilder()
-                .concurrencyLevel(16)
-                .initialCapacity(2048)
-                .build(new CacheLoader<CacheKey, Semaphore>() {
-                    @Override
-                    public Semaphore load(CacheKey key) {
-                        return new Semaphore(key.max);
-                    }
-                });
+        this.registry = new ResourceRegistry<>(2048, 0.75f, 16, idle, unit);
     }
 
     @Override
     public boolean acquire(Object key, int max) {
-        CacheKey cacheKey = new CacheKey(key, max);
-        return cache.getIfPresent(cacheKey).tryAcquire();
+        return acquire(key, max, 0, false);
+    }
+
+    @Override
+    public boolean acquire(Object key, int max, long timeout, boolean fair) {
+        return acquire(key, max, timeout, fair, Peak.Mode.STATIC);
+    }
+
+    @Override
+    public boolean acquire(Object key, int max, long timeout, boolean fair, Peak.Mode mode) {
+        ResourceRegistry.Entry<Permits> entry = registry.retainIfPresent(key);
+        if (entry == null) {
+            entry = registry.retain(key, k -> new Permits(max, fair, mode));
+        }
+        if (!entry.getValue().matches(max, mode)) {
+            registry.release(entry);
+            entry = registry.retain(new CacheKey(key, max, mode), k -> new Permits(max, fair, mode));
+        }
+        if (entry.getValue().tryAcquire(timeout)) {
+            return true;
+        }
+        registry.release(entry);
+        return false;
     }
 
     @Override
     public void release(Object key, int max) {
-        CacheKey cacheKey = new CacheKey(key, max);
-        Semaphore semaphore = cache.getIfPresent(cacheKey);
-        if (semaphore != null) {
-            semaphore.release();
+        release(key, max, Peak.Mode.STATIC, -1, true);
+    }
+
+    @Override
+    public void release(Object key, int max, Peak.Mode mode, long elapsed, boolean success) {
+        ResourceRegistry.Entry<Permits> entry = registry.get(key);
+        if (entry != null && !entry.getValue().matches(max, mode)) {
+            entry = registry.get(new CacheKey(key, max, mode));
+        }
+        if (entry != null) {
+            entry.getValue().release(elapsed, success);
+            registry.release(entry);
         }
     }
 
@@ -76,15 +113,72 @@ public class JdkPeakLimiter extends PeakLimiter {
         return limiterName;
     }
 
+    private static class Permits {
+
+        private final int max;
+
+        private final Peak.Mode mode;
+
+        private final Semaphore semaphore;
+
+        private final AdaptiveLimit adaptive;
+
+        Permits(int max, boolean fair, Peak.Mode mode) {
+            this.max = max;
+            this.mode = mode;
+            if (mode == Peak.Mode.STATIC) {
+                this.semaphore = new Semaphore(max, fair);
+                this.adaptive = null;
+            } else {
+                this.semaphore = null;
+                this.adaptive = AdaptiveLimit.create(mode, max);
+            }
+        }
+
+        boolean matches(int max, Peak.Mode mode) {
+            return this.max == max && this.mode == mode;
+        }
+
+        void release(long elapsed, boolean success) {
+            if (adaptive != null) {
+                adaptive.release(elapsed, success);
+            } else {
+                semaphore.release();
+            }
+        }
+
+        boolean tryAcquire(long timeout) {
+            if (adaptive != null) {
+                return adaptive.tryAcquire();
+            }
+            if (timeout <= 0) {
+                return semaphore.tryAcquire();
+            }
+            try {
+                return semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
     public static class CacheKey {
 
         private Object key;
 
         private int max;
 
+        private Peak.Mode mode;
+
         public CacheKey(Object key, int max) {
+            this(key, max, Peak.Mode.STATIC);
+        }
+
+        public CacheKey(Object key, int max, Peak.Mode mode) {
             this.key = key;
             this.max = max;
+            this.mode = mode;
         }
 
         @Override
@@ -93,12 +187,13 @@ public class JdkPeakLimiter extends PeakLimiter {
             if (o == null || getClass() != o.getClass()) return false;
             CacheKey cacheKey = (CacheKey) o;
             return max == cacheKey.max &&
+                    mode == cacheKey.mode &&
                     Objects.equals(key, cacheKey.key);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(key, max);
+            return Objects.hash(key, max, mode);
         }
     }
 
@@ -0,0 +1,80 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.peak.jdk;
+
+/**
+ * TCP Vegas
+ * 以观测到的最小耗时作为无负载耗时,估算排队数 queue = limit * (1 - rttNoLoad / rtt)；
+ * 排队数低于alpha时增加上限,高于beta或调用失败时减少,步长均为log10(limit)；
+ * 每{@link #PROBE_INTERVAL}个样本重置一次无负载耗时,以适应下游性能的长期变化
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class VegasLimit extends AdaptiveLimit {
+
+    private static final int PROBE_INTERVAL = 1000;
+
+    private long rttNoLoad;
+
+    private double estimate;
+
+    private int samples;
+
+    public VegasLimit(int max) {
+        super(max);
+        this.estimate = getLimit();
+    }
+
+    @Override
+    protected int update(int limit, int inflight, long rtt, boolean dropped) {
+        if (++samples >= PROBE_INTERVAL) {
+            samples = 0;
+            rttNoLoad = 0;
+        }
+        if (rttNoLoad == 0 || rtt < rttNoLoad) {
+            rttNoLoad = Math.max(1, rtt);
+            return limit;
+        }
+        final double step = Math.max(1, Math.log10(estimate));
+        if (dropped) {
+            estimate -= step;
+        } else {
+            final double queue = Math.ceil(estimate * (1 - (double) rttNoLoad / rtt));
+            if (queue <= 3 * step) {
+                // 在途数较少时上限不是瓶颈,不再增加
+                if (inflight * 2 >= estimate) {
+                    estimate += step;
+                }
+            } else if (queue >= 6 * step) {
+                estimate -= step;
+            }
+        }
+        estimate = Math.max(1, Math.min(max, estimate));
+        return (int) estimate;
+    }
+
+}
@@ -37,11 +37,28 @@ public abstract class RateLimiter implements Limiter<org.aoju.bus.limiter.annota
 
     public abstract boolean acquire(Object key, double rate, long capacity);
 
+    /**
+     * 按指定算法获取许可,默认忽略算法使用{@link #acquire(Object, double, long)}
+     *
+     * @param key       键
+     * @param rate      频率
+     * @param capacity  容量
+     * @param algorithm 算法
+     * @return true/false
+     */
+    public boolean acquire(Object key, double rate, long capacity, org.aoju.bus.limiter.annotation.RateLimiter.Algorithm algorithm) {
+        return acquire(key, rate, capacity);
+    }
+
     @Override
     public boolean limit(Object key, Map<String, Object> args) {
         double pps = (double) args.get("rate");
         long capacity = (long) args.get("capacity");
-        return acquire(key, pps, capacity);
+        org.aoju.bus.limiter.annotation.RateLimiter.Algorithm algorithm = (org.aoju.bus.limiter.annotation.RateLimiter.Algorithm) args.get("algorithm");
+        if (algorithm == null) {
+            return acquire(key, pps, capacity);
+        }
+        return acquire(key, pps, capacity, algorithm);
     }
 
     @Override
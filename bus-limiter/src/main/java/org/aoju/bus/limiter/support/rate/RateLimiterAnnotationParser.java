@@ -43,7 +43,8 @@ public class RateLimiterAnnotationParser extends AbstractParser<org.aoju.bus.lim
                 getErrorHandler(attributes),
                 getLimiter(attributes),
                 attributes.getNumber("rate"),
-                attributes.getNumber("capacity")
+                attributes.getNumber("capacity"),
+                attributes.getEnum("algorithm")
         );
     }
 
@@ -0,0 +1,103 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+/**
+ * 本地限流对象基类
+ * 参数不变时获取许可全程无锁,仅在rate或capacity变化时加锁重置状态
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public abstract class AbstractRateLimiterObject {
+
+    /**
+     * 访问时间的记录粒度,避免每次获取许可都写入volatile字段
+     */
+    private static final long TOUCH_INTERVAL = 1_000_000_000L;
+
+    private volatile double rate;
+
+    private volatile long capacity;
+
+    /**
+     * 最近一次访问时间,System.nanoTime()
+     */
+    private volatile long lastAccess = System.nanoTime();
+
+    /**
+     * 尝试获取许可
+     *
+     * @param permits  许可数
+     * @param rate     每秒许可数
+     * @param capacity 容量
+     * @return true/false
+     */
+    public boolean tryAcquire(long permits, double rate, long capacity) {
+        if (permits > capacity || Double.isNaN(rate)) return false;
+        if (rate != this.rate || capacity != this.capacity) {
+            reconfigure(rate, capacity);
+        }
+        return doAcquire(permits, System.nanoTime());
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public void touch(long now) {
+        if (now - lastAccess > TOUCH_INTERVAL) {
+            this.lastAccess = now;
+        }
+    }
+
+    private synchronized void reconfigure(double rate, long capacity) {
+        if (rate != this.rate || capacity != this.capacity) {
+            reset(rate, capacity, System.nanoTime());
+            this.capacity = capacity;
+            this.rate = rate;
+        }
+    }
+
+    /**
+     * 按新参数重置状态,此时桶/窗口为满额可用
+     *
+     * @param rate     每秒许可数
+     * @param capacity 容量
+     * @param now      当前时间,System.nanoTime()
+     */
+    protected abstract void reset(double rate, long capacity, long now);
+
+    /**
+     * 无锁获取许可
+     *
+     * @param permits 许可数
+     * @param now     当前时间,System.nanoTime()
+     * @return true/false
+     */
+    protected abstract boolean doAcquire(long permits, long now);
+
+}
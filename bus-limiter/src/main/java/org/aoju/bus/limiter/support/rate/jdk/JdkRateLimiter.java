@@ -24,16 +24,19 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.rate.jdk;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import org.aoju.bus.limiter.annotation.RateLimiter.Algorithm;
 import org.aoju.bus.limiter.support.rate.RateLimiter;
 
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 一个RateLimiter组件
+ * 限流对象按键保存在{@link ConcurrentHashMap}中,常规路径下不产生新对象,
+ * 超过expireAfterAccess未访问的对象在后续请求中被顺带清理
  *
  * @author Kimi Liu
  * @version 5.6.9
@@ -43,8 +46,19 @@ public class JdkRateLimiter extends RateLimiter {
 
     private String rateLimiterName;
 
-    private LoadingCache<CacheKey, RateLimiterObject>
-            cache;
+    /**
+     * 按键保存的限流对象,同一个键通常只对应一组参数
+     */
+    private final ConcurrentMap<Object, Holder> primary = new ConcurrentHashMap<>();
+
+    /**
+     * 同一个键对应多组参数时,其余参数的限流对象
+     */
+    private final ConcurrentMap<CacheKey, Holder> secondary = new ConcurrentHashMap<>();
+
+    private final long expireNanos;
+
+    private final AtomicLong nextSweep;
 
     /**
      * @param rateLimiterName       名称
@@ -53,22 +67,28 @@ public class JdkRateLimiter extends RateLimiter {
      */
     public JdkRateLimiter(String rateLimiterName, long expireAfterAccess, TimeUnit expireAfterAccessUnit) {
         this.rateLimiterName = rateLimiterName;
-        this.cache = CacheBuilder.newBuilder()
-                .expireAfterAccess(expireAfterAccess, expireAfterAccessUnit)
-                .concurrencyLevel(16)
-                .build(new CacheLoader<CacheKey, RateLimiterObject>() {
-                    @Override
-                    public RateLimiterObject load(CacheKey key) {
-                        return new RateLimiterObject();
-                    }
-                });
+        this.expireNanos = expireAfterAccessUnit.toNanos(expireAfterAccess);
+        this.nextSweep = new AtomicLong(System.nanoTime() + Math.max(expireNanos, TimeUnit.SECONDS.toNanos(1)));
     }
 
     @Override
     public boolean acquire(Object key, double rate, long capacity) {
-        CacheKey cacheKey = new CacheKey(key, rate, capacity);
-        RateLimiterObject rateLimiterObject = cache.getUnchecked(cacheKey);
-        return rateLimiterObject.tryAcquire(1, rate, capacity);
+        return acquire(key, rate, capacity, Algorithm.TOKEN_BUCKET);
+    }
+
+    @Override
+    public boolean acquire(Object key, double rate, long capacity, Algorithm algorithm) {
+        final long now = System.nanoTime();
+        Holder holder = primary.get(key);
+        if (holder == null) {
+            holder = primary.computeIfAbsent(key, k -> new Holder(algorithm, rate, capacity));
+        }
+        if (!holder.matches(algorithm, rate, capacity)) {
+            holder = secondary.computeIfAbsent(new CacheKey(key, rate, capacity, algorithm), k -> new Holder(algorithm, rate, capacity));
+        }
+        holder.object.touch(now);
+        sweep(now);
+        return holder.object.tryAcquire(1, rate, capacity);
     }
 
     @Override
@@ -76,16 +96,62 @@ public class JdkRateLimiter extends RateLimiter {
         return rateLimiterName;
     }
 
+    /**
+     * 清理过期的限流对象,同一时刻只有一个线程执行
+     *
+     * @param now 当前时间
+     */
+    private void sweep(long now) {
+        final long next = nextSweep.get();
+        if (now - next < 0 || !nextSweep.compareAndSet(next, now + Math.max(expireNanos, TimeUnit.SECONDS.toNanos(1)))) {
+            return;
+        }
+        primary.values().removeIf(holder -> now - holder.object.getLastAccess() > expireNanos);
+        secondary.values().removeIf(holder -> now - holder.object.getLastAccess() > expireNanos);
+    }
+
+    private static AbstractRateLimiterObject create(Algorithm algorithm) {
+        switch (algorithm) {
+            case SLIDING_WINDOW_LOG:
+                return new SlidingWindowLogObject();
+            case SLIDING_WINDOW_COUNTER:
+                return new SlidingWindowCounterObject();
+            default:
+                return new RateLimiterObject();
+        }
+    }
+
+    private static class Holder {
+
+        private final Algorithm algorithm;
+        private final double rate;
+        private final long capacity;
+        private final AbstractRateLimiterObject object;
+
+        Holder(Algorithm algorithm, double rate, long capacity) {
+            this.algorithm = algorithm;
+            this.rate = rate;
+            this.capacity = capacity;
+            this.object = create(algorithm);
+        }
+
+        boolean matches(Algorithm algorithm, double rate, long capacity) {
+            return this.algorithm == algorithm && this.rate == rate && this.capacity == capacity;
+        }
+    }
+
     private static class CacheKey {
 
         private Object key;
         private double rate;
         private long capacity;
+        private Algorithm algorithm;
 
-        public CacheKey(Object key, double rate, long capacity) {
+        public CacheKey(Object key, double rate, long capacity, Algorithm algorithm) {
             this.key = key;
             this.rate = rate;
             this.capacity = capacity;
+            this.algorithm = algorithm;
         }
 
         @Override
@@ -95,12 +161,13 @@ public class JdkRateLimiter extends RateLimiter {
             CacheKey cacheKey = (CacheKey) o;
             return Double.compare(cacheKey.rate, rate) == 0 &&
                     capacity == cacheKey.capacity &&
+                    algorithm == cacheKey.algorithm &&
                     Objects.equals(key, cacheKey.key);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(key, rate, capacity);
+            return Objects.hash(key, rate, capacity, algorithm);
         }
     }
 
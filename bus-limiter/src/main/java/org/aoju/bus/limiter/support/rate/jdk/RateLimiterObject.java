@@ -24,45 +24,71 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.rate.jdk;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 基于令牌桶实现的速率限制器
+ * 采用GCRA算法,令牌桶状态压缩为一个"理论到达时间",通过CAS更新：
+ * 每个许可将其推后1/rate秒,推后量超出capacity个许可的时长即拒绝
  *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
  */
-public class RateLimiterObject {
+public class RateLimiterObject extends AbstractRateLimiterObject {
 
-    private double rate;
+    /**
+     * 理论到达时间,System.nanoTime()
+     */
+    private final AtomicLong arrival = new AtomicLong();
 
-    private long capacity;
+    /**
+     * 每个许可对应的时长,纳秒
+     */
+    private volatile long interval;
 
-    private long lastSyncTime;
+    /**
+     * 可累积的最大时长,纳秒
+     */
+    private volatile long tolerance;
 
-    private double storedPermits;
+    @Override
+    protected void reset(double rate, long capacity, long now) {
+        // 间隔不超过Long.MAX_VALUE/capacity,保证极小的rate仍可突发capacity个许可;
+        // rate非正时不再补充许可,仅可使用初始的capacity个,与滑动窗口实现保持一致
+        final long maxInterval = Long.MAX_VALUE / Math.max(capacity, 1);
+        long interval = rate > 0 ? (long) Math.min(1_000_000_000d / rate, maxInterval) : maxInterval;
+        this.interval = interval;
+        this.tolerance = multiply(interval, capacity);
+        this.arrival.set(now);
+    }
 
-    public synchronized boolean tryAcquire(long permits, double rate, long capacity) {
-        if (permits > capacity) return false;
-        long now = System.currentTimeMillis();
-        if (rate != this.rate || capacity != this.capacity) {
-            this.rate = rate;
-            this.capacity = capacity;
-            this.storedPermits = capacity - permits;
-            this.lastSyncTime = now;
-            return true;
+    @Override
+    protected boolean doAcquire(long permits, long now) {
+        final long delay = multiply(this.interval, permits);
+        final long tolerance = this.tolerance;
+        for (; ; ) {
+            final long current = arrival.get();
+            final long wait = current - now > 0 ? current - now : 0;
+            // 以差值比较,避免理论到达时间推后时溢出
+            if (delay > tolerance - wait) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, now + wait + delay)) {
+                return true;
+            }
         }
-        resync(now);
-        if (storedPermits >= permits) {
-            storedPermits = storedPermits - permits;
-            return true;
-        }
-        return false;
     }
 
-    private void resync(long nowMicros) {
-        double newPermits = (nowMicros - lastSyncTime) * rate / 1000 + storedPermits;
-        storedPermits = Math.max(newPermits, capacity);
-        this.lastSyncTime = nowMicros;
+    /**
+     * 饱和乘法,溢出时返回Long.MAX_VALUE
+     */
+    private static long multiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
     }
 
 }
@@ -0,0 +1,101 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于滑动窗口计数的速率限制器
+ * 窗口长度为capacity/rate秒,以"上一窗口计数×剩余比例+当前窗口计数"估算滑动窗口内的请求数；
+ * 窗口序号与两个计数压缩在一个long中通过CAS更新：高22位窗口序号,中间21位上一窗口计数,低21位当前窗口计数
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class SlidingWindowCounterObject extends AbstractRateLimiterObject {
+
+    private static final int COUNT_BITS = 21;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long INDEX_MASK = (1L << (64 - COUNT_BITS * 2)) - 1;
+
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * 窗口长度,纳秒
+     */
+    private volatile long window;
+
+    /**
+     * 窗口起点,System.nanoTime()
+     */
+    private volatile long origin;
+
+    /**
+     * 窗口内允许的请求数,不超过计数位可表示的最大值
+     */
+    private volatile long limit;
+
+    @Override
+    protected void reset(double rate, long capacity, long now) {
+        this.window = rate > 0 ? Math.max((long) (capacity * 1_000_000_000d / rate), 1) : Long.MAX_VALUE / 2;
+        this.limit = Math.min(capacity, COUNT_MASK);
+        this.origin = now;
+        this.state.set(0);
+    }
+
+    @Override
+    protected boolean doAcquire(long permits, long now) {
+        final long window = this.window;
+        final long limit = this.limit;
+        final long elapsed = now - origin;
+        final long index = (elapsed / window) & INDEX_MASK;
+        final double remain = 1 - (double) (elapsed % window) / window;
+        for (; ; ) {
+            final long current = state.get();
+            final long distance = (index - (current >>> (COUNT_BITS * 2))) & INDEX_MASK;
+            long previous;
+            long count;
+            if (distance == 0) {
+                previous = (current >>> COUNT_BITS) & COUNT_MASK;
+                count = current & COUNT_MASK;
+            } else if (distance == 1) {
+                previous = current & COUNT_MASK;
+                count = 0;
+            } else {
+                previous = 0;
+                count = 0;
+            }
+            if (previous * remain + count + permits > limit) {
+                return false;
+            }
+            final long next = (index << (COUNT_BITS * 2)) | (previous << COUNT_BITS) | (count + permits);
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.jdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 基于滑动窗口日志的速率限制器
+ * 环形数组记录最近capacity次许可的时间,窗口长度为capacity/rate秒,
+ * 新许可要占用的槽位中的记录都已移出窗口时才允许.
+ * 获取许可时先以CAS写入首个槽位的时间完成占位,写满其余槽位后再推进序号,
+ * 序号推进之前其他线程无法越过该槽位,因此读到的新序号对应的槽位记录总是已发布的
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class SlidingWindowLogObject extends AbstractRateLimiterObject {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile AtomicLongArray log;
+
+    /**
+     * 窗口长度,纳秒
+     */
+    private volatile long window;
+
+    @Override
+    protected void reset(double rate, long capacity, long now) {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("capacity out of range for sliding window log: " + capacity);
+        }
+        final long window = rate > 0 ? (long) (capacity * 1_000_000_000d / rate) : Long.MAX_VALUE / 2;
+        final AtomicLongArray log = new AtomicLongArray((int) capacity);
+        for (int i = 0; i < capacity; i++) {
+            log.set(i, now - window);
+        }
+        this.window = window;
+        this.log = log;
+        this.sequence.set(0);
+    }
+
+    @Override
+    protected boolean doAcquire(long permits, long now) {
+        final AtomicLongArray log = this.log;
+        final long window = this.window;
+        final int size = log.length();
+        for (; ; ) {
+            final long seq = sequence.get();
+            final int first = (int) (seq % size);
+            final long stamp = log.get(first);
+            // 本次占用的最后一个槽位中的记录是其中最新的,它移出窗口则全部移出
+            if (now - stamp < window
+                    || (permits > 1 && now - log.get((int) ((seq + permits - 1) % size)) < window)) {
+                // 首个槽位已被并发线程占位而序号尚未推进时同样拒绝,不会超发
+                return false;
+            }
+            if (log.compareAndSet(first, stamp, now)) {
+                for (long i = seq + 1; i < seq + permits; i++) {
+                    log.set((int) (i % size), now);
+                }
+                sequence.compareAndSet(seq, seq + permits);
+                return true;
+            }
+        }
+    }
+
+}
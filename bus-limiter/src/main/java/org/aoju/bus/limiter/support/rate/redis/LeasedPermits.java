@@ -0,0 +1,204 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.redis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地租约
+ * 从{@link PermitSource}批量租用许可,本地以CAS扣减,用完后再次租用；
+ * 每次租用的数量按上一批许可的消耗速度估算,约为{@link #LEASE_WINDOW_NANOS}内的用量,
+ * 且不超过容量的1/{@link #MAX_SHARE},避免单个节点占用过多许可；
+ * 租用不到许可时,在预计补充一批许可所需的时间内直接拒绝,不再访问{@link PermitSource}
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class LeasedPermits {
+
+    private static final long LEASE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int MAX_SHARE = 4;
+
+    /**
+     * 访问时间的记录粒度,避免每次获取许可都写入volatile字段
+     */
+    private static final long TOUCH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+
+    private final PermitSource source;
+
+    /**
+     * 本地剩余许可
+     */
+    private final AtomicLong available = new AtomicLong();
+
+    private volatile double rate;
+
+    private volatile long capacity;
+
+    /**
+     * 最近一次获取许可的时间,精度为{@link #TOUCH_NANOS}
+     */
+    private volatile long lastAccess = System.nanoTime();
+
+    /**
+     * 已被移除,不再租用许可,仅在持有本对象锁时修改
+     */
+    private volatile boolean retired;
+
+    /**
+     * 租用失败后,在此时间之前不再租用,0表示不限制
+     */
+    private volatile long retryAt;
+
+    /**
+     * 以下字段仅在持有本对象锁时访问
+     */
+    private long leasedAt;
+
+    private long leased;
+
+    private double consumeRate;
+
+    public LeasedPermits(String name, PermitSource source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    /**
+     * 获取一个许可,本地许可用完时从{@link PermitSource}租用
+     *
+     * @param rate     频率
+     * @param capacity 容量
+     * @return true/false
+     */
+    public boolean tryAcquire(double rate, long capacity) {
+        if (rate != this.rate || capacity != this.capacity) {
+            reconfigure(rate, capacity);
+        }
+        final long now = System.nanoTime();
+        if (now - lastAccess > TOUCH_NANOS) {
+            lastAccess = now;
+        }
+        if (take()) {
+            return true;
+        }
+        final long retryAt = this.retryAt;
+        return (retryAt == 0 || now - retryAt >= 0) && refill();
+    }
+
+    /**
+     * 归还本地剩余的许可
+     */
+    public synchronized void giveBack() {
+        final long remaining = available.getAndSet(0);
+        if (remaining > 0) {
+            source.giveBack(name, remaining, rate, capacity);
+        }
+        leased = 0;
+    }
+
+    /**
+     * 空闲超过{@code idleNanos}时归还剩余许可并标记为已移除,之后不再租用许可
+     *
+     * @param idleNanos 空闲时长
+     * @return true:已移除
+     */
+    public synchronized boolean retire(long idleNanos) {
+        if (System.nanoTime() - lastAccess <= idleNanos) {
+            return false;
+        }
+        retired = true;
+        giveBack();
+        return true;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public long getAvailable() {
+        return available.get();
+    }
+
+    private boolean take() {
+        for (; ; ) {
+            final long current = available.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized boolean refill() {
+        if (take()) {
+            return true;
+        }
+        if (retired) {
+            return false;
+        }
+        final long now = System.nanoTime();
+        if (leased > 0) {
+            // 上一批许可已用完,按其消耗时间估算消耗速度
+            final double observed = leased * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(now - leasedAt, 1);
+            consumeRate = consumeRate == 0 ? observed : (consumeRate + observed) / 2;
+        }
+        final long max = Math.max(1, capacity / MAX_SHARE);
+        final long batch = Math.max(1, Math.min(max, (long) Math.ceil(consumeRate * LEASE_WINDOW_NANOS / TimeUnit.SECONDS.toNanos(1))));
+        final long granted = source.lease(name, batch, rate, capacity);
+        leasedAt = now;
+        leased = granted;
+        if (granted <= 0) {
+            final long retry = now + Math.min(LEASE_WINDOW_NANOS, (long) (batch * TimeUnit.SECONDS.toNanos(1) / rate));
+            retryAt = retry == 0 ? 1 : retry;
+            return false;
+        }
+        retryAt = 0;
+        available.addAndGet(granted - 1);
+        return true;
+    }
+
+    private synchronized void reconfigure(double rate, long capacity) {
+        if (rate != this.rate || capacity != this.capacity) {
+            giveBack();
+            this.capacity = capacity;
+            this.rate = rate;
+            this.consumeRate = 0;
+            this.retryAt = 0;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.redis;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的{@link PermitSource},与Redis脚本的令牌桶语义一致
+ * 用于没有Redis的环境中替代Redis,例如测试及本地开发
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public class MemoryPermitSource implements PermitSource {
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public long lease(String name, long permits, double rate, long capacity) {
+        return buckets.computeIfAbsent(name, k -> new Bucket()).lease(permits, rate, capacity, System.nanoTime());
+    }
+
+    @Override
+    public void giveBack(String name, long permits, double rate, long capacity) {
+        Bucket bucket = buckets.get(name);
+        if (bucket != null) {
+            bucket.giveBack(permits, rate, capacity);
+        }
+    }
+
+    private static class Bucket {
+
+        private double rate;
+
+        private long capacity;
+
+        private double permits;
+
+        private long updated;
+
+        synchronized long lease(long acquire, double rate, long capacity, long now) {
+            if (rate != this.rate || capacity != this.capacity) {
+                this.rate = rate;
+                this.capacity = capacity;
+                this.permits = capacity;
+            } else {
+                this.permits = Math.min(capacity, permits + (now - updated) * rate / TimeUnit.SECONDS.toNanos(1));
+            }
+            this.updated = now;
+            long granted = Math.min(acquire, (long) permits);
+            permits -= granted;
+            return Math.max(granted, 0);
+        }
+
+        synchronized void giveBack(long released, double rate, long capacity) {
+            if (rate == this.rate && capacity == this.capacity) {
+                permits = Math.min(capacity, permits + released);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License                                                               *
+ *                                                                               *
+ * Copyright (c) 2015-2020 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ ********************************************************************************/
+package org.aoju.bus.limiter.support.rate.redis;
+
+/**
+ * 集群共享的令牌桶
+ * 本地租约从中批量租用许可,未使用的许可归还
+ *
+ * @author Kimi Liu
+ * @version 5.6.9
+ * @since JDK 1.8+
+ */
+public interface PermitSource {
+
+    /**
+     * 租用许可,可用许可不足时按实际可用数租用
+     *
+     * @param name     令牌桶名称
+     * @param permits  期望租用的许可数
+     * @param rate     频率
+     * @param capacity 容量
+     * @return 实际租用的许可数, 0表示没有可用许可
+     */
+    long lease(String name, long permits, double rate, long capacity);
+
+    /**
+     * 归还未使用的许可,超出容量的部分丢弃
+     *
+     * @param name     令牌桶名称
+     * @param permits  归还的许可数
+     * @param rate     频率
+     * @param capacity 容量
+     */
+    void giveBack(String name, long permits, double rate, long capacity);
+
+}
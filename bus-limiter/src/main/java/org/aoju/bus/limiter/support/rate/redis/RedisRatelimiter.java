@@ -24,35 +24,118 @@
  ********************************************************************************/
 package org.aoju.bus.limiter.support.rate.redis;
 
+import org.aoju.bus.core.thread.NamedThreadFactory;
 import org.aoju.bus.limiter.support.rate.RateLimiter;
 import org.aoju.bus.logger.Logger;
 import org.redisson.Redisson;
 import org.redisson.config.Config;
 
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 /**
+ * 基于Redis的分布式限流
+ * 默认每次获取许可都执行一次Redis脚本；租约模式下每个节点从Redis批量租用许可,
+ * 由本地{@link LeasedPermits}扣减,空闲的租约由所有实例共享的调度线程定时归还,大幅减少Redis访问次数,
+ * 代价是各节点间的许可分配存在短暂不均；不再使用时调用{@link #close()}归还全部租约
+ *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
  */
-public class RedisRatelimiter extends RateLimiter {
+public class RedisRatelimiter extends RateLimiter implements Closeable {
+
+    /**
+     * 所有租约模式实例共享的调度线程
+     */
+    private static final ScheduledExecutorService LEASE_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("limiter-lease-", true));
+
+    /**
+     * 租约超过此时间未使用时归还剩余许可
+     */
+    private static final long GIVE_BACK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 租约超过此时间未使用时移除
+     */
+    private static final long EXPIRE_NANOS = TimeUnit.MINUTES.toNanos(10);
 
     private String limiterName;
 
     private RateLimiterRedission ratelimiterRedission;
 
+    private PermitSource permitSource;
+
+    private ConcurrentMap<Object, LeasedPermits> leases;
+
+    private ScheduledFuture<?> giveBackTask;
+
     /**
      * @param limiterName 名称
      * @param config      配置
      */
     public RedisRatelimiter(String limiterName, Config config) {
+        this(limiterName, config, false);
+    }
+
+    /**
+     * @param limiterName 名称
+     * @param config      配置
+     * @param leasing     是否使用租约模式
+     */
+    public RedisRatelimiter(String limiterName, Config config, boolean leasing) {
         this.limiterName = limiterName;
         this.ratelimiterRedission = new RateLimiterRedission(config);
+        if (leasing) {
+            startLeasing(new PermitSource() {
+                @Override
+                public long lease(String name, long permits, double rate, long capacity) {
+                    return ratelimiterRedission.getRedisRatelimiterObject(name).lease(permits, rate, capacity);
+                }
+
+                @Override
+                public void giveBack(String name, long permits, double rate, long capacity) {
+                    ratelimiterRedission.getRedisRatelimiterObject(name).giveBack(permits, rate, capacity);
+                }
+            });
+        }
         Logger.info("RedisRateLimiter named {} start success!", limiterName);
 
     }
 
+    /**
+     * 使用指定的{@link PermitSource}以租约模式工作,如{@link MemoryPermitSource}
+     *
+     * @param limiterName  名称
+     * @param permitSource 许可来源
+     */
+    public RedisRatelimiter(String limiterName, PermitSource permitSource) {
+        this.limiterName = limiterName;
+        startLeasing(permitSource);
+    }
+
     @Override
     public boolean acquire(Object key, double rate, long capacity) {
+        if (leases != null) {
+            for (; ; ) {
+                LeasedPermits permits = leases.get(key);
+                if (permits == null) {
+                    permits = leases.computeIfAbsent(key, k -> new LeasedPermits(k.toString(), permitSource));
+                }
+                final boolean acquired = permits.tryAcquire(rate, capacity);
+                if (acquired || !permits.isRetired()) {
+                    return acquired;
+                }
+                // 租约在获取期间被移除,改用新的租约
+                leases.remove(key, permits);
+            }
+        }
         RedisRatelimiterObject rateLimiterObject = ratelimiterRedission.getRedisRatelimiterObject(key.toString());
         return rateLimiterObject.tryAcquire(1, rate, capacity);
     }
@@ -62,6 +145,53 @@ public class RedisRatelimiter extends RateLimiter {
         return limiterName;
     }
 
+    /**
+     * 停止定时任务并归还所有租约的剩余许可,自行创建的Redisson客户端随之关闭
+     */
+    @Override
+    public void close() {
+        if (leases != null) {
+            giveBackTask.cancel(false);
+            leases.forEach((key, permits) -> {
+                try {
+                    permits.retire(-1);
+                } catch (Throwable e) {
+                    Logger.error("give back permits of {} failed", key, e);
+                }
+            });
+            leases.clear();
+        }
+        if (ratelimiterRedission != null) {
+            ratelimiterRedission.shutdown();
+        }
+    }
+
+    private void startLeasing(PermitSource permitSource) {
+        this.permitSource = permitSource;
+        this.leases = new ConcurrentHashMap<>();
+        this.giveBackTask = LEASE_EXECUTOR.scheduleWithFixedDelay(this::giveBackIdle, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 归还空闲租约的剩余许可,移除长时间未使用的租约
+     */
+    private void giveBackIdle() {
+        final long now = System.nanoTime();
+        leases.forEach((key, permits) -> {
+            final long idle = now - permits.getLastAccess();
+            try {
+                if (idle > GIVE_BACK_NANOS && permits.getAvailable() > 0) {
+                    permits.giveBack();
+                }
+                if (idle > EXPIRE_NANOS && permits.retire(EXPIRE_NANOS)) {
+                    leases.remove(key, permits);
+                }
+            } catch (Throwable e) {
+                Logger.error("give back permits of {} failed", key, e);
+            }
+        });
+    }
+
 
     /**
      * 继承自Redisson 实现自定义api
@@ -57,6 +57,61 @@ public class RedisRatelimiterObject extends RedissonObject {
         return get(tryAcquireAsync(RedisCommands.EVAL_LONG, permits, rate, capacity)) != -1;
     }
 
+    /**
+     * 批量租用许可,可用许可不足时按实际可用数租用
+     *
+     * @param permits  期望租用的许可数
+     * @param rate     频率
+     * @param capacity 容量
+     * @return 实际租用的许可数
+     */
+    public long lease(long permits, double rate, long capacity) {
+        String hash = Objects.hash(rate, capacity) + Normal.EMPTY;
+        Long granted = get(commandExecutor.evalWriteAsync(getName(), LongCodec.INSTANCE, RedisCommands.EVAL_LONG,
+                "local capacity = tonumber(ARGV[1])\n" +
+                        "local rate = tonumber(ARGV[2])\n" +
+                        "local acq = tonumber(ARGV[3])\n" +
+                        "local permit = capacity\n" +
+                        "local now = 3153600000000000\n" +
+                        "if (redis.call('exists',KEYS[1]) == 0 or redis.call('hget',KEYS[1],'hash') ~= ARGV[4]) then\n" +
+                        "    redis.call('hset', KEYS[1], 'capacity ', capacity)\n" +
+                        "    redis.call('hset', KEYS[1], 'rate', rate)\n" +
+                        "    redis.call('hset', KEYS[1], 'hash', ARGV[4])\n" +
+                        "    redis.call('expire', KEYS[1],3153600000000)\n" +
+                        "else\n" +
+                        "    now = redis.call('pttl', KEYS[1])\n" +
+                        "    local pttl = tonumber(redis.call('hget', KEYS[1], 'pttl'))\n" +
+                        "    permit = math.min(capacity, tonumber(redis.call('hget', KEYS[1], 'permit')) + ((pttl-now)/1000*rate))\n" +
+                        "end\n" +
+                        "local granted = math.max(0, math.min(acq, math.floor(permit)))\n" +
+                        "redis.call('hset', KEYS[1], 'permit', permit-granted)\n" +
+                        "redis.call('hset', KEYS[1], 'pttl', now)\n" +
+                        "return granted ",
+                Arrays.asList(getName()),
+                capacity, rate, permits, hash));
+        return granted == null ? 0 : granted;
+    }
+
+    /**
+     * 归还未使用的许可,参数已变化时丢弃
+     *
+     * @param permits  归还的许可数
+     * @param rate     频率
+     * @param capacity 容量
+     */
+    public void giveBack(long permits, double rate, long capacity) {
+        String hash = Objects.hash(rate, capacity) + Normal.EMPTY;
+        get(commandExecutor.evalWriteAsync(getName(), LongCodec.INSTANCE, RedisCommands.EVAL_LONG,
+                "if (redis.call('hget',KEYS[1],'hash') ~= ARGV[3]) then\n" +
+                        "    return 0\n" +
+                        "end\n" +
+                        "local permit = tonumber(redis.call('hget', KEYS[1], 'permit'))\n" +
+                        "redis.call('hset', KEYS[1], 'permit', math.min(tonumber(ARGV[1]), permit + tonumber(ARGV[2])))\n" +
+                        "return 1 ",
+                Arrays.asList(getName()),
+                capacity, permits, hash));
+    }
+
     private <T> RFuture<T> tryAcquireAsync(RedisCommand<T> command, long permits, double rate, long capacity) {
         String hash = Objects.hash(rate, capacity) + Normal.EMPTY;
         return commandExecutor.evalWriteAsync(getName(), LongCodec.INSTANCE, command,
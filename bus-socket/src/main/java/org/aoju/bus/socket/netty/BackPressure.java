@@ -22,30 +22,31 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
  * THE SOFTWARE.                                                                 *
  ********************************************************************************/
-package org.aoju.bus.limiter.execute;
+package org.aoju.bus.socket.netty;
 
 /**
+ * 慢消费者处理策略
+ * <p>
+ * 当客户端通道不可写(输出缓冲超过高水位)时,对新推送消息的处理方式
+ * </p>
+ *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
  */
-public class LimitContextsValueWrapper {
+public enum BackPressure {
 
-    private boolean value;
-
-    private Object limiterFailResolveResult;
-
-    public LimitContextsValueWrapper(boolean value, Object limiterFailResolveResult) {
-        this.value = value;
-        this.limiterFailResolveResult = limiterFailResolveResult;
-    }
-
-    public boolean value() {
-        return value;
-    }
-
-    public Object getLimiterFailResolveResult() {
-        return limiterFailResolveResult;
-    }
+    /**
+     * 丢弃新消息
+     */
+    DROP,
+    /**
+     * 暂存至客户端待发送队列,通道恢复可写后补发,队列满时丢弃最早的消息
+     */
+    BUFFER,
+    /**
+     * 关闭该客户端连接
+     */
+    CLOSE
 
 }
@@ -50,23 +50,16 @@ public class CancelCommand implements Runnable {
     }
 
     private void cancel(String data) {
-        ClientGroup group = ClientService.getClientGroup();
-        for (ClientMap map : group.values()) {
-            if (map.containsKey(request.getContext().channel().id())) {
-                SocketClient client = map.get(request.getContext().channel().id());
-                client.cancel(data);
-            }
+        SocketClient client = ClientService.getClient(request.getContext());
+        if (client != null) {
+            client.cancel(data);
         }
     }
 
     private void cancel(String topic, String data) {
-        ClientGroup group = ClientService.getClientGroup();
-        if (group.containsKey(topic)) {
-            ClientMap map = group.get(topic);
-            if (map.containsKey(request.getContext().channel().id())) {
-                SocketClient client = map.get(request.getContext().channel().id());
-                client.cancel(topic, data);
-            }
+        SocketClient client = ClientService.getClient(request.getContext());
+        if (client != null) {
+            client.cancel(topic, data);
         }
     }
 
@@ -24,14 +24,111 @@
  ********************************************************************************/
 package org.aoju.bus.socket.netty;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * 主题订阅索引 topic:id,client
+ * <p>
+ * 与{@link SocketClient}中记录的主题构成双向索引,订阅/取消订阅在该主题的
+ * {@link #compute}中同时更新两个方向,订阅者为空的主题会被移除.
+ * 以{@link #WILDCARD}结尾的主题为前缀订阅,例如"market.*"匹配所有以"market."开头的主题
+ * </p>
+ *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
  */
 public class ClientGroup extends ConcurrentHashMap<String, ClientMap> {
-    //topic:id,client
+
+    public static final String WILDCARD = "*";
+
+    /**
+     * 前缀订阅的前缀长度:该长度的前缀订阅主题数量
+     * 发布时只需按已存在的前缀长度查找,无需遍历全部前缀订阅
+     */
+    private final ConcurrentHashMap<Integer, Integer> prefixes = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅主题,两个方向的索引在同一次{@link #compute}中更新
+     *
+     * @param topic  主题,以*结尾时为前缀订阅
+     * @param client 客户端
+     */
+    public void subscribe(String topic, SocketClient client) {
+        compute(topic, (key, map) -> {
+            if (client.isRemoved()) {
+                return map;
+            }
+            if (map == null) {
+                map = new ClientMap(2);
+                if (isPattern(key)) {
+                    prefixes.merge(key.length() - 1, 1, Integer::sum);
+                }
+            }
+            map.put(client.id(), client);
+            client.subscribe(key);
+            return map;
+        });
+        // 订阅期间客户端被移除,撤销本次订阅
+        if (client.isRemoved()) {
+            unsubscribe(topic, client);
+        }
+    }
+
+    /**
+     * 取消订阅,两个方向的索引在同一次{@link #computeIfPresent}中更新
+     *
+     * @param topic  主题
+     * @param client 客户端
+     * @return true:客户端此前订阅了该主题
+     */
+    public boolean unsubscribe(String topic, SocketClient client) {
+        boolean[] subscribed = new boolean[1];
+        computeIfPresent(topic, (key, map) -> {
+            subscribed[0] = client.unsubscribe(key);
+            map.remove(client.id());
+            if (!map.isEmpty()) {
+                return map;
+            }
+            if (isPattern(key)) {
+                prefixes.computeIfPresent(key.length() - 1, (length, count) -> count == 1 ? null : count - 1);
+            }
+            return null;
+        });
+        return subscribed[0];
+    }
+
+    /**
+     * 获取与主题匹配的全部订阅者集合,包含精确订阅及前缀订阅
+     *
+     * @param topic 发布的主题
+     * @return 订阅者集合
+     */
+    public List<ClientMap> match(String topic) {
+        ClientMap exact = get(topic);
+        if (prefixes.isEmpty()) {
+            return exact == null ? Collections.emptyList() : Collections.singletonList(exact);
+        }
+        List<ClientMap> result = new ArrayList<>(2);
+        if (exact != null) {
+            result.add(exact);
+        }
+        for (Integer length : prefixes.keySet()) {
+            if (length <= topic.length()) {
+                ClientMap map = get(topic.substring(0, length) + WILDCARD);
+                if (map != null && map != exact) {
+                    result.add(map);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isPattern(String topic) {
+        return topic.endsWith(WILDCARD);
+    }
 
 }
@@ -35,4 +35,15 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class ClientMap extends ConcurrentHashMap<ChannelId, SocketClient> {
 
+    public ClientMap() {
+        super();
+    }
+
+    /**
+     * @param initialCapacity 初始容量,主题订阅者集合使用较小容量以节省内存
+     */
+    public ClientMap(int initialCapacity) {
+        super(initialCapacity);
+    }
+
 }
@@ -41,7 +41,7 @@ public class ClientService {
     }
 
     public static void inactive(ChannelHandlerContext context) {
-        activeClients.remove(context.channel().id());
+        remove(context);
     }
 
     public static SocketClient getClient(ChannelHandlerContext context) {
@@ -53,33 +53,22 @@ public class ClientService {
     }
 
     public static SocketClient subscribe(ChannelHandlerContext context, String topic) {
-        if (group.containsKey(topic)) {
-            ClientMap map = group.get(topic);
-            return subscribe(context, topic, map);
-        } else {
-            ClientMap map = new ClientMap();
-            group.put(topic, map);
-            return subscribe(context, topic, map);
-        }
-    }
-
-    private static SocketClient subscribe(ChannelHandlerContext context, String topic, ClientMap map) {
-        if (map.containsKey(context.channel().id())) {
-            SocketClient client = map.get(context.channel().id());
-            client.subscribe(topic);
-            return client;
-        } else {
-            SocketClient client = getClient(context);
-            client.subscribe(topic);
-            map.put(context.channel().id(), client);
-            return client;
+        SocketClient client = getClient(context);
+        if (client != null) {
+            group.subscribe(topic, client);
         }
+        return client;
     }
 
+    /**
+     * 移除客户端,仅遍历该客户端自身订阅的主题
+     */
     public static void remove(ChannelHandlerContext context) {
-        inactive(context);
-        for (ClientMap map : group.values()) {
-            map.remove(context.channel().id());
+        SocketClient client = activeClients.remove(context.channel().id());
+        if (client != null) {
+            for (String topic : client.remove()) {
+                group.unsubscribe(topic, client);
+            }
         }
     }
 
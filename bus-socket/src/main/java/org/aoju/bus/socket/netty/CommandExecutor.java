@@ -25,8 +25,10 @@
 package org.aoju.bus.socket.netty;
 
 import org.aoju.bus.core.thread.ThreadBuilder;
+import org.aoju.bus.logger.Logger;
 
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -37,10 +39,24 @@ import java.util.concurrent.TimeUnit;
  */
 public class CommandExecutor {
 
-    private static ThreadPoolExecutor executor = new ThreadPoolExecutor(8, 8, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new ThreadBuilder().setNamePrefix("websocket-command-%d").build());
+    private static ThreadPoolExecutor executor = new ThreadPoolExecutor(8, 8, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(NettyConsts.COMMAND_QUEUE_SIZE),
+            new ThreadBuilder().setNamePrefix("websocket-command-%d").build());
 
-    public static void execute(Runnable command) {
-        executor.execute(command);
+    /**
+     * 提交命令,队列已满时直接拒绝,不占用提交线程(通常为EventLoop)执行
+     *
+     * @param command 命令
+     * @return true 已提交, false 队列已满被拒绝
+     */
+    public static boolean execute(Runnable command) {
+        try {
+            executor.execute(command);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Logger.warn("WebSocket command queue is full, reject {}", command.getClass().getSimpleName());
+            return false;
+        }
     }
 
 }
@@ -45,12 +45,9 @@ public class HeartbeatCommand implements Runnable {
     }
 
     private void receiveHeartbeat() {
-        ClientGroup group = ClientService.getClientGroup();
-        for (ClientMap map : group.values()) {
-            if (map.containsKey(request.getContext().channel().id())) {
-                SocketClient client = map.get(request.getContext().channel().id());
-                client.receiveHeartbeat();
-            }
+        SocketClient client = ClientService.getClient(request.getContext());
+        if (client != null) {
+            client.receiveHeartbeat();
         }
     }
 
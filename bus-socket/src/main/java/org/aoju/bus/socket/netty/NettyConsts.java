@@ -41,6 +41,7 @@ public class NettyConsts {
     public static final String HEARTBEAT = "heartbeat";
 
     public static final String HEARTBEAT_TEXT = "{\"e\":\"heartbeat\",\"d\":\"ping\"}";
+    public static final String BUSY_TEXT = "{\"e\":\"error\",\"d\":\"busy\"}";
 
     public static final String TOPIC_ALL = "all";
 
@@ -48,4 +49,17 @@ public class NettyConsts {
     public static int WORKER_GROUP_THREADS = 0;
     public static String END_POINT = "/ws";
 
+    /**
+     * 命令队列容量,队列已满时拒绝新命令并向请求方回复{@link #BUSY_TEXT}
+     */
+    public static int COMMAND_QUEUE_SIZE = 65536;
+    /**
+     * 通道不可写时的推送处理策略
+     */
+    public static BackPressure BACK_PRESSURE = BackPressure.BUFFER;
+    /**
+     * BUFFER策略下每个客户端最多暂存的消息数
+     */
+    public static int PENDING_FRAMES = 1024;
+
 }
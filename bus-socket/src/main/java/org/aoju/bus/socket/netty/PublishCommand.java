@@ -24,7 +24,27 @@
  ********************************************************************************/
 package org.aoju.bus.socket.netty;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelId;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.aoju.bus.logger.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
+ * 主题消息推送
+ * <p>
+ * 消息只编码一次,各订阅者共享同一份引用计数的消息帧;
+ * 按EventLoop分组后每组提交一个任务,组内逐个写入后统一flush
+ * </p>
+ *
  * @author Kimi Liu
  * @version 5.6.9
  * @since JDK 1.8+
@@ -41,12 +61,52 @@ public class PublishCommand implements Runnable {
 
     @Override
     public void run() {
-        ClientGroup group = ClientService.getClientGroup();
-        if (group.containsKey(topic)) {
-            ClientMap map = group.get(topic);
+        List<ClientMap> maps = ClientService.getClientGroup().match(topic);
+        if (maps.isEmpty()) {
+            return;
+        }
+        // 同时命中精确订阅与前缀订阅的客户端只推送一次
+        Set<ChannelId> seen = maps.size() > 1 ? new HashSet<>() : null;
+        Map<EventLoop, List<SocketClient>> loops = new HashMap<>();
+        for (ClientMap map : maps) {
             for (SocketClient client : map.values()) {
-                client.send(topic, message);
+                if (seen == null || seen.add(client.id())) {
+                    loops.computeIfAbsent(client.eventLoop(), key -> new ArrayList<>()).add(client);
+                }
+            }
+        }
+        if (loops.isEmpty()) {
+            return;
+        }
+        TextWebSocketFrame frame = new TextWebSocketFrame(ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, message));
+        try {
+            for (Map.Entry<EventLoop, List<SocketClient>> entry : loops.entrySet()) {
+                List<SocketClient> clients = entry.getValue();
+                frame.retain(clients.size());
+                try {
+                    entry.getKey().execute(() -> publish(frame, clients));
+                } catch (Exception e) {
+                    frame.release(clients.size());
+                    Logger.warn("WebSocket publish rejected: {}", e.getMessage());
+                }
             }
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * 在EventLoop中执行,每个订阅者获得一份共享内容的duplicate
+     */
+    private static void publish(TextWebSocketFrame frame, List<SocketClient> clients) {
+        List<SocketClient> written = new ArrayList<>(clients.size());
+        for (SocketClient client : clients) {
+            if (client.write(frame.duplicate())) {
+                written.add(client);
+            }
+        }
+        for (SocketClient client : written) {
+            client.flush();
         }
     }
 
@@ -24,6 +24,8 @@
  ********************************************************************************/
 package org.aoju.bus.socket.netty;
 
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+
 /**
  * @author Kimi Liu
  * @version 5.6.9
@@ -33,14 +35,18 @@ public class RequestHandler {
 
     public static void execute(SocketRequest request) {
         if (request.getEvent() != null) {
+            Runnable command = null;
             if (NettyConsts.SUBSCRIBE.equals(request.getEvent())) {
-                CommandExecutor.execute(new SubscribeCommand(request));
+                command = new SubscribeCommand(request);
             } else if (NettyConsts.HEARTBEAT.equals(request.getEvent())) {
-                CommandExecutor.execute(new HeartbeatCommand(request));
+                command = new HeartbeatCommand(request);
             } else if (NettyConsts.CANCEL.equals(request.getEvent())) {
-                CommandExecutor.execute(new CancelCommand(request));
+                command = new CancelCommand(request);
             } else if (NettyConsts.MESSAGE.equals(request.getEvent())) {
-                CommandExecutor.execute(new MessageCommand(request));
+                command = new MessageCommand(request);
+            }
+            if (command != null && !CommandExecutor.execute(command)) {
+                request.getContext().writeAndFlush(new TextWebSocketFrame(NettyConsts.BUSY_TEXT));
             }
         }
     }
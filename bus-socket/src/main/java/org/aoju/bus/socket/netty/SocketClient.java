@@ -25,10 +25,14 @@
 package org.aoju.bus.socket.netty;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelId;
+import io.netty.channel.EventLoop;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Kimi Liu
@@ -38,9 +42,20 @@ import java.util.List;
 public class SocketClient {
 
     private Channel channel;
-    private List<String> topics = new ArrayList<>();
+    /**
+     * 当前客户端订阅的主题,与{@link ClientGroup}构成双向索引
+     */
+    private Set<String> topics = ConcurrentHashMap.newKeySet(4);
+    /**
+     * 客户端已移除,不再接受新的订阅
+     */
+    private volatile boolean removed;
     private Long lastUpdateTime = System.currentTimeMillis();
     private Long inactiveTime = 60000L;
+    /**
+     * 通道不可写期间暂存的消息,仅在channel所属的EventLoop中访问
+     */
+    private ArrayDeque<TextWebSocketFrame> pending;
 
     public SocketClient(Channel channel) {
         this.channel = channel;
@@ -58,6 +73,89 @@ public class SocketClient {
         lastUpdateTime = System.currentTimeMillis();
     }
 
+    public ChannelId id() {
+        return channel.id();
+    }
+
+    public Set<String> getTopics() {
+        return Collections.unmodifiableSet(topics);
+    }
+
+    public boolean isSubscribed(String topic) {
+        return this.topics.contains(topic);
+    }
+
+    public EventLoop eventLoop() {
+        return channel.eventLoop();
+    }
+
+    /**
+     * 写入共享消息帧但不刷新,必须在{@link #eventLoop()}中调用
+     * <p>通道不可写时按{@link NettyConsts#BACK_PRESSURE}处理</p>
+     *
+     * @param frame 消息帧,调用后所有权转移给当前方法
+     * @return true:已写入通道,需要flush
+     */
+    boolean write(TextWebSocketFrame frame) {
+        if (!channel.isActive()) {
+            frame.release();
+            return false;
+        }
+        if (channel.isWritable() && (pending == null || pending.isEmpty())) {
+            channel.write(frame, channel.voidPromise());
+            lastUpdateTime = System.currentTimeMillis();
+            return true;
+        }
+        switch (NettyConsts.BACK_PRESSURE) {
+            case BUFFER:
+                if (pending == null) {
+                    pending = new ArrayDeque<>();
+                }
+                if (pending.size() >= NettyConsts.PENDING_FRAMES) {
+                    pending.poll().release();
+                }
+                pending.offer(frame);
+                break;
+            case CLOSE:
+                frame.release();
+                channel.close();
+                break;
+            default:
+                frame.release();
+        }
+        return false;
+    }
+
+    /**
+     * 通道恢复可写或关闭时补发/释放暂存消息,必须在{@link #eventLoop()}中调用
+     */
+    void drain() {
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        if (!channel.isActive()) {
+            TextWebSocketFrame frame;
+            while ((frame = pending.poll()) != null) {
+                frame.release();
+            }
+            return;
+        }
+        boolean written = false;
+        TextWebSocketFrame frame;
+        while (channel.isWritable() && (frame = pending.poll()) != null) {
+            channel.write(frame, channel.voidPromise());
+            written = true;
+        }
+        if (written) {
+            channel.flush();
+            lastUpdateTime = System.currentTimeMillis();
+        }
+    }
+
+    void flush() {
+        channel.flush();
+    }
+
     public void sendHeartbeat() {
         channel.writeAndFlush(new TextWebSocketFrame(NettyConsts.HEARTBEAT_TEXT));
     }
@@ -66,29 +164,52 @@ public class SocketClient {
         lastUpdateTime = System.currentTimeMillis();
     }
 
-    public void subscribe(String topic) {
-        if (!this.topics.contains(topic)) {
-            this.topics.add(topic);
-        }
+    /**
+     * 记录订阅主题,由{@link ClientGroup#subscribe(String, SocketClient)}在该主题的compute中调用
+     *
+     * @param topic 主题
+     */
+    void subscribe(String topic) {
+        this.topics.add(topic);
         lastUpdateTime = System.currentTimeMillis();
     }
 
+    /**
+     * 移除订阅主题,由{@link ClientGroup#unsubscribe(String, SocketClient)}在该主题的compute中调用
+     *
+     * @param topic 主题
+     * @return true:此前订阅了该主题
+     */
+    boolean unsubscribe(String topic) {
+        return this.topics.remove(topic);
+    }
+
+    boolean isRemoved() {
+        return removed;
+    }
+
     public void cancel(String data) {
         for (String topic : topics) {
-            SocketService.onCancel(this, topic, data);
+            cancel(topic, data);
         }
-        topics.clear();
         lastUpdateTime = System.currentTimeMillis();
     }
 
     public void cancel(String topic, String data) {
-        if (this.topics.contains(topic)) {
-            this.topics.remove(topic);
+        if (ClientService.getClientGroup().unsubscribe(topic, this)) {
             SocketService.onCancel(this, topic, data);
         }
         lastUpdateTime = System.currentTimeMillis();
     }
 
+    /**
+     * 标记为已移除并返回当前订阅的主题,之后的订阅请求将被撤销
+     */
+    Set<String> remove() {
+        removed = true;
+        return topics;
+    }
+
     public boolean isActive() {
         return System.currentTimeMillis() - lastUpdateTime <= inactiveTime;
     }
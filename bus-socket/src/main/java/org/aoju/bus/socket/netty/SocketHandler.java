@@ -55,7 +55,25 @@ public class SocketHandler extends SimpleChannelInboundHandler<TextWebSocketFram
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) {
-        CommandExecutor.execute(new RemoveCommand(ctx));
+        SocketClient client = ClientService.getClient(ctx);
+        if (client != null) {
+            client.drain();
+        }
+        if (!CommandExecutor.execute(new RemoveCommand(ctx))) {
+            // 移除仅遍历该客户端自身订阅的主题,开销很小;丢弃会导致客户端泄漏
+            ClientService.remove(ctx);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            SocketClient client = ClientService.getClient(ctx);
+            if (client != null) {
+                client.drain();
+            }
+        }
+        ctx.fireChannelWritabilityChanged();
     }
 
     @Override
@@ -41,6 +41,9 @@ public class SubscribeCommand implements Runnable {
     public void run() {
         for (String topic : request.getTopic()) {
             SocketClient client = ClientService.subscribe(request.getContext(), topic);
+            if (client == null) {
+                return;
+            }
             SocketService.onSubscribe(client, topic, request.getData());
         }
     }
@@ -32,6 +32,7 @@ import java.net.SocketAddress;
 import java.net.SocketOption;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.security.InvalidParameterException;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
@@ -219,4 +220,29 @@ public class AioQuickClient<T> {
         return this;
     }
 
+    /**
+     * 设置单次聚合输出最多合并的缓存块数量
+     *
+     * @param writeGatherSize 缓存块数量
+     * @return the object
+     */
+    public final AioQuickClient<T> setWriteGatherSize(int writeGatherSize) {
+        if (writeGatherSize < 1) {
+            throw new InvalidParameterException("writeGatherSize must >= 1");
+        }
+        config.setWriteGatherSize(writeGatherSize);
+        return this;
+    }
+
+    /**
+     * 设置延迟刷新时长,开启后未写满的缓存块将等待该时长以合并更多数据后再输出
+     *
+     * @param writeFlushDelay 延迟时长(毫秒),0表示关闭
+     * @return the object
+     */
+    public final AioQuickClient<T> setWriteFlushDelay(long writeFlushDelay) {
+        config.setWriteFlushDelay(writeFlushDelay);
+        return this;
+    }
+
 }
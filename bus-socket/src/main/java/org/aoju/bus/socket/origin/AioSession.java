@@ -24,9 +24,12 @@
  ********************************************************************************/
 package org.aoju.bus.socket.origin;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author Kimi Liu
@@ -35,6 +38,10 @@ import java.net.InetSocketAddress;
  */
 public abstract class AioSession<T> {
 
+    /**
+     * 默认输出实现中单次拷贝的字节数
+     */
+    private static final int COPY_CHUNK_SIZE = 8 * 1024;
     /**
      * Session状态:已关闭
      */
@@ -119,6 +126,56 @@ public abstract class AioSession<T> {
         this.attachment = attachment;
     }
 
+    /**
+     * 输出ByteBuffer中的剩余数据
+     * <p>默认实现将数据拷贝至WriteBuffer,支持零拷贝的会话可覆盖该方法</p>
+     *
+     * @param buffer 待输出数据
+     * @throws IOException 异常
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        WriteBuffer writeBuffer = writeBuffer();
+        if (buffer.hasArray()) {
+            writeBuffer.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte[] bytes = new byte[Math.min(buffer.remaining(), COPY_CHUNK_SIZE)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), bytes.length);
+            buffer.get(bytes, 0, length);
+            writeBuffer.write(bytes, 0, length);
+        }
+    }
+
+    /**
+     * 输出文件指定区域
+     * <p>默认实现分块读取文件并拷贝至WriteBuffer,支持零拷贝的会话可覆盖该方法</p>
+     *
+     * @param fileChannel 文件通道,需具备读权限
+     * @param position    文件起始位置
+     * @param count       输出字节数
+     * @throws IOException 异常
+     */
+    public void sendFile(FileChannel fileChannel, long position, long count) throws IOException {
+        if (position < 0 || count < 0 || position + count > fileChannel.size()) {
+            throw new IllegalArgumentException("position: " + position + ", count: " + count);
+        }
+        WriteBuffer writeBuffer = writeBuffer();
+        ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(count, COPY_CHUNK_SIZE));
+        while (count > 0) {
+            chunk.clear();
+            chunk.limit((int) Math.min(count, chunk.capacity()));
+            int read = fileChannel.read(chunk, position);
+            if (read < 0) {
+                throw new EOFException("position: " + position);
+            }
+            writeBuffer.write(chunk.array(), 0, read);
+            position += read;
+            count -= read;
+        }
+    }
+
     public abstract InetSocketAddress getLocalAddress() throws IOException;
 
     public abstract InetSocketAddress getRemoteAddress() throws IOException;
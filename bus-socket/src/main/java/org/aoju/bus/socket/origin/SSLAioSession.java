@@ -63,6 +63,14 @@ class SSLAioSession<T> extends TcpAioSession<T> {
         this.sslService = sslService;
     }
 
+    /**
+     * SSL需逐块加密后输出,不参与聚合写
+     */
+    @Override
+    protected int writeGatherSize() {
+        return 1;
+    }
+
     @Override
     void writeToChannel() {
         checkInitialized();
@@ -46,6 +46,14 @@ final class ServerConfig<T> {
      * Write缓存区容量
      */
     private int writeQueueCapacity = 512;
+    /**
+     * 单次聚合输出(gathering write)最多合并的缓存块数量
+     */
+    private int writeGatherSize = getIntProperty(ServerConfig.Property.SESSION_WRITE_GATHER_SIZE, 16);
+    /**
+     * 延迟刷新时长(毫秒),0表示关闭
+     */
+    private long writeFlushDelay = 0;
     /**
      * 远程服务器IP
      */
@@ -179,6 +187,22 @@ final class ServerConfig<T> {
         this.writeQueueCapacity = writeQueueCapacity;
     }
 
+    public int getWriteGatherSize() {
+        return writeGatherSize;
+    }
+
+    public void setWriteGatherSize(int writeGatherSize) {
+        this.writeGatherSize = writeGatherSize;
+    }
+
+    public long getWriteFlushDelay() {
+        return writeFlushDelay;
+    }
+
+    public void setWriteFlushDelay(long writeFlushDelay) {
+        this.writeFlushDelay = writeFlushDelay;
+    }
+
     public int getThreadNum() {
         return threadNum;
     }
@@ -205,6 +229,8 @@ final class ServerConfig<T> {
     interface Property {
         String PROJECT_NAME = "bus-socket";
         String SESSION_WRITE_CHUNK_SIZE = PROJECT_NAME + ".session.writeChunkSize";
+        String SESSION_WRITE_GATHER_SIZE = PROJECT_NAME + ".session.writeGatherSize";
+        String SESSION_SEND_FILE_CHUNK_SIZE = PROJECT_NAME + ".session.sendFileChunkSize";
         String BUFFER_PAGE_NUM = PROJECT_NAME + ".bufferPool.pageNum";
         String SERVER_PAGE_SIZE = PROJECT_NAME + ".server.pageSize";
         String CLIENT_PAGE_SIZE = PROJECT_NAME + ".client.pageSize";
@@ -34,6 +34,7 @@ import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -66,6 +67,11 @@ import java.util.concurrent.TimeUnit;
  */
 class TcpAioSession<T> extends AioSession<T> {
 
+    /**
+     * sendFile单次映射的文件区域大小
+     */
+    private static final int SEND_FILE_CHUNK_SIZE = ServerConfig.getIntProperty(ServerConfig.Property.SESSION_SEND_FILE_CHUNK_SIZE, 1024 * 1024);
+
     /**
      * 底层通信channel对象
      */
@@ -76,9 +82,21 @@ class TcpAioSession<T> extends AioSession<T> {
      */
     protected VirtualBuffer readBuffer;
     /**
-     * 写缓冲
+     * 写缓冲,同一批次聚合输出的缓存块
+     */
+    protected VirtualBuffer[] writeBuffers;
+    /**
+     * 与writeBuffers一一对应的ByteBuffer,用于gathering write
+     */
+    private ByteBuffer[] writeByteBuffers;
+    /**
+     * 当前批次中首个未输出完毕的缓存块索引
      */
-    protected VirtualBuffer writeBuffer;
+    private int writeIndex;
+    /**
+     * 当前批次中缓存块数量
+     */
+    private int writeCount;
     /**
      * 会话当前状态
      *
@@ -104,18 +122,20 @@ class TcpAioSession<T> extends AioSession<T> {
         this.ioServerConfig = config;
 
         this.readBuffer = pageBuffer.allocate(config.getReadBufferSize());
+        int gatherSize = Math.max(1, Math.min(writeGatherSize(), config.getWriteQueueCapacity()));
+        this.writeBuffers = new VirtualBuffer[gatherSize];
+        this.writeByteBuffers = new ByteBuffer[gatherSize];
         byteBuf = new WriteBuffer(pageBuffer, var -> {
             if (!semaphore.tryAcquire()) {
                 return null;
             }
-            TcpAioSession.this.writeBuffer = var.poll();
-            if (writeBuffer == null) {
-                semaphore.release();
+            if (pollWriteBuffers(var)) {
+                continueWrite();
             } else {
-                continueWrite(writeBuffer);
+                semaphore.release();
             }
             return null;
-        }, ioServerConfig.getWriteQueueCapacity());
+        }, ioServerConfig.getWriteQueueCapacity(), ioServerConfig.getWriteFlushDelay());
         //触发状态机
         config.getProcessor().stateEvent(this, StateMachine.NEW_SESSION, null);
     }
@@ -127,20 +147,50 @@ class TcpAioSession<T> extends AioSession<T> {
         continueRead();
     }
 
+    /**
+     * 单次聚合输出最多合并的缓存块数量
+     *
+     * @return 缓存块数量
+     */
+    protected int writeGatherSize() {
+        return ioServerConfig.getWriteGatherSize();
+    }
+
+    /**
+     * 从输出队列中批量取出待输出的缓存块
+     *
+     * @param buffer 输出队列
+     * @return true:存在待输出数据
+     */
+    private boolean pollWriteBuffers(WriteBuffer buffer) {
+        writeIndex = 0;
+        writeCount = buffer.poll(writeBuffers, writeBuffers.length);
+        for (int i = 0; i < writeCount; i++) {
+            writeByteBuffers[i] = writeBuffers[i].buffer();
+        }
+        return writeCount > 0;
+    }
+
+    /**
+     * 释放当前批次中已输出完毕的缓存块
+     */
+    private void cleanWriteBuffers() {
+        while (writeIndex < writeCount && !writeByteBuffers[writeIndex].hasRemaining()) {
+            writeBuffers[writeIndex].clean();
+            writeBuffers[writeIndex] = null;
+            writeByteBuffers[writeIndex] = null;
+            writeIndex++;
+        }
+    }
+
     /**
      * 触发AIO的写操作,
      * <p>需要调用控制同步</p>
      */
     void writeToChannel() {
-        if (writeBuffer == null) {
-            writeBuffer = byteBuf.poll();
-        } else if (!writeBuffer.buffer().hasRemaining()) {
-            writeBuffer.clean();
-            writeBuffer = byteBuf.poll();
-        }
-
-        if (writeBuffer != null) {
-            continueWrite(writeBuffer);
+        cleanWriteBuffers();
+        if (writeIndex < writeCount || pollWriteBuffers(byteBuf)) {
+            continueWrite();
             return;
         }
         semaphore.release();
@@ -170,9 +220,40 @@ class TcpAioSession<T> extends AioSession<T> {
         channel.write(buffer, 0L, TimeUnit.MILLISECONDS, this, writeCompletionHandler);
     }
 
+    /**
+     * 内部方法：触发通道的聚合写操作
+     */
+    protected final void writeToChannel0(ByteBuffer[] buffers, int offset, int length) {
+        channel.write(buffers, offset, length, 0L, TimeUnit.MILLISECONDS, this, writeCompletionHandler.gathering);
+    }
+
     public final WriteBuffer writeBuffer() {
         return byteBuf;
     }
+
+    @Override
+    public final void write(ByteBuffer buffer) throws IOException {
+        assertChannel();
+        byteBuf.write(buffer);
+    }
+
+    /**
+     * 文件按SEND_FILE_CHUNK_SIZE分段映射后依次进入输出队列,
+     * 每段占用一个队列位置,队列已满时阻塞直至前序数据输出完毕
+     */
+    @Override
+    public final void sendFile(FileChannel fileChannel, long position, long count) throws IOException {
+        if (position < 0 || count < 0 || position + count > fileChannel.size()) {
+            throw new IndexOutOfBoundsException("position:" + position + " count:" + count + " size:" + fileChannel.size());
+        }
+        assertChannel();
+        long end = position + count;
+        while (position < end) {
+            long size = Math.min(SEND_FILE_CHUNK_SIZE, end - position);
+            byteBuf.write(fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size));
+            position += size;
+        }
+    }
 //
 //    /**
 //     * 强制关闭当前AIOSession
@@ -205,10 +286,12 @@ class TcpAioSession<T> extends AioSession<T> {
             }
             readBuffer.clean();
             readBuffer = null;
-            if (writeBuffer != null) {
-                writeBuffer.clean();
-                writeBuffer = null;
+            for (int i = writeIndex; i < writeCount; i++) {
+                writeBuffers[i].clean();
+                writeBuffers[i] = null;
+                writeByteBuffers[i] = null;
             }
+            writeIndex = writeCount = 0;
             try {
                 channel.shutdownInput();
             } catch (IOException e) {
@@ -225,14 +308,26 @@ class TcpAioSession<T> extends AioSession<T> {
                 Logger.debug("close session exception", e);
             }
             ioServerConfig.getProcessor().stateEvent(this, StateMachine.SESSION_CLOSED, null);
-        } else if ((writeBuffer == null || !writeBuffer.buffer().hasRemaining()) && !byteBuf.hasData()) {
+        } else if (!hasWriteRemaining() && !byteBuf.hasData()) {
             close(true);
         } else {
             ioServerConfig.getProcessor().stateEvent(this, StateMachine.SESSION_CLOSING, null);
             if (!byteBuf.isClosed()) {
-                byteBuf.flush();
+                byteBuf.flush(true);
+            }
+        }
+    }
+
+    /**
+     * 当前批次中是否还有未输出的数据
+     */
+    private boolean hasWriteRemaining() {
+        for (int i = writeIndex; i < writeCount; i++) {
+            if (writeByteBuffers[i].hasRemaining()) {
+                return true;
             }
         }
+        return false;
     }
 
     /**
@@ -319,6 +414,18 @@ class TcpAioSession<T> extends AioSession<T> {
         readFromChannel0(readBuffer.buffer());
     }
 
+    /**
+     * 输出当前批次中剩余的缓存块,多于一块时通过gathering write一次性提交
+     */
+    private void continueWrite() {
+        int length = writeCount - writeIndex;
+        if (length == 1) {
+            continueWrite(writeBuffers[writeIndex]);
+        } else {
+            writeToChannel0(writeByteBuffers, writeIndex, length);
+        }
+    }
+
     protected void continueWrite(VirtualBuffer writeBuffer) {
         writeToChannel0(writeBuffer.buffer());
     }
@@ -37,8 +37,27 @@ import java.nio.channels.CompletionHandler;
  */
 class TcpWriteHandler<T> implements CompletionHandler<Integer, TcpAioSession<T>> {
 
+    /**
+     * 聚合输出(gathering write)回调,与单缓冲区输出共用同一处理逻辑
+     */
+    final CompletionHandler<Long, TcpAioSession<T>> gathering = new CompletionHandler<Long, TcpAioSession<T>>() {
+        @Override
+        public void completed(Long result, TcpAioSession<T> aioSession) {
+            TcpWriteHandler.this.completed(result.intValue(), aioSession);
+        }
+
+        @Override
+        public void failed(Throwable exc, TcpAioSession<T> aioSession) {
+            TcpWriteHandler.this.failed(exc, aioSession);
+        }
+    };
+
     @Override
     public void completed(final Integer result, final TcpAioSession<T> aioSession) {
+        completed(result.intValue(), aioSession);
+    }
+
+    private void completed(final int result, final TcpAioSession<T> aioSession) {
         try {
             NetMonitor<T> monitor = aioSession.getServerConfig().getMonitor();
             if (monitor != null) {
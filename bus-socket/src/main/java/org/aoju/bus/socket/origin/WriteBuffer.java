@@ -30,6 +30,8 @@ import org.aoju.bus.core.io.VirtualBuffer;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -62,6 +64,19 @@ public class WriteBuffer extends OutputStream {
      */
     private final PageBuffer pageBuffer;
     private final Function<WriteBuffer, Void> function;
+    /**
+     * 延迟刷新时长(毫秒),大于0时{@link #flush()}不会立即输出未满的缓存块,
+     * 而是等待该时长以合并后续写入的数据,类似应用层的Nagle算法
+     */
+    private final long flushDelay;
+    /**
+     * 是否已存在待执行的延迟刷新任务
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    /**
+     * 延迟刷新到期时输出队列已满而未能移入的缓存块,由下一次输出完成后的{@link #flush()}立即移入
+     */
+    private volatile boolean flushDeferred = false;
     private volatile boolean isWaiting = false;
     /**
      * items 读索引位
@@ -86,9 +101,14 @@ public class WriteBuffer extends OutputStream {
     private byte[] cacheByte = new byte[8];
 
     protected WriteBuffer(PageBuffer pageBuffer, Function<WriteBuffer, Void> flushFunction, int writeQueueSize) {
+        this(pageBuffer, flushFunction, writeQueueSize, 0);
+    }
+
+    protected WriteBuffer(PageBuffer pageBuffer, Function<WriteBuffer, Void> flushFunction, int writeQueueSize, long flushDelay) {
         this.pageBuffer = pageBuffer;
         this.function = flushFunction;
         this.items = new VirtualBuffer[writeQueueSize];
+        this.flushDelay = flushDelay;
     }
 
     /**
@@ -109,22 +129,23 @@ public class WriteBuffer extends OutputStream {
     }
 
     public void writeByte(byte b) {
-        if (writeInBuf == null) {
-            writeInBuf = pageBuffer.allocate(WRITE_CHUNK_SIZE);
-        }
-        writeInBuf.buffer().put(b);
-        if (writeInBuf.buffer().hasRemaining()) {
-            return;
-        }
-        writeInBuf.buffer().flip();
         lock.lock();
         try {
-            this.put(writeInBuf);
+            if (writeInBuf == null) {
+                writeInBuf = pageBuffer.allocate(WRITE_CHUNK_SIZE);
+            }
+            writeInBuf.buffer().put(b);
+            if (writeInBuf.buffer().hasRemaining()) {
+                return;
+            }
+            writeInBuf.buffer().flip();
+            VirtualBuffer buffer = writeInBuf;
+            writeInBuf = null;
+            this.put(buffer);
+            function.apply(this);
         } finally {
             lock.unlock();
         }
-        writeInBuf = null;
-        function.apply(this);
     }
 
     public void writeInt(int v) throws IOException {
@@ -177,6 +198,44 @@ public class WriteBuffer extends OutputStream {
         }
     }
 
+    /**
+     * 将ByteBuffer直接加入输出队列,数据不经过缓存块拷贝
+     * <p>
+     * 输出完成前调用方不得修改该buffer;输出队列已满时当前线程将阻塞,
+     * 队列容量由{@link ServerConfig#getWriteQueueCapacity()}决定
+     * </p>
+     *
+     * @param buffer 待输出数据,可以是DirectByteBuffer或MappedByteBuffer
+     * @throws IOException 如果发生 I/O 错误
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (closed) {
+            throw new IOException("OutputStream has closed");
+        }
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        lock.lock();
+        try {
+            waitPreWriteFinish();
+            // 先输出已缓存的数据,保证输出顺序
+            if (writeInBuf != null && writeInBuf.buffer().position() > 0) {
+                VirtualBuffer cache = writeInBuf;
+                writeInBuf = null;
+                cache.buffer().flip();
+                this.put(cache);
+            }
+            if (closed) {
+                throw new IOException("OutputStream has closed");
+            }
+            this.put(VirtualBuffer.wrap(buffer));
+            function.apply(this);
+            notifyWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * 唤醒处于waiting状态的线程
      */
@@ -223,19 +282,53 @@ public class WriteBuffer extends OutputStream {
      */
     public void writeAndFlush(byte[] b, int off, int len) throws IOException {
         write(b, off, len);
-        flush();
+        flush(true);
     }
 
+    /**
+     * 刷新缓冲区,若开启了延迟刷新,未写满的缓存块将在延迟时长到达后再输出
+     */
     @Override
     public void flush() {
+        flush(false);
+    }
+
+    /**
+     * 刷新缓冲区
+     *
+     * @param immediate true:忽略延迟刷新配置,立即输出
+     */
+    void flush(boolean immediate) {
         if (closed) {
             throw new RuntimeException("OutputStream has closed");
         }
         int size = this.count;
         if (size > 0) {
             function.apply(this);
+        } else if (!immediate && flushDelay > 0 && !flushDeferred) {
+            if (writeInBuf != null && flushScheduled.compareAndSet(false, true)) {
+                QuickTimer.getTimer().schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        if (closed) {
+                            flushScheduled.set(false);
+                            return;
+                        }
+                        lock.lock();
+                        try {
+                            // 队列已满时不能在定时器线程上阻塞等待,交由输出完成后的flush移入
+                            flushDeferred = !moveWriteInBuf() && writeInBuf != null && writeInBuf.buffer().position() > 0;
+                            flushScheduled.set(false);
+                        } finally {
+                            lock.unlock();
+                        }
+                        function.apply(WriteBuffer.this);
+                    }
+                }, flushDelay);
+            }
         } else if (writeInBuf != null && writeInBuf.buffer().position() > 0 && lock.tryLock()) {
             try {
+                flushDeferred = false;
                 if (writeInBuf != null && writeInBuf.buffer().position() > 0) {
                     final VirtualBuffer buffer = writeInBuf;
                     writeInBuf = null;
@@ -249,6 +342,9 @@ public class WriteBuffer extends OutputStream {
             if (size > 0) {
                 function.apply(this);
             }
+        } else if (flushDeferred && writeInBuf == null) {
+            // 暂存的数据已随写满的缓存块输出,恢复延迟刷新
+            flushDeferred = false;
         }
 
     }
@@ -260,7 +356,7 @@ public class WriteBuffer extends OutputStream {
             if (closed) {
                 throw new IOException("OutputStream has closed");
             }
-            flush();
+            flush(true);
 
             closed = true;
 
@@ -307,6 +403,50 @@ public class WriteBuffer extends OutputStream {
         }
     }
 
+    /**
+     * 将未写满的缓存块移入待输出队列,需持有锁
+     *
+     * @return true:已移入
+     */
+    private boolean moveWriteInBuf() {
+        if (writeInBuf != null && writeInBuf.buffer().position() > 0 && count < items.length) {
+            final VirtualBuffer buffer = writeInBuf;
+            writeInBuf = null;
+            buffer.buffer().flip();
+            this.put(buffer);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 批量获取并移除当前缓冲队列中头部的VirtualBuffer,用于聚合输出
+     *
+     * @param dest 存放结果的数组
+     * @param max  最多获取的数量
+     * @return 实际获取的数量
+     */
+    int poll(VirtualBuffer[] dest, int max) {
+        lock.lock();
+        try {
+            int size = Math.min(count, max);
+            for (int i = 0; i < size; i++) {
+                dest[i] = items[takeIndex];
+                items[takeIndex] = null;
+                if (++takeIndex == items.length) {
+                    takeIndex = 0;
+                }
+            }
+            if (size > 0) {
+                count -= size;
+                notFull.signalAll();
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * 获取并移除当前缓冲队列中头部的VirtualBuffer
      *
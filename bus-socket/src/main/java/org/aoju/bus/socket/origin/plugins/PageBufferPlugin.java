@@ -76,7 +76,7 @@ public class PageBufferPlugin<T> extends AbstractPlugin {
                             Logger.error("server maybe has not started!");
                             return;
                         }
-                        Field field = BufferPool.class.getDeclaredField("bufferPageList");
+                        Field field = BufferPool.class.getDeclaredField("pageBufferList");
                         field.setAccessible(true);
                         PageBuffer[] pages = (PageBuffer[]) field.get(pagePool);
                         String logger = Normal.EMPTY;